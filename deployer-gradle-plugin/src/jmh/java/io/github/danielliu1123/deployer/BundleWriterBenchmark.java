@@ -0,0 +1,97 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures {@link BundlePlan#scan} and {@link BundleWriter} on the {@link StagedRepository} shapes,
+ * writing to a sink that discards the bundle, so only the bundling itself is measured.
+ *
+ * <p> The {@code megabytes} counter is the bundling throughput in MB/s of staged files,
+ * the {@code gc} profiler reports the allocation rate.
+ *
+ * @author Freeman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BundleWriterBenchmark {
+
+    /**
+     * A {@link StagedRepository}.
+     */
+    @Param({"SMALL_POMS", "HUGE_JARS", "DEEP_TREES"})
+    public String shape;
+
+    /**
+     * Checksums generated while bundling, none or the ones Maven Central requires.
+     */
+    @Param({"none", "md5,sha1"})
+    public String checksums;
+
+    private Path dir;
+    private List<BundlePlan.Source> sources;
+    private BundleWriter writer;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = StagedRepository.valueOf(shape).create();
+        sources = BundlePlan.scan(List.of(dir), true);
+        writer = new BundleWriter(new BundleWriter.Options(
+                Runtime.getRuntime().availableProcessors(),
+                Deflater.DEFAULT_COMPRESSION,
+                BundleWriter.normalizeExtensions(List.of("jar", "zip", "war")),
+                BundleWriter.normalizeExtensions(List.of("asc", "md5", "sha1", "sha256", "sha512")),
+                Deflater.BEST_SPEED,
+                true,
+                Checksums.normalize(checksums.equals("none") ? List.of() : List.of(checksums.split(","))),
+                null));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        StagedRepository.delete(dir);
+    }
+
+    @Benchmark
+    public long bundle(Throughput throughput) throws IOException {
+        var result = writer.write(sources, OutputStream.nullOutputStream());
+        throughput.megabytes += result.bytesIn() / 1_000_000.0;
+        return result.bytesOut();
+    }
+
+    @Benchmark
+    public int scan() throws IOException {
+        return BundlePlan.scan(List.of(dir), true).size();
+    }
+
+    /**
+     * Megabytes of staged files bundled, reported per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import org.gradle.api.logging.Logger;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the multipart body of a bundle upload, see {@link PublisherClient#createMultipartBody},
+ * drained by a local sink that requests and discards the buffers like the HTTP client does.
+ *
+ * <p> The {@code megabytes} counter is the body throughput in MB/s, with and without the {@link UploadProgress}
+ * instrumentation.
+ *
+ * @author Freeman
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MultipartBodyBenchmark {
+
+    /**
+     * Size of the bundle in MiB.
+     */
+    @Param({"1", "256"})
+    public int mebibytes;
+
+    @Param({"false", "true"})
+    public boolean progress;
+
+    /**
+     * Drops the log line of every upload, printing it would be measured too.
+     */
+    private static final Logger QUIET = (Logger) Proxy.newProxyInstance(
+            Logger.class.getClassLoader(),
+            new Class<?>[] {Logger.class},
+            (proxy, method, args) -> method.getReturnType() == boolean.class ? false : null);
+
+    private Path bundle;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        bundle = Files.createTempFile("deployer-jmh-", "-bundle.zip");
+        var buffer = new byte[1 << 20];
+        var random = new Random(20261017L);
+        try (var out = Files.newOutputStream(bundle)) {
+            for (int i = 0; i < mebibytes; i++) {
+                random.nextBytes(buffer);
+                out.write(buffer);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(bundle);
+    }
+
+    @Benchmark
+    public long body(Throughput throughput) throws Exception {
+        HttpRequest.BodyPublisher body = PublisherClient.createMultipartBody(
+                "--boundary\r\nContent-Disposition: form-data; name=bundle; filename=demo-bundle.zip\r\n\r\n",
+                this::open,
+                "\r\n--boundary--\r\n");
+        if (progress) {
+            body = new UploadProgress(body, "[demo-bundle.zip]", Files.size(bundle), null, QUIET);
+        }
+        var sink = new Sink();
+        body.subscribe(sink);
+        long bytes = sink.done.get();
+        throughput.megabytes += bytes / 1_000_000.0;
+        return bytes;
+    }
+
+    private InputStream open() {
+        try {
+            return Files.newInputStream(bundle);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Megabytes of body drained, reported per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    /**
+     * Requests a few buffers at a time and counts their bytes.
+     */
+    private static final class Sink implements Flow.Subscriber<ByteBuffer> {
+
+        private final CompletableFuture<Long> done = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+        private long bytes;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(4);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            bytes += item.remaining();
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(bytes);
+        }
+    }
+}
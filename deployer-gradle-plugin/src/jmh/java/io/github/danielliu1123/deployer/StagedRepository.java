@@ -0,0 +1,142 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic staged repositories of several shapes, generated from a fixed seed so every run and every commit
+ * benchmarks the same bytes.
+ *
+ * @author Freeman
+ */
+enum StagedRepository {
+
+    /**
+     * Many GAVs with a small POM, its signature and checksums, typical for a BOM or a large multi-module release.
+     */
+    SMALL_POMS {
+        @Override
+        void generate(Path dir, Random random) throws IOException {
+            for (int i = 0; i < 2_000; i++) {
+                var gav = Files.createDirectories(dir.resolve("com/example/module" + i + "/1.0.0"));
+                var pom = pom("module" + i, random);
+                write(gav.resolve("module" + i + "-1.0.0.pom"), pom);
+                write(gav.resolve("module" + i + "-1.0.0.pom.asc"), text(random, 833));
+                write(gav.resolve("module" + i + "-1.0.0.pom.sha1"), hex(random, 40));
+                write(gav.resolve("module" + i + "-1.0.0.pom.md5"), hex(random, 32));
+            }
+        }
+    },
+
+    /**
+     * A few huge, already compressed jars, where bundling is bound by I/O and hashing.
+     */
+    HUGE_JARS {
+        @Override
+        void generate(Path dir, Random random) throws IOException {
+            for (int i = 0; i < 4; i++) {
+                var gav = Files.createDirectories(dir.resolve("com/example/huge" + i + "/1.0.0"));
+                write(gav.resolve("huge" + i + "-1.0.0.pom"), pom("huge" + i, random));
+                try (OutputStream out = Files.newOutputStream(gav.resolve("huge" + i + "-1.0.0.jar"))) {
+                    var buffer = new byte[1 << 20];
+                    for (int mib = 0; mib < 64; mib++) {
+                        random.nextBytes(buffer);
+                        out.write(buffer);
+                    }
+                }
+            }
+        }
+    },
+
+    /**
+     * Long group ids with several artifacts and classifiers per GAV, where walking the tree and naming entries
+     * dominate.
+     */
+    DEEP_TREES {
+        @Override
+        void generate(Path dir, Random random) throws IOException {
+            var group = "com/example/a/b/c/d/e/f/g/h/i/j";
+            for (int i = 0; i < 300; i++) {
+                var artifactId = "artifact" + i;
+                var gav = Files.createDirectories(dir.resolve(group + "/" + artifactId + "/2.3.4"));
+                write(gav.resolve(artifactId + "-2.3.4.pom"), pom(artifactId, random));
+                for (String classifier : new String[] {"", "-sources", "-javadoc"}) {
+                    var jar = new byte[16 * 1024 + random.nextInt(16 * 1024)];
+                    random.nextBytes(jar);
+                    Files.write(gav.resolve(artifactId + "-2.3.4" + classifier + ".jar"), jar);
+                }
+            }
+        }
+    };
+
+    private static final long SEED = 20261017L;
+
+    abstract void generate(Path dir, Random random) throws IOException;
+
+    /**
+     * @return a new temporary directory with the files of this shape
+     */
+    Path create() throws IOException {
+        var dir = Files.createTempDirectory("deployer-jmh-" + name().toLowerCase(Locale.ROOT));
+        generate(dir, new Random(SEED));
+        return dir;
+    }
+
+    private static String pom(String artifactId, Random random) {
+        var dependencies = new StringBuilder();
+        for (int i = 0, n = random.nextInt(20); i < n; i++) {
+            dependencies.append("    <dependency><groupId>com.example</groupId><artifactId>dependency")
+                    .append(random.nextInt(1_000))
+                    .append("</artifactId><version>1.0.0</version></dependency>\n");
+        }
+        return """
+                <project>
+                  <modelVersion>4.0.0</modelVersion>
+                  <groupId>com.example</groupId>
+                  <artifactId>%s</artifactId>
+                  <version>1.0.0</version>
+                  <dependencies>
+                %s  </dependencies>
+                </project>
+                """
+                .formatted(artifactId, dependencies);
+    }
+
+    private static String text(Random random, int length) {
+        var chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        var result = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            result.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return result.toString();
+    }
+
+    private static String hex(Random random, int length) {
+        var result = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            result.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return result.toString();
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deletes {@code dir} and everything in it.
+     */
+    static void delete(Path dir) throws IOException {
+        try (var paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.danielliu1123.deployer;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.ServiceReference;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Blocks until the deployments uploaded by {@link DeployTask} in this build are published.
+ *
+ * <p> Only needed with {@link DeployerPluginExtension#getWaitInBackground()}, by tasks that must not run
+ * before the release is available on Maven Central. Without it the build waits at the very end.
+ *
+ * @author Freeman
+ */
+public abstract class AwaitPublishedTask extends DefaultTask {
+
+    @ServiceReference(DeploymentWatchService.NAME)
+    public abstract Property<DeploymentWatchService> getWatchService();
+
+    @TaskAction
+    public void await() {
+        int count = getWatchService().get().awaitAll();
+        getLogger().lifecycle("{} deployment(s) published", count);
+    }
+}
@@ -0,0 +1,225 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Writes the bundles of a {@link BundleTask}, run by the Gradle worker executor.
+ *
+ * <p> The task action only submits this work and returns, so Gradle can run other tasks meanwhile.
+ * A cancelled build interrupts the worker: compressing threads are stopped and partly written bundles deleted,
+ * the previous bundles are left as they were.
+ *
+ * @author Freeman
+ */
+public abstract class BundleAction implements WorkAction<BundleAction.Parameters> {
+
+    private static final Logger logger = Logging.getLogger(BundleAction.class);
+
+    @Override
+    public void execute() {
+        try {
+            bundle(getParameters());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void bundle(Parameters parameters) throws IOException {
+        List<Path> dirs = BundlePlan.directories(parameters.getDirs().getFiles(), logger);
+
+        Path destination = parameters.getDestinationDirectory().get().getAsFile().toPath();
+        List<Path> previousBundles = BundleTask.listBundles(destination);
+
+        var report = parameters.getReport().get();
+        var published = CheckPublishedTask.readPublished(parameters.getPublishedGavs());
+        long start = System.nanoTime();
+        var sources = BundlePlan.exclude(BundlePlan.scan(dirs, parameters.getReproducible().get()), published);
+        report.record("scan", parameters.getBaseName().get(), millisSince(start), scanMetrics(dirs, sources));
+        // nothing left to deploy, no bundle rather than an empty one
+        var shards = BundlePlan.gavsOf(sources).isEmpty() && !published.isEmpty()
+                ? List.<List<BundlePlan.Source>>of()
+                : BundlePlan.split(sources, parameters.getMaxBundleSize().getOrElse(0L));
+        var writer = new BundleWriter(optionsOf(parameters));
+
+        List<ZipReader> previous = new ArrayList<>();
+        List<ZipReader> fragments = new ArrayList<>();
+        List<Path> started = new ArrayList<>();
+        Map<Path, BundleWriter.Result> results = new LinkedHashMap<>();
+        Map<Path, Long> millis = new LinkedHashMap<>();
+        try {
+            for (File fragmentDir : parameters.getFragments().getFiles()) {
+                for (Path fragment : BundleTask.listBundles(fragmentDir.toPath())) {
+                    fragments.add(ZipReader.open(fragment));
+                }
+            }
+            Set<Path> changed = new HashSet<>();
+            if (parameters.getIncremental().get()) {
+                for (Path bundle : previousBundles) {
+                    previous.add(ZipReader.open(bundle));
+                }
+                for (File file : parameters.getChangedFiles().get()) {
+                    changed.add(file.toPath());
+                }
+            }
+            var reuse = previous.isEmpty() && fragments.isEmpty()
+                    ? null
+                    : new BundleWriter.Previous(previous, changed, fragments);
+            for (int i = 0; i < shards.size(); i++) {
+                Path bundle = destination.resolve(
+                        BundlePlan.bundleName(parameters.getBaseName().get(), i, shards.size()));
+                started.add(bundle);
+                long bundleStart = System.nanoTime();
+                try (OutputStream out = Files.newOutputStream(tmpFileOf(bundle))) {
+                    results.put(bundle, writer.write(shards.get(i), out, reuse));
+                }
+                millis.put(bundle, millisSince(bundleStart));
+            }
+        } catch (IOException | RuntimeException e) {
+            // e.g. cancelled, the previous bundles stay usable
+            for (Path bundle : started) {
+                Files.deleteIfExists(tmpFileOf(bundle));
+            }
+            throw e;
+        } finally {
+            for (ZipReader reader : previous) {
+                reader.close();
+            }
+            for (ZipReader reader : fragments) {
+                reader.close();
+            }
+        }
+
+        for (Path bundle : previousBundles) {
+            Files.deleteIfExists(bundle);
+            Files.deleteIfExists(BundleTask.hashFileOf(bundle));
+        }
+        for (var e : results.entrySet()) {
+            Path bundle = e.getKey();
+            var result = e.getValue();
+            Files.move(tmpFileOf(bundle), bundle, StandardCopyOption.REPLACE_EXISTING);
+            Files.writeString(BundleTask.hashFileOf(bundle), result.sha256() + "\n");
+            logger.lifecycle(
+                    "Bundled {} files ({} bytes -> {} bytes, {} reused, {} checksums generated, {} signed): {}",
+                    result.entries(),
+                    result.bytesIn(),
+                    result.bytesOut(),
+                    result.reused(),
+                    result.checksums(),
+                    result.signatures(),
+                    bundle);
+            report.record("bundle", bundle.getFileName().toString(), millis.get(bundle), bundleMetrics(result));
+        }
+    }
+
+    static long millisSince(long nanos) {
+        return (System.nanoTime() - nanos) / 1_000_000;
+    }
+
+    static Map<String, Object> scanMetrics(List<Path> dirs, List<BundlePlan.Source> sources) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("dirs", dirs.size());
+        metrics.put("files", sources.size());
+        metrics.put("bytes", sources.stream().mapToLong(BundlePlan.Source::size).sum());
+        return metrics;
+    }
+
+    private static Map<String, Object> bundleMetrics(BundleWriter.Result result) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("files", result.entries());
+        metrics.put("bytesIn", result.bytesIn());
+        metrics.put("bytesOut", result.bytesOut());
+        metrics.put("ratio", result.bytesIn() > 0 ? (double) result.bytesOut() / result.bytesIn() : 1.0);
+        metrics.put("reused", result.reused());
+        metrics.put("checksums", result.checksums());
+        metrics.put("signatures", result.signatures());
+        return metrics;
+    }
+
+    private static Path tmpFileOf(Path bundle) {
+        return bundle.resolveSibling(bundle.getFileName() + ".tmp");
+    }
+
+    static BundleWriter.Options optionsOf(WriterParameters parameters) {
+        return new BundleWriter.Options(
+                parameters.getThreads().get(),
+                parameters.getCompressionLevel().get(),
+                BundleWriter.normalizeExtensions(parameters.getStoredExtensions().get()),
+                BundleWriter.normalizeExtensions(parameters.getFastCompressionExtensions().get()),
+                parameters.getFastCompressionLevel().get(),
+                parameters.getReproducible().get(),
+                Checksums.normalize(parameters.getChecksums().get()),
+                Signer.create(parameters.getSigningKey(), parameters.getSigningPassword()));
+    }
+
+    /**
+     * Options of the {@link BundleWriter}, see {@link #optionsOf}.
+     */
+    public interface WriterParameters extends WorkParameters {
+
+        Property<Integer> getThreads();
+
+        Property<Integer> getCompressionLevel();
+
+        ListProperty<String> getStoredExtensions();
+
+        ListProperty<String> getFastCompressionExtensions();
+
+        Property<Integer> getFastCompressionLevel();
+
+        Property<Boolean> getReproducible();
+
+        ListProperty<String> getChecksums();
+
+        Property<String> getSigningKey();
+
+        Property<String> getSigningPassword();
+    }
+
+    /**
+     * The options of {@link BundleTask}, with the files changed since its last execution.
+     */
+    public interface Parameters extends WriterParameters {
+
+        ConfigurableFileCollection getDirs();
+
+        /**
+         * Whether {@link #getChangedFiles()} are the only files added or modified since the previous bundles.
+         */
+        Property<Boolean> getIncremental();
+
+        ListProperty<File> getChangedFiles();
+
+        ConfigurableFileCollection getFragments();
+
+        RegularFileProperty getPublishedGavs();
+
+        Property<Long> getMaxBundleSize();
+
+        Property<String> getBaseName();
+
+        DirectoryProperty getDestinationDirectory();
+
+        Property<DeployReportService> getReport();
+    }
+}
@@ -0,0 +1,258 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Produces a bundle on a background thread and exposes it as an {@link InputStream}.
+ *
+ * <p> The producer and the consumer are connected by a bounded queue of chunks, so walking,
+ * compression and the network transfer overlap while memory stays independent of the bundle size.
+ * A failure on the producer side is rethrown to the consumer, closing the consumer stops the producer.
+ *
+ * <p> The {@link java.net.http.HttpClient} does not close the body stream of a failed, timed out or cancelled request,
+ * so the producer must not depend on the consumer alone: {@link Streams#close()} stops the producers of an upload
+ * once it returned or failed.
+ *
+ * <p> {@link java.io.PipedInputStream} is not used because it requires the reading thread to stay alive,
+ * which does not hold for the {@link java.net.http.HttpClient} executor.
+ *
+ * @author Freeman
+ */
+final class BundlePipe {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    static final int DEFAULT_CHUNKS = 16;
+
+    private static final byte[] EOF = new byte[0];
+
+    private final BlockingQueue<byte[]> queue;
+    private volatile Throwable failure;
+    private volatile boolean consumerClosed;
+    private volatile Future<?> producer;
+
+    private BundlePipe(int chunks) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, chunks));
+    }
+
+    /**
+     * Starts writing the bundle of {@code sources} on {@code executor}.
+     *
+     * @param chunks number of {@link #CHUNK_SIZE} chunks buffered between producer and consumer
+     * @return the bundle content
+     */
+    static BundlePipe open(
+            BundleWriter writer, List<BundlePlan.Source> sources, int chunks, ExecutorService executor) {
+        var pipe = new BundlePipe(chunks);
+        pipe.producer = executor.submit(() -> {
+            var sink = pipe.new Sink();
+            try {
+                // the writer closes the sink, even when it fails
+                writer.write(sources, sink);
+                sink.complete();
+            } catch (Throwable e) {
+                pipe.failure = e;
+                // unblock the consumer, it will see the failure
+                pipe.queue.clear();
+                pipe.queue.add(EOF);
+            }
+        });
+        return pipe;
+    }
+
+    /**
+     * @return the bundle content, read once
+     */
+    InputStream stream() {
+        return new Source();
+    }
+
+    /**
+     * Stops the producer, whether the consumer closed the stream or not.
+     */
+    void cancel() {
+        consumerClosed = true;
+        queue.clear();
+        var current = producer;
+        if (current != null) {
+            // interrupts a producer waiting for room in the queue, or one still writing the bundle
+            current.cancel(true);
+        }
+    }
+
+    /**
+     * The content of one streamed bundle, a new pipe for each attempt of its upload.
+     */
+    static final class Streams implements Supplier<InputStream>, AutoCloseable {
+
+        private final BundleWriter writer;
+        private final List<BundlePlan.Source> sources;
+        private final int chunks;
+        private final ExecutorService executor;
+        private final List<BundlePipe> pipes = new CopyOnWriteArrayList<>();
+
+        /**
+         * @param executor runs the producers, owned by the caller
+         */
+        Streams(BundleWriter writer, List<BundlePlan.Source> sources, int chunks, ExecutorService executor) {
+            this.writer = writer;
+            this.sources = sources;
+            this.chunks = chunks;
+            this.executor = executor;
+        }
+
+        @Override
+        public InputStream get() {
+            var pipe = open(writer, sources, chunks, executor);
+            pipes.add(pipe);
+            return pipe.stream();
+        }
+
+        /**
+         * Stops the producers of all attempts, called once the upload returned or failed.
+         */
+        @Override
+        public void close() {
+            for (BundlePipe pipe : pipes) {
+                pipe.cancel();
+            }
+            pipes.clear();
+        }
+    }
+
+    private final class Sink extends OutputStream {
+
+        private byte[] chunk = new byte[CHUNK_SIZE];
+        private int position;
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (position == chunk.length) {
+                flushChunk();
+            }
+            chunk[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (position == chunk.length) {
+                    flushChunk();
+                }
+                int n = Math.min(len, chunk.length - position);
+                System.arraycopy(b, off, chunk, position, n);
+                position += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (position > 0) {
+                flushChunk();
+            }
+        }
+
+        /**
+         * Signals the end of the bundle, only called once the writer succeeded.
+         */
+        void complete() throws IOException {
+            close();
+            put(EOF);
+        }
+
+        private void flushChunk() throws IOException {
+            byte[] full = position == chunk.length ? chunk : Arrays.copyOf(chunk, position);
+            put(full);
+            chunk = new byte[CHUNK_SIZE];
+            position = 0;
+        }
+
+        private void put(byte[] data) throws IOException {
+            try {
+                while (!queue.offer(data, 100, TimeUnit.MILLISECONDS)) {
+                    if (consumerClosed) {
+                        throw new IOException("Bundle stream closed by the consumer");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while streaming bundle");
+            }
+        }
+    }
+
+    private final class Source extends InputStream {
+
+        private byte[] chunk;
+        private int position;
+        private boolean eof;
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureChunk()) {
+                return -1;
+            }
+            return chunk[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureChunk()) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            consumerClosed = true;
+            queue.clear();
+        }
+
+        private boolean ensureChunk() throws IOException {
+            while (!eof && (chunk == null || position == chunk.length)) {
+                byte[] next;
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while reading bundle stream");
+                }
+                if (next == EOF) {
+                    eof = true;
+                } else {
+                    chunk = next;
+                    position = 0;
+                }
+            }
+            if (failure != null) {
+                throw new IOException("Failed to create bundle", failure);
+            }
+            return !eof;
+        }
+    }
+}
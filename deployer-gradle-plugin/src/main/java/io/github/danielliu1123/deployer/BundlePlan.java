@@ -0,0 +1,328 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Decides which files go into which bundle.
+ *
+ * <p> Files are grouped by the directory they are staged in, which for a Maven repository layout
+ * is the GAV directory ({@code group/artifact/version}). Groups are never split, so an artifact,
+ * its POM, signatures and checksums always end up in the same bundle.
+ *
+ * @author Freeman
+ */
+final class BundlePlan {
+
+    private BundlePlan() {}
+
+    /**
+     * A dir that does not exist is left out with a warning, e.g. a staging repository nothing was published to.
+     *
+     * @return the existing {@code dirs}
+     * @throws IllegalArgumentException if one of {@code dirs} exists but is not a directory
+     */
+    static List<Path> directories(Collection<File> dirs, Logger logger) {
+        List<Path> result = new ArrayList<>();
+        for (File dir : dirs) {
+            Path path = dir.toPath();
+            if (Files.isDirectory(path)) {
+                result.add(path);
+            } else if (Files.exists(path)) {
+                throw new IllegalArgumentException("The provided path is not a directory: " + path);
+            } else {
+                logger.warn("Skipping {}, it does not exist", path);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lists all regular files under {@code dirs}, entry names relative to their dir.
+     *
+     * <p> Dirs are walked in parallel, and the resulting index is checked before anything is bundled:
+     * an entry staged in several dirs, e.g. a shared parent POM, is kept once when all copies have the same content,
+     * otherwise the scan fails listing every such entry.
+     *
+     * @param sort whether to sort the result by entry name, otherwise walk order is kept
+     */
+    static List<Source> scan(List<Path> dirs, boolean sort) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), dirs.size())),
+                new NamedThreadFactory("deployer-scan"));
+        try {
+            List<Future<List<Source>>> walks = new ArrayList<>();
+            for (Path dir : dirs) {
+                walks.add(executor.submit(() -> walk(dir)));
+            }
+            Map<String, List<Source>> index = new LinkedHashMap<>();
+            for (var walk : walks) {
+                for (Source source : await(walk)) {
+                    index.computeIfAbsent(source.name(), k -> new ArrayList<>(1)).add(source);
+                }
+            }
+
+            List<Source> sources = new ArrayList<>(index.size());
+            List<List<Source>> duplicates = new ArrayList<>();
+            for (List<Source> copies : index.values()) {
+                sources.add(copies.get(0));
+                if (copies.size() > 1) {
+                    duplicates.add(copies);
+                }
+            }
+            checkDuplicates(duplicates, executor);
+
+            if (sort) {
+                // walk order depends on the file system, the bundle must not
+                sources.sort(Comparator.comparing(Source::name));
+            }
+            return sources;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<Source> walk(Path dir) throws IOException {
+        List<Source> sources = new ArrayList<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    var name = dir.relativize(file).toString().replace('\\', '/');
+                    sources.add(new Source(name, file, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return sources;
+    }
+
+    /**
+     * Fails if the copies of an entry differ, comparing sizes first and SHA-256 hashes only when they are equal.
+     */
+    private static void checkDuplicates(List<List<Source>> duplicates, ExecutorService executor) throws IOException {
+        Map<Path, Future<String>> hashes = new LinkedHashMap<>();
+        for (List<Source> copies : duplicates) {
+            if (sameSize(copies)) {
+                for (Source copy : copies) {
+                    hashes.computeIfAbsent(copy.file(), file -> executor.submit(() -> sha256Of(file)));
+                }
+            }
+        }
+        List<String> conflicts = new ArrayList<>();
+        for (List<Source> copies : duplicates) {
+            Set<String> contents = new LinkedHashSet<>();
+            for (Source copy : copies) {
+                var hash = hashes.get(copy.file());
+                contents.add(hash == null ? String.valueOf(copy.size()) : await(hash));
+            }
+            if (contents.size() > 1) {
+                conflicts.add(copies.get(0).name() + " in "
+                        + copies.stream().map(copy -> copy.file().toString()).toList());
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            throw new IllegalStateException(
+                    "%d entries are staged with different content in several dirs:\n  - %s"
+                            .formatted(conflicts.size(), String.join("\n  - ", conflicts)));
+        }
+    }
+
+    private static boolean sameSize(List<Source> copies) {
+        return copies.stream().mapToLong(Source::size).distinct().count() == 1;
+    }
+
+    private static String sha256Of(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("Failed to scan", e.getCause());
+        }
+    }
+
+    /**
+     * Splits sources into shards of at most {@code maxSize} bytes (uncompressed), keeping each GAV whole.
+     *
+     * <p> A GAV larger than {@code maxSize} gets a shard of its own. Shards keep the relative order of the sources.
+     *
+     * @param maxSize maximum shard size in bytes, {@code <= 0} means no limit
+     */
+    static List<List<Source>> split(List<Source> sources, long maxSize) {
+        if (maxSize <= 0 || sources.isEmpty()) {
+            return List.of(sources);
+        }
+
+        Map<String, List<Source>> groups = new LinkedHashMap<>();
+        for (Source source : sources) {
+            groups.computeIfAbsent(gavOf(source.name()), k -> new ArrayList<>()).add(source);
+        }
+
+        // first fit decreasing, ties broken by GAV so the result is stable
+        List<Map.Entry<String, List<Source>>> ordered = new ArrayList<>(groups.entrySet());
+        ordered.sort(Comparator.<Map.Entry<String, List<Source>>>comparingLong(e -> -size(e.getValue()))
+                .thenComparing(Map.Entry::getKey));
+
+        List<List<String>> shardGavs = new ArrayList<>();
+        List<Long> shardSizes = new ArrayList<>();
+        for (var group : ordered) {
+            long size = size(group.getValue());
+            int target = -1;
+            for (int i = 0; i < shardSizes.size(); i++) {
+                if (shardSizes.get(i) + size <= maxSize) {
+                    target = i;
+                    break;
+                }
+            }
+            if (target < 0) {
+                shardGavs.add(new ArrayList<>());
+                shardSizes.add(0L);
+                target = shardSizes.size() - 1;
+            }
+            shardGavs.get(target).add(group.getKey());
+            shardSizes.set(target, shardSizes.get(target) + size);
+        }
+
+        Map<String, Integer> shardOfGav = new LinkedHashMap<>();
+        for (int i = 0; i < shardGavs.size(); i++) {
+            for (String gav : shardGavs.get(i)) {
+                shardOfGav.put(gav, i);
+            }
+        }
+        List<List<Source>> shards = new ArrayList<>();
+        for (int i = 0; i < shardGavs.size(); i++) {
+            shards.add(new ArrayList<>());
+        }
+        for (Source source : sources) {
+            shards.get(shardOfGav.get(gavOf(source.name()))).add(source);
+        }
+        return shards;
+    }
+
+    /**
+     * @return {@code <baseName>-bundle.zip} for a single bundle, {@code <baseName>-bundle-<n>.zip} otherwise
+     */
+    static String bundleName(String baseName, int index, int count) {
+        return count == 1 ? "%s-bundle.zip".formatted(baseName) : "%s-bundle-%d.zip".formatted(baseName, index + 1);
+    }
+
+    /**
+     * @return the directory part of an entry name, e.g. {@code com/example/demo/1.0.0}
+     */
+    static String gavOf(String name) {
+        int slash = name.lastIndexOf('/');
+        return slash < 0 ? "" : name.substring(0, slash);
+    }
+
+    /**
+     * @return whether {@code name} is a {@code maven-metadata.xml}, or one of its checksums or signature
+     */
+    static boolean isMetadata(String name) {
+        return name.startsWith("maven-metadata", name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * The GAV directories of {@code sources}, i.e. those holding artifacts. The directory of a GA only holds
+     * the {@code maven-metadata.xml} listing its versions, as written by {@code maven-publish}.
+     *
+     * @return GAV directories, in the order of {@code sources}
+     */
+    static Set<String> gavsOf(List<Source> sources) {
+        Set<String> gavs = new LinkedHashSet<>();
+        for (Source source : sources) {
+            if (!isMetadata(source.name())) {
+                gavs.add(gavOf(source.name()));
+            }
+        }
+        return gavs;
+    }
+
+    /**
+     * @return {@code sources} without the files of the {@code gavs} directories, nor the metadata of a GA
+     * whose versions are all in {@code gavs}
+     */
+    static List<Source> exclude(List<Source> sources, Set<String> gavs) {
+        if (gavs.isEmpty()) {
+            return sources;
+        }
+        var kept = sources.stream()
+                .filter(source -> !gavs.contains(gavOf(source.name())))
+                .toList();
+        Set<String> excludedGas = new HashSet<>();
+        for (String gav : gavs) {
+            excludedGas.add(gavOf(gav));
+        }
+        Set<String> keptGas = new HashSet<>();
+        for (String gav : gavsOf(kept)) {
+            keptGas.add(gavOf(gav));
+        }
+        return kept.stream()
+                .filter(source -> {
+                    String dir = gavOf(source.name());
+                    return !isMetadata(source.name()) || !excludedGas.contains(dir) || keptGas.contains(dir);
+                })
+                .toList();
+    }
+
+    private static long size(List<Source> sources) {
+        long size = 0;
+        for (Source source : sources) {
+            size += source.size();
+        }
+        return size;
+    }
+
+    /**
+     * A file to bundle.
+     *
+     * @param name         entry name, '/' separated and relative to the configured dir
+     * @param file         the file
+     * @param size         file size in bytes
+     * @param lastModified last modified time in epoch millis
+     */
+    record Source(String name, Path file, long size, long lastModified) {}
+}
@@ -0,0 +1,206 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.inject.Inject;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileType;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.ServiceReference;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.ChangeType;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkerExecutor;
+
+/**
+ * Packages the configured dirs into the zip bundles uploaded by {@link DeployTask}.
+ *
+ * <p> The bundle is a regular task output: it is up-to-date when no staged file changed, can be loaded
+ * from the build cache, and on incremental runs only added or modified files are compressed again,
+ * the other entries are copied as is from the previous bundle.
+ * With {@link #getReproducible()} enabled, identical staged files produce a byte-identical bundle.
+ *
+ * <p> When {@link #getMaxBundleSize()} is set, the files are split into several bundles,
+ * each GAV directory staying whole, see {@link BundlePlan#split}.
+ *
+ * <p> In a multi-project build with {@link DeployerPluginExtension#getBundleFragments()} enabled, each subproject
+ * bundles its own dirs in a {@code deployBundleFragment} task, in parallel and cacheable,
+ * and this task only copies the compressed entries of those {@link #getFragments() fragments}.
+ *
+ * <p> With {@link #getSigningKey()} set, files without a signature are signed in parallel while they are bundled.
+ * The key is not an input, only its {@link #getSigningKeyFingerprint() fingerprint} is,
+ * so the secret never ends up in the build cache or in a build scan.
+ * Signatures contain their creation time, so a signed bundle is only byte-identical for the entries reused
+ * from the previous bundle.
+ *
+ * <p> The bundles are written by a {@link BundleAction} on the worker executor, which a cancelled build interrupts.
+ *
+ * @author Freeman
+ */
+@CacheableTask
+public abstract class BundleTask extends DefaultTask {
+
+    @Incremental
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getDirs();
+
+    /**
+     * Does not affect the bundle content.
+     */
+    @Internal
+    public abstract Property<Integer> getThreads();
+
+    @Input
+    public abstract Property<Integer> getCompressionLevel();
+
+    @Input
+    public abstract ListProperty<String> getStoredExtensions();
+
+    @Input
+    public abstract ListProperty<String> getFastCompressionExtensions();
+
+    @Input
+    public abstract Property<Integer> getFastCompressionLevel();
+
+    @Input
+    public abstract Property<Boolean> getReproducible();
+
+    /**
+     * Checksum files ({@code md5}, {@code sha1}, {@code sha256}, {@code sha512}) added to the bundle
+     * for every file that does not have them.
+     */
+    @Input
+    public abstract ListProperty<String> getChecksums();
+
+    /**
+     * ASCII armored secret key signing every file that has no {@code .asc} signature, unset to not sign.
+     */
+    @Internal
+    public abstract Property<String> getSigningKey();
+
+    /**
+     * Fingerprint of {@link #getSigningKey()}, a different key produces different signatures.
+     */
+    @Input
+    @Optional
+    public Provider<String> getSigningKeyFingerprint() {
+        return getSigningKey().map(Signer::fingerprintOf);
+    }
+
+    /**
+     * Does not affect the bundle content.
+     */
+    @Internal
+    public abstract Property<String> getSigningPassword();
+
+    /**
+     * Maximum size in bytes of the files packaged into one bundle, unset for a single bundle.
+     */
+    @Input
+    @Optional
+    public abstract Property<Long> getMaxBundleSize();
+
+    /**
+     * GAV directories left out, one per line, see {@link CheckPublishedTask}.
+     */
+    @InputFile
+    @Optional
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getPublishedGavs();
+
+    /**
+     * Directories of bundles written by {@code deployBundleFragment} tasks from some of the {@link #getDirs()},
+     * their entries are copied as is, see {@link BundleWriter.Previous#fragments()}.
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    public abstract ConfigurableFileCollection getFragments();
+
+    /**
+     * Bundles are named {@code <baseName>-bundle.zip}, or {@code <baseName>-bundle-<n>.zip} when split.
+     */
+    @Input
+    public abstract Property<String> getBaseName();
+
+    /**
+     * Directory receiving the bundles, each one with its hex encoded SHA-256 in a {@code .sha256} sibling.
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getDestinationDirectory();
+
+    @ServiceReference(DeployReportService.NAME)
+    public abstract Property<DeployReportService> getReport();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    @TaskAction
+    public void bundle(InputChanges inputChanges) {
+        List<File> changed = new ArrayList<>();
+        if (inputChanges.isIncremental()) {
+            for (var change : inputChanges.getFileChanges(getDirs())) {
+                if (change.getFileType() == FileType.FILE && change.getChangeType() != ChangeType.REMOVED) {
+                    changed.add(change.getFile());
+                }
+            }
+        }
+        getWorkerExecutor().noIsolation().submit(BundleAction.class, parameters -> {
+            parameters.getDirs().from(getDirs());
+            parameters.getIncremental().set(inputChanges.isIncremental());
+            parameters.getChangedFiles().set(changed);
+            parameters.getFragments().from(getFragments());
+            parameters.getPublishedGavs().set(getPublishedGavs());
+            parameters.getThreads().set(getThreads());
+            parameters.getCompressionLevel().set(getCompressionLevel());
+            parameters.getStoredExtensions().set(getStoredExtensions());
+            parameters.getFastCompressionExtensions().set(getFastCompressionExtensions());
+            parameters.getFastCompressionLevel().set(getFastCompressionLevel());
+            parameters.getReproducible().set(getReproducible());
+            parameters.getChecksums().set(getChecksums());
+            parameters.getSigningKey().set(getSigningKey());
+            parameters.getSigningPassword().set(getSigningPassword());
+            parameters.getMaxBundleSize().set(getMaxBundleSize());
+            parameters.getBaseName().set(getBaseName());
+            parameters.getDestinationDirectory().set(getDestinationDirectory());
+            parameters.getReport().set(getReport());
+        });
+    }
+
+    /**
+     * @return the bundles in {@code dir}, sorted by name
+     */
+    static List<Path> listBundles(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (var files = Files.list(dir)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(".zip"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static Path hashFileOf(Path bundle) {
+        return bundle.resolveSibling(bundle.getFileName() + ".sha256");
+    }
+}
@@ -0,0 +1,351 @@
+package io.github.danielliu1123.deployer;
+
+import io.github.danielliu1123.deployer.BundlePlan.Source;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks staged artifacts against the Maven Central requirements before anything is uploaded.
+ *
+ * <p> Files are indexed by GAV directory and the directories are checked in parallel, each one for:
+ * <ul>
+ *     <li>a POM with the required elements and coordinates matching the directory</li>
+ *     <li>a release version and file names matching artifactId and version</li>
+ *     <li>a signature and the required checksums for every file</li>
+ *     <li>sources and javadoc jars next to a main jar</li>
+ * </ul>
+ *
+ * @author Freeman
+ * @see <a href="https://central.sonatype.org/publish/requirements/">Requirements</a>
+ */
+final class BundleValidator {
+
+    /**
+     * Checksums Maven Central requires for every file, sha256 and sha512 are optional.
+     */
+    static final List<String> REQUIRED_CHECKSUMS = List.of("md5", "sha1");
+
+    private static final List<String> REQUIRED_POM_ELEMENTS =
+            List.of("name", "description", "url", "licenses/license", "developers/developer", "scm/url");
+
+    /**
+     * Required POM elements Maven inherits from a {@code <parent>}, only {@code name} is not inherited.
+     */
+    private static final Set<String> INHERITED_POM_ELEMENTS =
+            Set.of("description", "url", "licenses/license", "developers/developer", "scm/url");
+
+    private final Options options;
+
+    BundleValidator(Options options) {
+        this.options = options;
+    }
+
+    /**
+     * @param sources files to validate, see {@link BundlePlan#scan}
+     */
+    Report validate(List<Source> sources) throws IOException {
+        long start = System.nanoTime();
+        Map<String, List<Source>> gavs = new LinkedHashMap<>();
+        Map<String, Source> poms = new HashMap<>();
+        for (Source source : sources) {
+            if (source.name().endsWith(".pom")) {
+                poms.put(source.name(), source);
+            }
+            if (!isMetadata(source.name())) {
+                gavs.computeIfAbsent(BundlePlan.gavOf(source.name()), k -> new ArrayList<>())
+                        .add(source);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(options.threads(), gavs.size())), new NamedThreadFactory("deployer-validate"));
+        try {
+            List<Future<List<Problem>>> futures = new ArrayList<>();
+            for (var e : gavs.entrySet()) {
+                futures.add(executor.submit(() -> validateGav(e.getKey(), e.getValue(), poms)));
+            }
+            List<Problem> problems = new ArrayList<>();
+            for (var future : futures) {
+                problems.addAll(future.get());
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            return new Report(gavs.size(), sources.size(), millis, problems);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while validating", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("Failed to validate", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Problem> validateGav(String gav, List<Source> files, Map<String, Source> poms)
+            throws IOException {
+        List<Problem> problems = new ArrayList<>();
+        String[] segments = gav.split("/");
+        if (segments.length < 3) {
+            problems.add(new Problem(gav, null, "not a group/artifactId/version directory"));
+            return problems;
+        }
+        String version = segments[segments.length - 1];
+        String artifactId = segments[segments.length - 2];
+        String groupId = String.join(".", List.of(segments).subList(0, segments.length - 2));
+        String prefix = artifactId + "-" + version;
+
+        if (version.endsWith("-SNAPSHOT")) {
+            problems.add(new Problem(gav, null, "SNAPSHOT versions cannot be released"));
+        }
+
+        Set<String> names = files.stream().map(s -> fileName(s.name())).collect(Collectors.toSet());
+        for (Source source : files) {
+            String name = fileName(source.name());
+            // signatures and checksums are covered by the file they belong to
+            if (Checksums.isExempt(name)) {
+                continue;
+            }
+            if (!name.startsWith(prefix + ".") && !name.startsWith(prefix + "-")) {
+                problems.add(new Problem(gav, name, "file name does not start with " + prefix));
+            }
+            if (!options.signed() && !names.contains(name + ".asc")) {
+                problems.add(new Problem(gav, name, "missing signature " + name + ".asc"));
+            }
+            for (String algorithm : REQUIRED_CHECKSUMS) {
+                if (!options.generatedChecksums().contains(algorithm) && !names.contains(name + "." + algorithm)) {
+                    problems.add(new Problem(gav, name, "missing checksum " + name + "." + algorithm));
+                }
+            }
+        }
+
+        String pomName = prefix + ".pom";
+        var pom = files.stream()
+                .filter(s -> fileName(s.name()).equals(pomName))
+                .findFirst();
+        if (pom.isEmpty()) {
+            problems.add(new Problem(gav, null, "missing POM " + pomName));
+        } else {
+            validatePom(gav, pom.get(), groupId, artifactId, version, poms, problems);
+        }
+
+        if (names.contains(prefix + ".jar")) {
+            for (String classifier : List.of("sources", "javadoc")) {
+                var jar = prefix + "-" + classifier + ".jar";
+                if (!names.contains(jar)) {
+                    problems.add(new Problem(gav, null, "missing " + jar));
+                }
+            }
+        }
+        return problems;
+    }
+
+    private static void validatePom(
+            String gav,
+            Source pom,
+            String groupId,
+            String artifactId,
+            String version,
+            Map<String, Source> poms,
+            List<Problem> problems)
+            throws IOException {
+        String name = fileName(pom.name());
+        Element project;
+        try (InputStream in = Files.newInputStream(pom.file())) {
+            project = parseXml(in);
+        } catch (SAXException e) {
+            problems.add(new Problem(gav, name, "invalid POM: " + e.getMessage()));
+            return;
+        }
+
+        var parent = child(project, "parent");
+        checkCoordinate(gav, name, "groupId", text(project, "groupId", parent), groupId, problems);
+        checkCoordinate(gav, name, "artifactId", text(project, "artifactId", null), artifactId, problems);
+        checkCoordinate(gav, name, "version", text(project, "version", parent), version, problems);
+
+        for (String path : REQUIRED_POM_ELEMENTS) {
+            if (!isSet(project, path, poms)) {
+                problems.add(new Problem(gav, name, "missing <" + path.replace("/", "><") + ">"));
+            }
+        }
+    }
+
+    /**
+     * A parent POM that is not staged, e.g. one released before, cannot be checked here
+     * and is assumed to set the inherited elements, Central checks them against the resolved POM.
+     *
+     * @return whether {@code path} is set in {@code project} or inherited from one of its parents
+     */
+    private static boolean isSet(Element project, String path, Map<String, Source> poms) throws IOException {
+        Set<String> visited = new HashSet<>();
+        Element pom = project;
+        while (find(pom, path) == null) {
+            var parent = child(pom, "parent");
+            if (parent == null || !INHERITED_POM_ELEMENTS.contains(path)) {
+                return false;
+            }
+            String groupId = text(parent, "groupId", null);
+            String artifactId = text(parent, "artifactId", null);
+            String version = text(parent, "version", null);
+            if (groupId == null || artifactId == null || version == null) {
+                return false;
+            }
+            String parentName = "%s/%s/%s/%s-%s.pom"
+                    .formatted(groupId.replace('.', '/'), artifactId, version, artifactId, version);
+            var source = poms.get(parentName);
+            if (source == null) {
+                return true;
+            }
+            if (!visited.add(parentName)) {
+                return false;
+            }
+            try (InputStream in = Files.newInputStream(source.file())) {
+                pom = parseXml(in);
+            } catch (SAXException e) {
+                // reported when the parent itself is validated
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the element at {@code path} below {@code element}, e.g. {@code scm/url}, or {@code null}
+     */
+    private static Element find(Element element, String path) {
+        for (String segment : path.split("/")) {
+            element = element != null ? child(element, segment) : null;
+        }
+        return element;
+    }
+
+    private static void checkCoordinate(
+            String gav, String file, String element, String actual, String expected, List<Problem> problems) {
+        if (actual == null) {
+            problems.add(new Problem(gav, file, "missing <" + element + ">"));
+        } else if (!actual.equals(expected)) {
+            problems.add(new Problem(
+                    gav, file, "<%s> is '%s' but the directory says '%s'".formatted(element, actual, expected)));
+        }
+    }
+
+    /**
+     * @return the text of the {@code name} child of {@code element}, or else of {@code fallback}
+     */
+    private static String text(Element element, String name, Element fallback) {
+        var child = child(element, name);
+        if (child == null && fallback != null) {
+            child = child(fallback, name);
+        }
+        return child != null ? child.getTextContent().trim() : null;
+    }
+
+    /**
+     * Parses a POM or a {@code maven-metadata.xml}, external entities and DOCTYPEs are rejected.
+     *
+     * @return the document element
+     */
+    static Element parseXml(InputStream in) throws IOException, SAXException {
+        try {
+            var factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            var builder = factory.newDocumentBuilder();
+            // report errors as exceptions only, not on stderr
+            builder.setErrorHandler(new DefaultHandler());
+            return builder.parse(in).getDocumentElement();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the first child element of {@code element} named {@code name}, or {@code null}
+     */
+    static Element child(Element element, String name) {
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element e && name.equals(e.getTagName())) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isMetadata(String name) {
+        return fileName(name).startsWith("maven-metadata");
+    }
+
+    private static String fileName(String name) {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * @param threads            number of GAV directories checked at the same time
+     * @param generatedChecksums checksums added while bundling, not required on disk
+     * @param signed             whether signatures are added while bundling, so not required on disk
+     */
+    record Options(int threads, Collection<String> generatedChecksums, boolean signed) {}
+
+    /**
+     * @param gav     GAV directory, e.g. {@code com/example/demo/1.0.0}
+     * @param file    file name within the directory, {@code null} for a problem of the directory
+     * @param message what is wrong
+     */
+    record Problem(String gav, String file, String message) {}
+
+    /**
+     * @param gavs     number of GAV directories checked
+     * @param files    number of files checked
+     * @param millis   time taken
+     * @param problems problems found, grouped by GAV directory
+     */
+    record Report(int gavs, int files, long millis, List<Problem> problems) {
+
+        boolean isValid() {
+            return problems.isEmpty();
+        }
+
+        /**
+         * @return a human readable report, one line per problem
+         */
+        String format() {
+            var result = new StringBuilder("Validated %d GAV directories (%d files) in %d ms, %d problem(s)"
+                    .formatted(gavs, files, millis, problems.size()));
+            String gav = null;
+            for (Problem problem : problems) {
+                if (!problem.gav().equals(gav)) {
+                    gav = problem.gav();
+                    result.append("\n  ").append(gav);
+                }
+                result.append("\n    - ");
+                if (problem.file() != null) {
+                    result.append(problem.file()).append(": ");
+                }
+                result.append(problem.message());
+            }
+            return result.toString();
+        }
+    }
+}
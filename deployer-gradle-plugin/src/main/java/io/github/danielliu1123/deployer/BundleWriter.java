@@ -0,0 +1,439 @@
+package io.github.danielliu1123.deployer;
+
+import io.github.danielliu1123.deployer.BundlePlan.Source;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Packages the configured dirs into a single zip bundle, compressing entries on several threads.
+ *
+ * <p> Entries are compressed concurrently and written in walk order by a single assembling thread,
+ * so the result is one valid zip regardless of which entry finishes first.
+ * Already-compressed files (jar, zip, war) are stored as is with a precomputed CRC,
+ * signatures and checksum files are deflated with a cheap level.
+ * Large already-compressed files are wrapped in uncompressed deflate blocks while being written,
+ * so they are read once, like every other file.
+ *
+ * <p> In reproducible mode entries get constant timestamps and permissions, together with
+ * {@link BundlePlan#scan sorted} sources identical staged files always produce a byte-identical bundle.
+ *
+ * <p> With {@link Options#checksums()} set, missing checksum files are added next to each entry,
+ * computed from the bytes already read for compression, so no file is read again for its digests.
+ * With {@link Options#signer()} set, missing signatures are computed the same way, on the compressing threads.
+ *
+ * <p> Entries found in {@link Previous#fragments() fragments} are copied compressed as they are, only the central
+ * directory is written anew, so merging the bundles of several subprojects neither inflates nor deflates anything.
+ *
+ * @author Freeman
+ */
+final class BundleWriter {
+
+    /**
+     * Entries up to this size are compressed in memory by the worker threads,
+     * larger ones are streamed by the assembling thread to keep memory bounded.
+     */
+    static final long IN_MEMORY_THRESHOLD = 4L * 1024 * 1024;
+
+    private final Options options;
+
+    BundleWriter(Options options) {
+        this.options = options;
+    }
+
+    /**
+     * Writes {@code sources} to {@code out}, in the given order.
+     *
+     * @return statistics of the written bundle
+     */
+    Result write(List<Source> sources, OutputStream out) throws IOException {
+        return write(sources, out, null);
+    }
+
+    /**
+     * Same as {@link #write(List, OutputStream)}, but copies the compressed entries of files that did not change
+     * from previously written bundles or from fragments instead of compressing them again.
+     *
+     * @param previous previous bundles and fragments, or {@code null}
+     */
+    Result write(List<Source> sources, OutputStream out, Previous previous) throws IOException {
+        int threads = Math.max(1, options.threads());
+        // bound the number of entries compressed ahead of the assembling thread
+        int window = threads * 2;
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("deployer-bundle"));
+        var digest = newSha256();
+        Set<String> names = options.checksums().isEmpty() && options.signer() == null
+                ? Set.of()
+                : sources.stream().map(Source::name).collect(Collectors.toSet());
+        try (var zip = new ZipWriter(new DigestOutputStream(out, digest))) {
+            var pending = new ArrayDeque<Future<Prepared>>();
+            int next = 0;
+            long bytesIn = 0;
+            int reusedCount = 0;
+            int generated = 0;
+            int signatures = 0;
+            for (Source source : sources) {
+                while (next < sources.size() && pending.size() < window) {
+                    Source ahead = sources.get(next++);
+                    var missing = missingChecksums(ahead, names);
+                    Reusable reusable = previous != null ? previous.reusable(ahead, missing) : null;
+                    pending.add(
+                            reusable != null
+                                    ? CompletableFuture.completedFuture(Prepared.reused(reusable))
+                                    : prepare(ahead, missing, executor));
+                }
+                Prepared prepared = await(pending.poll());
+                var missing = missingChecksums(source, names);
+                if (prepared.reused() != null) {
+                    var reused = prepared.reused();
+                    copyRaw(zip, reused.zip(), reused.entry());
+                    for (String algorithm : missing) {
+                        copyRaw(zip, reused.zip(), reused.zip().getEntry(source.name() + "." + algorithm));
+                    }
+                    reusedCount++;
+                } else {
+                    var checksums = write(zip, source, prepared, missing, options.reproducible());
+                    writeChecksums(zip, source, checksums, options.reproducible());
+                }
+                for (String algorithm : missing) {
+                    if (algorithm.equals(Checksums.SIGNATURE)) {
+                        signatures++;
+                    } else {
+                        generated++;
+                    }
+                }
+                bytesIn += source.size();
+            }
+            zip.finish();
+            var sha256 = HexFormat.of().formatHex(digest.digest());
+            return new Result(
+                    sources.size() + generated + signatures,
+                    bytesIn,
+                    zip.getBytesWritten(),
+                    reusedCount,
+                    generated,
+                    signatures,
+                    sha256);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the algorithms of the signature and checksum files to generate for {@code source},
+     * none if it has them all
+     */
+    private List<String> missingChecksums(Source source, Set<String> names) {
+        if ((options.checksums().isEmpty() && options.signer() == null) || Checksums.isExempt(source.name())) {
+            return List.of();
+        }
+        List<String> missing = new ArrayList<>();
+        if (options.signer() != null && !names.contains(source.name() + "." + Checksums.SIGNATURE)) {
+            missing.add(Checksums.SIGNATURE);
+        }
+        for (String algorithm : options.checksums()) {
+            if (!names.contains(source.name() + "." + algorithm)) {
+                missing.add(algorithm);
+            }
+        }
+        return missing;
+    }
+
+    private Future<Prepared> prepare(Source source, List<String> checksums, ExecutorService executor) {
+        String extension = extensionOf(source.name());
+        boolean stored = options.storedExtensions().contains(extension);
+        if (stored && source.size() <= IN_MEMORY_THRESHOLD) {
+            return executor.submit(() -> prepareStored(source, checksums));
+        }
+        int level;
+        if (stored) {
+            // a STORED entry needs its CRC in the local header, i.e. a first read of the whole file,
+            // a DEFLATED entry can trail it in a data descriptor, which ZipInputStream rejects for STORED ones
+            level = Deflater.NO_COMPRESSION;
+        } else if (options.fastExtensions().contains(extension)) {
+            level = options.fastCompressionLevel();
+        } else {
+            level = options.compressionLevel();
+        }
+        if (source.size() > IN_MEMORY_THRESHOLD) {
+            // deflated while being written, nothing to do ahead of time
+            return CompletableFuture.completedFuture(
+                    new Prepared(ZipEntry.DEFLATED, 0, null, 0, true, level, null, null));
+        }
+        return executor.submit(() -> prepareDeflated(source, level, checksums));
+    }
+
+    private Prepared prepareStored(Source source, List<String> algorithms) throws IOException {
+        byte[] data = read(source);
+        var crc = new CRC32();
+        crc.update(data);
+        var checksums = new Checksums(algorithms, options.signer());
+        checksums.update(data, 0, data.length);
+        return new Prepared(
+                ZipEntry.STORED, crc.getValue(), data, data.length, false, 0, checksums.finish(), null);
+    }
+
+    private Prepared prepareDeflated(Source source, int level, List<String> algorithms) throws IOException {
+        byte[] data = read(source);
+        var crc = new CRC32();
+        crc.update(data);
+        var checksums = new Checksums(algorithms, options.signer());
+        checksums.update(data, 0, data.length);
+
+        var deflater = new Deflater(level, true);
+        var compressed = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[Math.min(64 * 1024, Math.max(512, data.length))];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                compressed.write(buffer, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        if (compressed.size() >= data.length) {
+            // incompressible, deflating would only make it bigger
+            return new Prepared(
+                    ZipEntry.STORED, crc.getValue(), data, data.length, false, 0, checksums.finish(), null);
+        }
+        return new Prepared(
+                ZipEntry.DEFLATED,
+                crc.getValue(),
+                compressed.toByteArray(),
+                compressed.size(),
+                false,
+                0,
+                checksums.finish(),
+                null);
+    }
+
+    private static byte[] read(Source source) throws IOException {
+        byte[] data = Files.readAllBytes(source.file());
+        if (data.length != source.size()) {
+            throw new IOException("Size of '%s' changed while bundling, expected %d bytes but got %d"
+                    .formatted(source.name(), source.size(), data.length));
+        }
+        return data;
+    }
+
+    /**
+     * @return signature and hex encoded digests of {@code source} by algorithm, for the {@code checksums} requested
+     */
+    private Map<String, String> write(
+            ZipWriter zip, Source source, Prepared prepared, List<String> checksums, boolean reproducible)
+            throws IOException {
+        long dosTime = dosTimeOf(source, reproducible);
+        var header = new ZipWriter.Header(
+                source.name(),
+                prepared.method(),
+                dosTime,
+                ZipWriter.Header.DEFAULT_FILE_MODE,
+                prepared.crc(),
+                prepared.compressedSize(),
+                source.size());
+        if (prepared.streamed()) {
+            // digests are computed from the same read as the compression
+            var digests = new Checksums(checksums, options.signer());
+            try (InputStream in = digests.wrap(Files.newInputStream(source.file()))) {
+                zip.writeDeflatedEntry(header, in, source.size(), prepared.level());
+            }
+            return digests.finish();
+        }
+        zip.writeEntry(header, prepared.data());
+        return prepared.checksums();
+    }
+
+    private static void writeChecksums(
+            ZipWriter zip, Source source, Map<String, String> checksums, boolean reproducible) throws IOException {
+        for (var e : checksums.entrySet()) {
+            byte[] data = e.getValue().getBytes(StandardCharsets.US_ASCII);
+            var crc = new CRC32();
+            crc.update(data);
+            var header = new ZipWriter.Header(
+                    source.name() + "." + e.getKey(),
+                    ZipEntry.STORED,
+                    dosTimeOf(source, reproducible),
+                    ZipWriter.Header.DEFAULT_FILE_MODE,
+                    crc.getValue(),
+                    data.length,
+                    data.length);
+            zip.writeEntry(header, data);
+        }
+    }
+
+    private static void copyRaw(ZipWriter zip, ZipReader reader, ZipReader.Entry entry) throws IOException {
+        try (InputStream in = reader.openRaw(entry)) {
+            zip.writeRawEntry(entry.header(), in);
+        }
+    }
+
+    private static long dosTimeOf(Source source, boolean reproducible) {
+        return reproducible ? ZipWriter.CONSTANT_DOS_TIME : ZipWriter.toDosTime(source.lastModified());
+    }
+
+    private static Prepared await(Future<Prepared> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while bundling", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Strips a leading dot and lower-cases the given file extensions.
+     */
+    static Set<String> normalizeExtensions(Collection<String> extensions) {
+        return extensions.stream()
+                .map(e -> e.startsWith(".") ? e.substring(1) : e)
+                .map(e -> e.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String extensionOf(String name) {
+        int slash = name.lastIndexOf('/');
+        int dot = name.lastIndexOf('.');
+        return dot > slash ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * @param threads              number of threads compressing entries
+     * @param compressionLevel     deflate level for regular entries
+     * @param storedExtensions     extensions of already-compressed files, written without compression
+     * @param fastExtensions       extensions of small text files, e.g. signatures and checksums
+     * @param fastCompressionLevel deflate level for {@code fastExtensions}
+     * @param reproducible         whether to use constant timestamps, see {@link ZipWriter#CONSTANT_DOS_TIME},
+     *                             sources are expected to be sorted
+     * @param checksums            checksum files to generate when missing, see {@link Checksums#normalize}
+     * @param signer               signs files without a signature, or {@code null} to not sign
+     */
+    record Options(
+            int threads,
+            int compressionLevel,
+            Set<String> storedExtensions,
+            Set<String> fastExtensions,
+            int fastCompressionLevel,
+            boolean reproducible,
+            Set<String> checksums,
+            Signer signer) {}
+
+    /**
+     * @param entries    number of entries in the bundle
+     * @param bytesIn    total size of the bundled files
+     * @param bytesOut   size of the bundle
+     * @param reused     number of files copied from the previous bundle
+     * @param checksums  number of generated checksum entries
+     * @param signatures number of generated signature entries
+     * @param sha256     hex encoded SHA-256 of the bundle
+     */
+    record Result(
+            int entries, long bytesIn, long bytesOut, int reused, int checksums, int signatures, String sha256) {}
+
+    /**
+     * @param zips         previously written bundles
+     * @param changedFiles files added or modified since {@code zips} were written
+     * @param fragments    bundles written from the current files of some dirs, e.g. by subprojects
+     */
+    record Previous(List<ZipReader> zips, Set<Path> changedFiles, List<ZipReader> fragments) {
+
+        Previous(List<ZipReader> zips, Set<Path> changedFiles) {
+            this(zips, changedFiles, List.of());
+        }
+
+        /**
+         * @param checksums algorithms of the signature and checksum entries generated for {@code source},
+         *                  they must be in the same previous bundle
+         */
+        Reusable reusable(Source source, List<String> checksums) {
+            var fragment = find(fragments, source, checksums);
+            if (fragment != null || changedFiles.contains(source.file())) {
+                return fragment;
+            }
+            return find(zips, source, checksums);
+        }
+
+        private static Reusable find(List<ZipReader> zips, Source source, List<String> checksums) {
+            for (ZipReader zip : zips) {
+                var entry = zip.getEntry(source.name());
+                if (entry != null
+                        && entry.header().size() == source.size()
+                        && checksums.stream().allMatch(a -> zip.getEntry(source.name() + "." + a) != null)) {
+                    return new Reusable(zip, entry);
+                }
+            }
+            return null;
+        }
+    }
+
+    private record Reusable(ZipReader zip, ZipReader.Entry entry) {}
+
+    /**
+     * @param data      compressed data, or {@code null} if the entry is streamed or reused
+     * @param streamed  whether the entry is deflated while writing, with {@code level}
+     * @param checksums signature and hex encoded digests by algorithm, {@code null} if computed while writing
+     * @param reused    entry of the previous bundle to copy, or {@code null}
+     */
+    private record Prepared(
+            int method,
+            long crc,
+            byte[] data,
+            long compressedSize,
+            boolean streamed,
+            int level,
+            Map<String, String> checksums,
+            Reusable reused) {
+
+        static Prepared reused(Reusable reusable) {
+            var header = reusable.entry().header();
+            return new Prepared(header.method(), header.crc(), null, 0, false, 0, null, reusable);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Lists the GAVs of the configured dirs that are already published, see {@link PublishedIndex}.
+ *
+ * <p> {@link BundleTask}, {@link ValidateTask} and a streamed {@link DeployTask} leave them out,
+ * so re-running a partly failed release, or releasing a monorepo where only a few modules changed versions,
+ * only deploys what is not published yet.
+ * When {@link DeployerPluginExtension#getSkipPublished()} is disabled, the list is empty.
+ *
+ * @author Freeman
+ */
+public abstract class CheckPublishedTask extends DefaultTask implements ClientOptions {
+
+    /**
+     * {@code HEAD} requests are cheap for the client and the repository.
+     */
+    private static final int CONCURRENCY = 16;
+
+    public CheckPublishedTask() {
+        // the repository changes independently of the build
+        getOutputs().upToDateWhen(task -> false);
+    }
+
+    @Internal
+    public abstract ConfigurableFileCollection getDirs();
+
+    /**
+     * @see DeployerPluginExtension#getSkipPublished()
+     */
+    @Internal
+    public abstract Property<Boolean> getSkipPublished();
+
+    @Internal
+    public abstract Property<String> getPublishedRepositoryUrl();
+
+    /**
+     * @see DeployerPluginExtension#getPublishedCacheTtl()
+     */
+    @Internal
+    public abstract Property<Duration> getPublishedCacheTtl();
+
+    /**
+     * Results of previous checks.
+     */
+    @Internal
+    public abstract RegularFileProperty getCacheFile();
+
+    /**
+     * GAV directories already published, one per line.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getPublishedFile();
+
+    @TaskAction
+    public void check() throws Exception {
+        Path publishedFile = getPublishedFile().get().getAsFile().toPath();
+        if (!getSkipPublished().get()) {
+            Files.writeString(publishedFile, "");
+            return;
+        }
+
+        List<Path> dirs = BundlePlan.directories(getDirs().getFiles(), getLogger());
+        Set<String> gavs = new LinkedHashSet<>();
+        // the directories of GAs only hold metadata, they are not checked
+        for (String gav : BundlePlan.gavsOf(BundlePlan.scan(dirs, true))) {
+            // snapshots are deployed again on purpose
+            if (!gav.endsWith("-SNAPSHOT") && gav.chars().filter(c -> c == '/').count() >= 2) {
+                gavs.add(gav);
+            }
+        }
+
+        var client = new RepositoryClient(
+                URI.create(getPublishedRepositoryUrl().get()),
+                null,
+                null,
+                PublisherClient.settingsOf(this),
+                getLogger());
+        var options = new PublishedIndex.Options(CONCURRENCY, getPublishedCacheTtl().get());
+        var index = new PublishedIndex(client, getCacheFile().get().getAsFile().toPath(), options, getLogger());
+        var result = index.findPublished(gavs, System.currentTimeMillis());
+
+        var lines = new StringBuilder();
+        for (String gav : result.published()) {
+            lines.append(gav).append('\n');
+        }
+        Files.writeString(publishedFile, lines);
+        getLogger()
+                .lifecycle(
+                        "{} of {} GAVs already published in {} ({} checked, {} ms), they are not deployed again",
+                        result.published().size(),
+                        result.gavs(),
+                        client.getBaseUri(),
+                        result.checked(),
+                        result.millis());
+        for (String gav : result.published()) {
+            getLogger().info("  - {}", gav);
+        }
+    }
+
+    /**
+     * @return the GAVs listed in {@code file} by this task, none if the file is not set or does not exist
+     */
+    static Set<String> readPublished(RegularFileProperty file) throws IOException {
+        Set<String> result = new TreeSet<>();
+        Path path = file.isPresent() ? file.get().getAsFile().toPath() : null;
+        if (path != null && Files.isRegularFile(path)) {
+            for (String line : Files.readAllLines(path)) {
+                if (!line.isBlank()) {
+                    result.add(line.trim());
+                }
+            }
+        }
+        return result;
+    }
+}
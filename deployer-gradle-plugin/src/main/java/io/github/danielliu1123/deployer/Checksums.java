@@ -0,0 +1,158 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes several checksums of a file, and optionally its signature, in a single pass over its bytes.
+ *
+ * <p> Algorithms are named after the extension of the checksum file Maven expects, e.g. {@code sha1}
+ * for {@code demo-1.0.0.jar.sha1}, the file containing the hex encoded digest only.
+ * The signature is named {@link #SIGNATURE}, for {@code demo-1.0.0.jar.asc}.
+ *
+ * @author Freeman
+ */
+final class Checksums {
+
+    /**
+     * Supported algorithms, in the order their checksum entries are written.
+     */
+    static final List<String> ALGORITHMS = List.of("md5", "sha1", "sha256", "sha512");
+
+    /**
+     * Extension of detached signatures, see {@link Signer}.
+     */
+    static final String SIGNATURE = "asc";
+
+    private final Map<String, MessageDigest> digests = new LinkedHashMap<>();
+    private final Signer.Signature signature;
+
+    Checksums(Collection<String> algorithms) {
+        this(algorithms, null);
+    }
+
+    /**
+     * @param algorithms checksums to compute, may contain {@link #SIGNATURE} to sign with {@code signer}
+     * @param signer     signs the file, required if {@code algorithms} contains {@link #SIGNATURE}
+     */
+    Checksums(Collection<String> algorithms, Signer signer) {
+        Signer.Signature signature = null;
+        for (String algorithm : algorithms) {
+            if (algorithm.equals(SIGNATURE)) {
+                if (signer == null) {
+                    throw new IllegalArgumentException("No signer to compute the signature");
+                }
+                signature = signer.newSignature();
+            } else {
+                digests.put(algorithm, newDigest(algorithm));
+            }
+        }
+        this.signature = signature;
+    }
+
+    void update(byte[] data, int offset, int length) {
+        for (MessageDigest digest : digests.values()) {
+            digest.update(data, offset, length);
+        }
+        if (signature != null) {
+            signature.update(data, offset, length);
+        }
+    }
+
+    /**
+     * @return a stream updating the checksums with every byte read from {@code in}
+     */
+    InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    update(new byte[] {(byte) b}, 0, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    update(b, off, n);
+                }
+                return n;
+            }
+        };
+    }
+
+    /**
+     * @return the signature, if requested, then the hex encoded digests, by algorithm
+     */
+    Map<String, String> finish() {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (signature != null) {
+            result.put(SIGNATURE, signature.finish());
+        }
+        for (var e : digests.entrySet()) {
+            result.put(e.getKey(), HexFormat.of().formatHex(e.getValue().digest()));
+        }
+        return result;
+    }
+
+    /**
+     * Lower-cases the given algorithms and puts them in {@link #ALGORITHMS} order.
+     *
+     * @throws IllegalArgumentException for an unsupported algorithm
+     */
+    static Set<String> normalize(Collection<String> algorithms) {
+        Set<String> requested = new LinkedHashSet<>();
+        for (String algorithm : algorithms) {
+            var name = algorithm.toLowerCase(Locale.ROOT);
+            if (!ALGORITHMS.contains(name)) {
+                throw new IllegalArgumentException(
+                        "Unsupported checksum algorithm '%s', supported: %s".formatted(algorithm, ALGORITHMS));
+            }
+            requested.add(name);
+        }
+        Set<String> result = new LinkedHashSet<>();
+        for (String algorithm : ALGORITHMS) {
+            if (requested.contains(algorithm)) {
+                result.add(algorithm);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return whether a file needs no checksum, i.e. it is a checksum or a signature itself
+     */
+    static boolean isExempt(String name) {
+        var extension = BundleWriter.extensionOf(name);
+        return extension.equals(SIGNATURE) || ALGORITHMS.contains(extension);
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        var name = switch (algorithm) {
+            case "md5" -> "MD5";
+            case "sha1" -> "SHA-1";
+            case "sha256" -> "SHA-256";
+            case "sha512" -> "SHA-512";
+            default -> throw new IllegalArgumentException("Unsupported checksum algorithm: " + algorithm);
+        };
+        try {
+            return MessageDigest.getInstance(name);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.danielliu1123.deployer;
+
+import java.time.Duration;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+
+/**
+ * HTTP options of the tasks calling a repository or the Publisher API, wired from {@link DeployerPluginExtension}.
+ *
+ * @author Freeman
+ */
+public interface ClientOptions {
+
+    /**
+     * @see DeployerPluginExtension#getConnectTimeout()
+     */
+    @Internal
+    Property<Duration> getConnectTimeout();
+
+    /**
+     * @see DeployerPluginExtension#getRequestTimeout()
+     */
+    @Internal
+    Property<Duration> getRequestTimeout();
+
+    /**
+     * @see DeployerPluginExtension#getUploadTimeout()
+     */
+    @Internal
+    Property<Duration> getUploadTimeout();
+
+    /**
+     * @see DeployerPluginExtension#getMaxRetries()
+     */
+    @Internal
+    Property<Integer> getMaxRetries();
+
+    /**
+     * @see DeployerPluginExtension#getRetryBackoff()
+     */
+    @Internal
+    Property<Duration> getRetryBackoff();
+
+    /**
+     * @see DeployerPluginExtension#getMaxUploadRate()
+     */
+    @Internal
+    Property<Long> getMaxUploadRate();
+}
@@ -0,0 +1,510 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+
+/**
+ * Uploads the bundles, or deploys the snapshots, of a {@link DeployTask}, run by the Gradle worker executor.
+ *
+ * <p> A cancelled build interrupts the worker: pending uploads are interrupted, which aborts their requests,
+ * and are not retried. A deployment that was accepted before is recorded in the state file as usual.
+ *
+ * @author Freeman
+ */
+public abstract class DeployAction implements WorkAction<DeployAction.Parameters> {
+
+    private static final Logger logger = Logging.getLogger(DeployAction.class);
+
+    private PublisherClient client;
+    private DeploymentStore store;
+    // writes streamed bundles, stopped at the latest when the action ends
+    private ExecutorService producers;
+
+    @Override
+    public void execute() {
+        try {
+            deploy();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while deploying", e);
+        } finally {
+            if (producers != null) {
+                producers.shutdownNow();
+            }
+        }
+    }
+
+    private void deploy() throws IOException, InterruptedException {
+        var parameters = getParameters();
+        List<Path> dirPaths = BundlePlan.directories(parameters.getDirs().getFiles(), logger);
+        logger.lifecycle("Configured dirs:");
+        for (Path dirPath : dirPaths) {
+            logger.lifecycle("  - " + dirPath);
+        }
+
+        if (getPublishingType() == PublishingType.SNAPSHOT) {
+            if (!parameters.getMirrors().get().isEmpty()) {
+                logger.warn("Snapshots are not deployed to mirrors");
+            }
+            deploySnapshots(dirPaths);
+            return;
+        }
+
+        var published = CheckPublishedTask.readPublished(parameters.getPublishedGavs());
+        List<Bundle> bundles = new ArrayList<>();
+        if (parameters.getStreamBundle().get()) {
+            // zip on the fly into the request body, nothing is written to disk
+            var writer = new BundleWriter(BundleAction.optionsOf(parameters));
+            long start = System.nanoTime();
+            var sources = BundlePlan.exclude(BundlePlan.scan(dirPaths, parameters.getReproducible().get()), published);
+            getReport()
+                    .record(
+                            "scan",
+                            parameters.getBaseName().get(),
+                            BundleAction.millisSince(start),
+                            BundleAction.scanMetrics(dirPaths, sources));
+            // files outside of GAV directories are not deployed on their own
+            if (BundlePlan.gavsOf(sources).isEmpty() && !published.isEmpty()) {
+                logger.lifecycle("All {} GAVs are already published, nothing to deploy.", published.size());
+                return;
+            }
+            var shards = BundlePlan.split(sources, parameters.getMaxBundleSize().getOrElse(0L));
+            producers = Executors.newCachedThreadPool(new NamedThreadFactory("deployer-bundle-stream"));
+            for (int i = 0; i < shards.size(); i++) {
+                var shard = shards.get(i);
+                var bundleName = BundlePlan.bundleName(parameters.getBaseName().get(), i, shards.size());
+                logger.lifecycle("Deploy bundle: " + bundleName + " (streaming)");
+                bundles.add(new Bundle(
+                        bundleName,
+                        null,
+                        -1,
+                        new BundlePipe.Streams(writer, shard, BundlePipe.DEFAULT_CHUNKS, producers)));
+            }
+        } else {
+            var bundleDir = parameters.getBundleDir().get().getAsFile().toPath();
+            var zipFiles = BundleTask.listBundles(bundleDir);
+            if (zipFiles.isEmpty() && !published.isEmpty()) {
+                logger.lifecycle("All {} GAVs are already published, nothing to deploy.", published.size());
+                return;
+            }
+            if (zipFiles.isEmpty()) {
+                throw new IllegalStateException("No bundle found in " + bundleDir);
+            }
+            for (Path zipFile : zipFiles) {
+                logger.lifecycle("Deploy bundle: " + zipFile.toAbsolutePath());
+                var name = zipFile.getFileName().toString();
+                bundles.add(new Bundle(name, readHash(zipFile), Files.size(zipFile), () -> {
+                    try {
+                        return Files.newInputStream(zipFile);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+        }
+
+        // one client for all uploads and status checks, connections are reused
+        client = new PublisherClient(
+                URI.create(parameters.getPublisherUrl().get()),
+                parameters.getUsername().get(),
+                parameters.getPassword().get(),
+                parameters.getClientSettings().get(),
+                logger);
+        store = new DeploymentStore(parameters.getStateFile().get().getAsFile().toPath());
+        var mirrors = parameters.getMirrors().get();
+        if (mirrors.isEmpty()) {
+            doDeploy(bundles);
+        } else {
+            deployWithMirrors(bundles, mirrors, BundlePlan.exclude(BundlePlan.scan(dirPaths, true), published));
+        }
+    }
+
+    /**
+     * Deploys the staged files to the mirrors while the bundles are deployed to Maven Central,
+     * each target failing on its own.
+     *
+     * <p> The mirror repositories are created before anything is uploaded,
+     * so a target with a bad url fails the deploy before a release reaches Maven Central.
+     *
+     * @throws IllegalArgumentException if the url of a target is neither {@code http(s):} nor {@code file:}
+     * @throws IllegalStateException    listing the targets that failed, after all targets are done
+     */
+    private void deployWithMirrors(
+            List<Bundle> bundles, List<MirrorDeployer.Target> targets, List<BundlePlan.Source> sources)
+            throws IOException, InterruptedException {
+        var parameters = getParameters();
+        List<MirrorDeployer.Repository> repositories = new ArrayList<>();
+        for (var target : targets) {
+            repositories.add(MirrorDeployer.repositoryOf(target, parameters.getClientSettings().get(), logger));
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("deployer-mirror"));
+        try {
+            Future<List<MirrorDeployer.Result>> mirrors =
+                    executor.submit(() -> deployMirrors(targets, repositories, sources));
+            RuntimeException central = null;
+            try {
+                doDeploy(bundles);
+            } catch (RuntimeException e) {
+                central = e;
+            }
+
+            List<String> failures = new ArrayList<>();
+            int failed = 0;
+            if (central != null) {
+                failures.add("Maven Central (" + central.getMessage() + ")");
+                failed++;
+            }
+            try {
+                for (var result : mirrors.get()) {
+                    if (result.failed()) {
+                        failures.add(result.name() + " " + result.describeFailures());
+                        failed++;
+                    }
+                }
+            } catch (ExecutionException e) {
+                // thrown before any mirror was written to, e.g. for a file outside a GAV directory
+                failures.add("mirrors (" + e.getCause().getMessage() + ")");
+                failed += targets.size();
+            }
+            if (!failures.isEmpty()) {
+                throw new IllegalStateException(
+                        "Failed to deploy to %d of %d targets: %s".formatted(failed, targets.size() + 1, failures),
+                        central);
+            }
+        } finally {
+            // interrupts the mirror uploads still running when cancelled
+            executor.shutdownNow();
+        }
+    }
+
+    private List<MirrorDeployer.Result> deployMirrors(
+            List<MirrorDeployer.Target> targets,
+            List<MirrorDeployer.Repository> repositories,
+            List<BundlePlan.Source> sources)
+            throws InterruptedException {
+        var parameters = getParameters();
+        for (var target : targets) {
+            logger.lifecycle("[{}] Deploying to URL: {}", target.name(), target.url());
+        }
+        var options = new MirrorDeployer.Options(
+                parameters.getThreads().get(),
+                Checksums.normalize(parameters.getChecksums().get()),
+                Signer.create(parameters.getSigningKey(), parameters.getSigningPassword()));
+        var results = new MirrorDeployer(repositories, options, logger).deploy(sources, Instant.now());
+        for (var result : results) {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("files", result.files());
+            metrics.put("bytes", result.bytes());
+            metrics.put(
+                    "bytesPerSecond", result.millis() > 0 ? result.bytes() * 1000 / result.millis() : result.bytes());
+            metrics.put("reread", result.reread());
+            metrics.put("failures", result.failures().size());
+            getReport().record("mirror", result.name(), result.millis(), metrics);
+            if (result.failed()) {
+                logger.error("[{}] Failed to deploy {}", result.name(), result.describeFailures());
+            } else {
+                logger.lifecycle(
+                        "[{}] Deployed {} files ({}) in {} ms, {} read from disk again",
+                        result.name(),
+                        result.files(),
+                        UploadProgress.formatBytes(result.bytes()),
+                        result.millis(),
+                        result.reread());
+            }
+        }
+        return results;
+    }
+
+    private void deploySnapshots(List<Path> dirPaths) throws IOException, InterruptedException {
+        var parameters = getParameters();
+        var repository = new RepositoryClient(
+                URI.create(parameters.getSnapshotRepositoryUrl().get()),
+                parameters.getUsername().getOrNull(),
+                parameters.getPassword().getOrNull(),
+                parameters.getClientSettings().get(),
+                logger);
+        logger.lifecycle("Deploying snapshots to URL: {}", repository.getBaseUri());
+        var options = new SnapshotDeployer.Options(
+                parameters.getSnapshotConcurrency().get(), Checksums.normalize(parameters.getChecksums().get()));
+        var result = new SnapshotDeployer(repository, options, logger)
+                .deploy(BundlePlan.scan(dirPaths, true), Instant.now());
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("gavs", result.gavs());
+        metrics.put("files", result.files());
+        metrics.put("bytes", result.bytes());
+        getReport().record("snapshot", repository.getBaseUri().toString(), result.millis(), metrics);
+        logger.lifecycle(
+                "Deployed {} files ({} bytes) of {} snapshot(s) in {} ms",
+                result.files(),
+                result.bytes(),
+                result.gavs(),
+                result.millis());
+    }
+
+    private void doDeploy(List<Bundle> bundles) throws IOException, InterruptedException {
+        switch (getPublishingType()) {
+            case USER_MANAGED -> uploadBundles(bundles, PublishingType.USER_MANAGED);
+            case AUTOMATIC -> uploadBundles(bundles, PublishingType.AUTOMATIC);
+            case SNAPSHOT -> throw new IllegalStateException("Snapshots are not deployed as bundles");
+            case WAIT_FOR_PUBLISHED -> {
+                List<Deployment> watched = new ArrayList<>();
+                for (Deployment deployment : uploadBundles(bundles, PublishingType.AUTOMATIC)) {
+                    String deploymentId = deployment.deploymentId();
+                    if (deploymentId != null && !deploymentId.isBlank()) {
+                        watched.add(deployment);
+                    } else {
+                        logger.lifecycle("Warning: Could not extract deploymentId from response of "
+                                + deployment.bundleName() + ". Cannot wait for PUBLISHED status.");
+                    }
+                }
+                var watcher = new DeploymentWatcher(
+                        client,
+                        getParameters().getWatchSettings().get(),
+                        logger,
+                        store.recorder(logger).andThen(getReport().stateRecorder()));
+                if (getParameters().getWaitInBackground().get()) {
+                    // release the worker, the build waits for the deployments before it finishes
+                    getParameters().getWatchService().get().watch(watcher, watched);
+                    logger.lifecycle("Waiting for {} deployment(s) to be PUBLISHED in the background", watched.size());
+                } else {
+                    watcher.await(watched);
+                }
+            }
+        }
+    }
+
+    /**
+     * Uploads the bundles concurrently, each one retried on its own.
+     *
+     * <p> A bundle that already has a deployment in progress, according to the state file and the Publisher API,
+     * is not uploaded again, its deployment is returned instead.
+     *
+     * @return one deployment per bundle, in the order of {@code bundles}
+     */
+    private List<Deployment> uploadBundles(List<Bundle> bundles, PublishingType publishingType)
+            throws InterruptedException {
+        int concurrency = Math.max(1, Math.min(bundles.size(), getParameters().getUploadConcurrency().get()));
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, new NamedThreadFactory("deployer-upload"));
+        try {
+            List<Future<Deployment>> futures = new ArrayList<>();
+            for (Bundle bundle : bundles) {
+                futures.add(executor.submit(() -> deployBundle(bundle, publishingType)));
+            }
+
+            List<Deployment> deployments = new ArrayList<>();
+            List<String> failures = new ArrayList<>();
+            for (int i = 0; i < bundles.size(); i++) {
+                var bundleName = bundles.get(i).name();
+                try {
+                    deployments.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof UploadException u) {
+                        failures.add(bundleName + " (status " + u.getStatusCode() + ")");
+                    } else {
+                        logger.error("Failed to upload {}", bundleName, e.getCause());
+                        failures.add(bundleName + " (" + e.getCause() + ")");
+                    }
+                }
+            }
+            if (!failures.isEmpty()) {
+                throw new IllegalStateException("Failed to upload %d of %d bundles: %s"
+                        .formatted(failures.size(), bundles.size(), failures));
+            }
+            return deployments;
+        } finally {
+            // interrupts the uploads still running when cancelled
+            executor.shutdownNow();
+        }
+    }
+
+    private Deployment deployBundle(Bundle bundle, PublishingType publishingType) throws Exception {
+        if (bundle.hash() != null) {
+            var reusable = store.findReusable(bundle.hash(), publishingType);
+            if (reusable.isPresent()) {
+                var entry = reusable.get();
+                var state = DeploymentWatcher.check(client, entry.deploymentId());
+                if (state != null && !state.isTerminal()) {
+                    store.updateState(entry.deploymentId(), state);
+                    logger.lifecycle(
+                            "[{}] Already uploaded as deployment {} ({}), not uploading again",
+                            bundle.name(),
+                            entry.deploymentId(),
+                            state);
+                    var deployment = new Deployment(bundle.name(), entry.deploymentId(), publishingType);
+                    getReport().uploaded(deployment);
+                    return deployment;
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        var response = upload(bundle, publishingType);
+        long millis = BundleAction.millisSince(start);
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("status", response.statusCode());
+        if (bundle.size() >= 0) {
+            metrics.put("bytes", bundle.size());
+            metrics.put("bytesPerSecond", millis > 0 ? bundle.size() * 1000 / millis : bundle.size());
+        }
+        metrics.put("streamed", bundle.size() < 0);
+        if (!is2xx(response.statusCode())) {
+            getReport().record("upload", bundle.name(), millis, metrics);
+            throw new UploadException(response.statusCode());
+        }
+        var deployment = new Deployment(bundle.name(), extractDeploymentId(response.body()), publishingType);
+        metrics.put("deploymentId", deployment.deploymentId());
+        getReport().record("upload", bundle.name(), millis, metrics);
+        getReport().uploaded(deployment);
+        if (!deployment.deploymentId().isBlank()) {
+            store.save(new DeploymentStore.Entry(
+                    deployment.deploymentId(),
+                    bundle.name(),
+                    bundle.hash(),
+                    publishingType,
+                    DeploymentState.PENDING,
+                    System.currentTimeMillis()));
+        }
+        return deployment;
+    }
+
+    private HttpResponse<String> upload(Bundle bundle, PublishingType publishingType) throws Exception {
+        logger.lifecycle("[{}] Deploying to URL: {}", bundle.name(), client.getBaseUri());
+        HttpResponse<String> response;
+        try {
+            response = client.upload(bundle.name(), bundle.content(), bundle.size(), publishingType);
+        } finally {
+            if (bundle.content() instanceof BundlePipe.Streams streams) {
+                // the HttpClient does not close the body of a failed or timed out request
+                streams.close();
+            }
+        }
+        logger.lifecycle("[" + bundle.name() + "] Response: ");
+        logger.lifecycle("  status: " + response.statusCode());
+        logger.lifecycle("  body: " + response.body());
+        logger.lifecycle("  headers: " + response.headers().map());
+        return response;
+    }
+
+    private static boolean is2xx(int i) {
+        return i >= 200 && i < 300;
+    }
+
+    private DeployReportService getReport() {
+        return getParameters().getReport().get();
+    }
+
+    private PublishingType getPublishingType() {
+        return getParameters().getPublishingType().get();
+    }
+
+    /**
+     * @return the SHA-256 written next to the bundle by {@link BundleTask}, or {@code null}
+     */
+    private static String readHash(Path bundle) throws IOException {
+        var hashFile = BundleTask.hashFileOf(bundle);
+        return Files.isRegularFile(hashFile) ? Files.readString(hashFile).trim() : null;
+    }
+
+    /**
+     * see <a href="https://central.sonatype.org/publish/publish-portal-api/#uploading-a-deployment-bundle">Upload Bundle</a>
+     */
+    private static String extractDeploymentId(String responseBody) {
+        return responseBody.trim();
+    }
+
+    /**
+     * The options of {@link DeployTask}, the writer options are only used when the bundle is streamed.
+     */
+    public interface Parameters extends BundleAction.WriterParameters {
+
+        ConfigurableFileCollection getDirs();
+
+        Property<String> getBaseName();
+
+        DirectoryProperty getBundleDir();
+
+        RegularFileProperty getPublishedGavs();
+
+        RegularFileProperty getStateFile();
+
+        Property<DeploymentWatchService> getWatchService();
+
+        Property<DeployReportService> getReport();
+
+        Property<PublishingType> getPublishingType();
+
+        Property<String> getPublisherUrl();
+
+        Property<String> getUsername();
+
+        Property<String> getPassword();
+
+        Property<PublisherClient.Settings> getClientSettings();
+
+        Property<DeploymentWatcher.Settings> getWatchSettings();
+
+        Property<Integer> getUploadConcurrency();
+
+        Property<Boolean> getWaitInBackground();
+
+        Property<Boolean> getStreamBundle();
+
+        Property<Long> getMaxBundleSize();
+
+        Property<String> getSnapshotRepositoryUrl();
+
+        Property<Integer> getSnapshotConcurrency();
+
+        ListProperty<MirrorDeployer.Target> getMirrors();
+    }
+
+    /**
+     * @param name    file name sent with the upload
+     * @param hash    hex encoded SHA-256 of the bundle, {@code null} when streamed
+     * @param size    size of the bundle, {@code -1} when streamed
+     * @param content opens the bundle content, called again for each attempt
+     */
+    private record Bundle(String name, String hash, long size, Supplier<InputStream> content) {}
+
+    private static final class UploadException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int statusCode;
+
+        UploadException(int statusCode) {
+            super("Upload failed with status " + statusCode);
+            this.statusCode = statusCode;
+        }
+
+        int getStatusCode() {
+            return statusCode;
+        }
+    }
+}
@@ -1,24 +1,28 @@
 package io.github.danielliu1123.deployer;
 
-import javax.inject.Inject;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.logging.Logger;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.TaskAction;
 
-public class DeployConfigTask extends DefaultTask {
+public abstract class DeployConfigTask extends DefaultTask {
 
-    private final DeployerPluginExtension extension;
     private final Logger logger;
 
-    @Inject
-    public DeployConfigTask(DeployerPluginExtension extension) {
-        this.extension = extension;
+    public DeployConfigTask() {
         this.logger = getLogger();
     }
 
+    /**
+     * The configuration of {@link DeployerPluginExtension}, as printed.
+     */
+    @Internal
+    public abstract Property<String> getConfig();
+
     @TaskAction
     public void print() {
         logger.lifecycle("Deployer Plugin Config:");
-        logger.lifecycle(extension.toString());
+        logger.lifecycle(getConfig().get());
     }
 }
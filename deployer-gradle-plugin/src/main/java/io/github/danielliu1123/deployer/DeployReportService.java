@@ -0,0 +1,220 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import org.gradle.api.Action;
+import org.gradle.api.Project;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Collects the duration and the metrics of each deploy phase in a build: scanning the dirs, writing bundles,
+ * uploads, snapshot deploys and every state change of a deployment until it is published.
+ *
+ * <p> The report is rewritten as JSON after each phase, so it is complete when the build ends and also
+ * shows how far a killed build got. A build that runs no phase leaves the previous report in place.
+ *
+ * @author Freeman
+ */
+public abstract class DeployReportService implements BuildService<DeployReportService.Parameters> {
+
+    static final String NAME = "deployerReport";
+
+    private static final Logger logger = Logging.getLogger(DeployReportService.class);
+
+    private final List<Phase> phases = new ArrayList<>();
+    // deploymentId -> last known state, for the duration of each state
+    private final Map<String, Transition> transitions = new ConcurrentHashMap<>();
+
+    /**
+     * Records a phase that took {@code millis}.
+     *
+     * @param phase   e.g. {@code bundle} or {@code upload}
+     * @param name    what the phase worked on, e.g. the bundle name
+     * @param metrics numbers or strings, in the order they are reported
+     */
+    void record(String phase, String name, long millis, Map<String, Object> metrics) {
+        var entry = new Phase(phase, name, Instant.now(), millis, new LinkedHashMap<>(metrics));
+        synchronized (phases) {
+            phases.add(entry);
+            write();
+        }
+    }
+
+    /**
+     * Starts timing the states of {@code deployment}, from its upload.
+     */
+    void uploaded(Deployment deployment) {
+        transitions.put(deployment.deploymentId(), new Transition(DeploymentState.PENDING, System.nanoTime()));
+    }
+
+    /**
+     * @return a {@link DeploymentWatcher} listener recording each state change with the time spent in the previous
+     * state
+     */
+    BiConsumer<Deployment, DeploymentState> stateRecorder() {
+        return (deployment, state) -> {
+            long now = System.nanoTime();
+            var previous = transitions.put(deployment.deploymentId(), new Transition(state, now));
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("deploymentId", deployment.deploymentId());
+            metrics.put("from", previous != null ? previous.state().name() : "UNKNOWN");
+            metrics.put("to", state.name());
+            long millis = previous != null ? (now - previous.nanos()) / 1_000_000 : 0;
+            record("state", deployment.bundleName(), millis, metrics);
+        };
+    }
+
+    /**
+     * @return the total duration of each phase, e.g. {@code deployer.bundle.millis}, in the order they first ran
+     */
+    Map<String, String> summary() {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        synchronized (phases) {
+            for (Phase phase : phases) {
+                totals.merge(phase.phase(), phase.millis(), Long::sum);
+            }
+        }
+        Map<String, String> result = new LinkedHashMap<>();
+        totals.forEach((phase, millis) -> result.put("deployer." + phase + ".millis", String.valueOf(millis)));
+        return result;
+    }
+
+    private void write() {
+        Path file = getParameters().getReportFile().get().getAsFile().toPath();
+        try {
+            Files.createDirectories(file.getParent());
+            var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tmp, toJson(), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the deploy report " + file, e);
+        }
+    }
+
+    String toJson() {
+        var result = new StringBuilder("{\n");
+        result.append("  \"summary\": {");
+        var summary = summary();
+        int i = 0;
+        for (var e : summary.entrySet()) {
+            result.append(i++ == 0 ? "\n" : ",\n")
+                    .append("    ")
+                    .append(quote(e.getKey()))
+                    .append(": ")
+                    .append(e.getValue());
+        }
+        result.append(summary.isEmpty() ? "},\n" : "\n  },\n");
+        result.append("  \"phases\": [");
+        synchronized (phases) {
+            for (int p = 0; p < phases.size(); p++) {
+                var phase = phases.get(p);
+                result.append(p == 0 ? "\n" : ",\n")
+                        .append("    {\"phase\": ")
+                        .append(quote(phase.phase()))
+                        .append(", \"name\": ")
+                        .append(quote(phase.name()))
+                        .append(", \"finishedAt\": ")
+                        .append(quote(phase.finishedAt().toString()))
+                        .append(", \"millis\": ")
+                        .append(phase.millis());
+                for (var e : phase.metrics().entrySet()) {
+                    result.append(", ").append(quote(e.getKey())).append(": ").append(toJson(e.getValue()));
+                }
+                result.append("}");
+            }
+            result.append(phases.isEmpty() ? "]\n" : "\n  ]\n");
+        }
+        return result.append("}\n").toString();
+    }
+
+    private static String toJson(Object value) {
+        if (value instanceof Double d) {
+            return String.format(Locale.ROOT, "%.3f", d);
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        return quote(String.valueOf(value));
+    }
+
+    private static String quote(String value) {
+        var result = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> result.append("\\\"");
+                case '\\' -> result.append("\\\\");
+                case '\n' -> result.append("\\n");
+                case '\r' -> result.append("\\r");
+                case '\t' -> result.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        result.append("\\u%04x".formatted((int) c));
+                    } else {
+                        result.append(c);
+                    }
+                }
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    /**
+     * Adds the {@link #summary()} as custom values of the build scan, when the Develocity plugin is applied.
+     *
+     * <p> The plugin is optional and not on the compile classpath, so its API is called by reflection,
+     * once the build finished.
+     */
+    static void publishToBuildScan(Project project, Provider<DeployReportService> report, Provider<Boolean> enabled) {
+        Object develocity = project.getRootProject().getExtensions().findByName("develocity");
+        if (develocity == null) {
+            return;
+        }
+        try {
+            Object buildScan = develocity.getClass().getMethod("getBuildScan").invoke(develocity);
+            Method buildFinished = buildScan.getClass().getMethod("buildFinished", Action.class);
+            Action<Object> action = result -> {
+                if (!enabled.get()) {
+                    return;
+                }
+                try {
+                    Method value = buildScan.getClass().getMethod("value", String.class, String.class);
+                    for (var e : report.get().summary().entrySet()) {
+                        value.invoke(buildScan, e.getKey(), e.getValue());
+                    }
+                } catch (ReflectiveOperationException e) {
+                    logger.warn("Failed to add the deploy report to the build scan: {}", e.toString());
+                }
+            };
+            buildFinished.invoke(buildScan, action);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Failed to add the deploy report to the build scan: {}", e.toString());
+        }
+    }
+
+    public interface Parameters extends BuildServiceParameters {
+
+        RegularFileProperty getReportFile();
+    }
+
+    private record Phase(String phase, String name, Instant finishedAt, long millis, Map<String, Object> metrics) {}
+
+    private record Transition(DeploymentState state, long nanos) {}
+}
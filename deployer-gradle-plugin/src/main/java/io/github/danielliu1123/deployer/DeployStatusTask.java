@@ -0,0 +1,76 @@
+package io.github.danielliu1123.deployer;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+
+/**
+ * Prints the deployments recorded by {@link DeployTask} with their current state,
+ * and with {@code --wait} follows those still in progress until they are published.
+ *
+ * <p> Lets a new build reattach to deployments of a build that was interrupted, e.g. a killed CI job,
+ * instead of uploading the bundles again.
+ *
+ * @author Freeman
+ */
+public abstract class DeployStatusTask extends DefaultTask implements PublisherOptions {
+
+    private final Logger logger;
+
+    public DeployStatusTask() {
+        this.logger = getLogger();
+        getWait().convention(false);
+    }
+
+    @Internal
+    public abstract RegularFileProperty getStateFile();
+
+    @Internal
+    @Option(option = "wait", description = "Waits until the deployments in progress are published.")
+    public abstract Property<Boolean> getWait();
+
+    @TaskAction
+    public void status() throws Exception {
+        var store = new DeploymentStore(getStateFile().get().getAsFile().toPath());
+        var entries = store.load();
+        if (entries.isEmpty()) {
+            logger.lifecycle("No deployment recorded in {}", store.getFile());
+            return;
+        }
+
+        var client = PublisherClient.create(this, logger);
+        List<Deployment> live = new ArrayList<>();
+        for (var entry : entries) {
+            var state = entry.state();
+            // a deployment waiting to be published manually may have been published meanwhile
+            if (!state.isTerminal()) {
+                var current = DeploymentWatcher.check(client, entry.deploymentId());
+                if (current != null) {
+                    state = current;
+                    store.updateState(entry.deploymentId(), state);
+                }
+                if (entry.withState(state).isLive()) {
+                    live.add(entry.deployment());
+                }
+            }
+            logger.lifecycle(
+                    "[{}] {} {} (uploaded at {})",
+                    entry.bundleName(),
+                    entry.deploymentId(),
+                    state,
+                    Instant.ofEpochMilli(entry.uploadedAt()));
+        }
+
+        if (getWait().get()) {
+            new DeploymentWatcher(client, DeploymentWatcher.Settings.of(this), logger, store.recorder(logger))
+                    .await(live);
+        }
+    }
+}
@@ -1,7 +1,21 @@
 package io.github.danielliu1123.deployer;
 
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.artifacts.ArtifactRepositoryContainer;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.FileSystemLocation;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.publish.maven.tasks.PublishToMavenRepository;
+import org.gradle.api.tasks.TaskProvider;
 
 /**
  * A Gradle plugin that simplifies publishing artifacts to Maven repositories.
@@ -10,22 +24,241 @@ import org.gradle.api.Project;
  */
 public class DeployerPlugin implements Plugin<Project> {
 
+    private static final String FRAGMENT_TASK_NAME = "deployBundleFragment";
+
     @Override
     public void apply(Project project) {
-        var extension = project.getExtensions().create("deploy", DeployerPluginExtension.class, project);
+        var extension = project.getExtensions().create("deploy", DeployerPluginExtension.class);
+        extension.getDirs().convention(discoverRepositories(project));
+
+        project.getGradle()
+                .getSharedServices()
+                .registerIfAbsent(DeploymentWatchService.NAME, DeploymentWatchService.class, spec -> {});
+        var report = project.getGradle()
+                .getSharedServices()
+                .registerIfAbsent(DeployReportService.NAME, DeployReportService.class, spec -> spec.getParameters()
+                        .getReportFile()
+                        .set(project.getLayout().getBuildDirectory().file("deployer/report.json")));
+        if (project == project.getRootProject()) {
+            DeployReportService.publishToBuildScan(project, report, extension.getBuildScanReport());
+        }
 
-        project.getTasks()
-                .register("deploy", DeployTask.class, project, extension)
-                .configure(task -> {
+        var stateFile = project.getLayout().getBuildDirectory().file("deployer/deployments.properties");
+        var streamBundle = extension.getStreamBundle();
+        var validate = extension.getValidate();
+        var snapshot = extension.getPublishingType().map(type -> type == PublishingType.SNAPSHOT);
+        var checkPublishedTask = project.getTasks().register("deployCheckPublished", CheckPublishedTask.class, task -> {
+            task.setGroup("publishing");
+            task.setDescription("Finds the GAVs of specified dirs that are already published.");
+            configureClient(task, extension);
+            task.getDirs().from(extension.getDirs());
+            task.getSkipPublished().set(extension.getSkipPublished());
+            task.getPublishedRepositoryUrl().set(extension.getPublishedRepositoryUrl());
+            task.getPublishedCacheTtl().set(extension.getPublishedCacheTtl());
+            task.getCacheFile()
+                    .set(project.getLayout().getBuildDirectory().file("deployer/published-cache.properties"));
+            task.getPublishedFile()
+                    .set(project.getLayout().getBuildDirectory().file("deployer/published.txt"));
+            task.onlyIf("not deploying snapshots", t -> !snapshot.get());
+        });
+        var publishedGavs = checkPublishedTask.flatMap(CheckPublishedTask::getPublishedFile);
+        var validateTask = project.getTasks().register("deployValidate", ValidateTask.class, task -> {
+            task.setGroup("verification");
+            task.setDescription("Checks specified dirs against the Maven Central requirements.");
+            task.getDirs().from(extension.getDirs());
+            task.getThreads().set(extension.getBundleThreads());
+            task.getChecksums().set(extension.getChecksums());
+            task.getSigned().set(extension.getSigningKey().map(key -> true).orElse(false));
+            task.getPublishedGavs().set(publishedGavs);
+            task.getReportFile()
+                    .set(project.getLayout().getBuildDirectory().file("deployer/validation.txt"));
+            task.onlyIf("validation is enabled", t -> validate.get());
+            task.onlyIf("not deploying snapshots", t -> !snapshot.get());
+        });
+        // one fragment per subproject publishing with maven-publish, bundling the dirs inside its directory;
+        // a subproject below two projects applying this plugin gets a single fragment task, shared by both
+        var fragments = extension.getBundleFragments();
+        List<File> projectDirs =
+                project.getSubprojects().stream().map(Project::getProjectDir).toList();
+        List<TaskProvider<BundleTask>> fragmentTasks = new ArrayList<>();
+        for (Project subproject : project.getSubprojects()) {
+            subproject.getPluginManager().withPlugin("maven-publish", plugin -> {
+                if (subproject.getTasks().getNames().contains(FRAGMENT_TASK_NAME)) {
+                    fragmentTasks.add(subproject.getTasks().named(FRAGMENT_TASK_NAME, BundleTask.class));
+                    return;
+                }
+                var projectDir = subproject.getProjectDir();
+                var ownedDirs = extension.getDirs().map(dirs -> ownedDirs(projectDir, projectDirs, dirs));
+                fragmentTasks.add(subproject.getTasks().register(FRAGMENT_TASK_NAME, BundleTask.class, task -> {
                     task.setGroup("publishing");
-                    task.setDescription("Deploys specified dirs to Maven central.");
-                });
-
-        project.getTasks()
-                .register("deployConfig", DeployConfigTask.class, extension)
-                .configure(task -> {
-                    task.setGroup("help");
-                    task.setDescription("Prints the Deployer plugin configuration.");
-                });
+                    task.setDescription("Packages the deploy dirs of this project into a bundle fragment.");
+                    configureBundle(task, extension, publishedGavs);
+                    task.getDirs().from(ownedDirs);
+                    task.getBaseName().set(subproject.getName());
+                    task.getDestinationDirectory()
+                            .set(subproject.getLayout().getBuildDirectory().dir("deployer/fragment"));
+                    task.onlyIf("bundle is not streamed", t -> !streamBundle.get());
+                    task.onlyIf("not deploying snapshots", t -> !snapshot.get());
+                    task.onlyIf("project has deploy dirs", t -> !ownedDirs.get().isEmpty());
+                }));
+            });
+        }
+        Callable<List<Provider<Directory>>> fragmentDirs = () -> fragments.get()
+                ? fragmentTasks.stream()
+                        .map(task -> task.flatMap(BundleTask::getDestinationDirectory))
+                        .toList()
+                : List.of();
+
+        var bundleTask = project.getTasks().register("deployBundle", BundleTask.class, task -> {
+            task.setGroup("publishing");
+            task.setDescription("Packages specified dirs into a bundle for deploying.");
+            configureBundle(task, extension, publishedGavs);
+            task.getDirs().from(extension.getDirs());
+            task.getFragments().from(fragmentDirs);
+            task.getMaxBundleSize().set(extension.getMaxBundleSize());
+            task.getBaseName().set(project.getProjectDir().getName());
+            task.getDestinationDirectory()
+                    .set(project.getLayout().getBuildDirectory().dir("deployer/bundles"));
+            task.onlyIf("bundle is not streamed", t -> !streamBundle.get());
+            task.onlyIf("not deploying snapshots", t -> !snapshot.get());
+            task.mustRunAfter(validateTask);
+        });
+
+        project.getTasks().register("deploy", DeployTask.class, task -> {
+            task.setGroup("publishing");
+            task.setDescription("Deploys specified dirs to Maven central.");
+            configurePublisher(task, extension);
+            task.getDirs().from(extension.getDirs());
+            task.getPublishingType().set(extension.getPublishingType());
+            task.getUploadConcurrency().set(extension.getUploadConcurrency());
+            task.getWaitInBackground().set(extension.getWaitInBackground());
+            task.getStreamBundle().set(extension.getStreamBundle());
+            task.getMaxBundleSize().set(extension.getMaxBundleSize());
+            task.getSnapshotRepositoryUrl().set(extension.getSnapshotRepositoryUrl());
+            task.getSnapshotConcurrency().set(extension.getSnapshotConcurrency());
+            task.getMirrors().set(project.provider(() -> List.copyOf(extension.getMirrors())));
+            task.getThreads().set(extension.getBundleThreads());
+            task.getCompressionLevel().set(extension.getCompressionLevel());
+            task.getStoredExtensions().set(extension.getStoredExtensions());
+            task.getFastCompressionExtensions().set(extension.getFastCompressionExtensions());
+            task.getFastCompressionLevel().set(extension.getFastCompressionLevel());
+            task.getReproducible().set(extension.getReproducible());
+            task.getChecksums().set(extension.getChecksums());
+            task.getSigningKey().set(extension.getSigningKey());
+            task.getSigningPassword().set(extension.getSigningPassword());
+            task.getBaseName().set(project.getProjectDir().getName());
+            task.getBundleDir().set(bundleTask.flatMap(BundleTask::getDestinationDirectory));
+            task.getStateFile().set(stateFile);
+            task.getPublishedGavs().set(publishedGavs);
+            task.dependsOn(checkPublishedTask, validateTask, bundleTask);
+        });
+
+        project.getTasks().register("deployStatus", DeployStatusTask.class, task -> {
+            task.setGroup("publishing");
+            task.setDescription("Shows the state of uploaded deployments.");
+            configurePublisher(task, extension);
+            task.getStateFile().set(stateFile);
+        });
+
+        project.getTasks().register("awaitPublished", AwaitPublishedTask.class, task -> {
+            task.setGroup("publishing");
+            task.setDescription("Waits until the deployments uploaded in the background are published.");
+            task.mustRunAfter("deploy");
+        });
+
+        project.getTasks().register("deployConfig", DeployConfigTask.class, task -> {
+            task.setGroup("help");
+            task.setDescription("Prints the Deployer plugin configuration.");
+            task.getConfig().set(project.provider(extension::toString));
+        });
+    }
+
+    /**
+     * Finds the local file repositories the {@code maven-publish} publications of {@code project}
+     * and its subprojects are published to.
+     *
+     * <p> Each project contributes the repositories of its own publish tasks, so a repository no publication
+     * is published to, e.g. one declared in {@code allprojects} for a project without publications, is left out.
+     * Nothing is resolved while configuring: the tasks are read when the value is first queried,
+     * and the value carries those tasks as task dependencies.
+     */
+    private static Provider<List<File>> discoverRepositories(Project project) {
+        ConfigurableFileCollection repositories = project.getObjects().fileCollection();
+        project.allprojects(p -> p.getPluginManager().withPlugin("maven-publish", plugin -> {
+            var publishTasks = p.getTasks()
+                    .withType(PublishToMavenRepository.class)
+                    .matching(task -> isStaging(task.getRepository()));
+            repositories.from((Callable<List<File>>) () -> publishTasks.stream()
+                    .map(task -> new File(task.getRepository().getUrl()))
+                    .toList());
+            repositories.builtBy(publishTasks);
+        }));
+        return repositories.getElements().map(locations -> locations.stream()
+                .map(FileSystemLocation::getAsFile)
+                .toList());
+    }
+
+    /**
+     * @return whether {@code repository} is a directory of this build, {@code mavenLocal()} is not
+     */
+    private static boolean isStaging(MavenArtifactRepository repository) {
+        return repository != null
+                && "file".equals(repository.getUrl().getScheme())
+                && !ArtifactRepositoryContainer.DEFAULT_MAVEN_LOCAL_REPO_NAME.equals(repository.getName());
+    }
+
+    private static void configureClient(ClientOptions task, DeployerPluginExtension extension) {
+        task.getConnectTimeout().set(extension.getConnectTimeout());
+        task.getRequestTimeout().set(extension.getRequestTimeout());
+        task.getUploadTimeout().set(extension.getUploadTimeout());
+        task.getMaxRetries().set(extension.getMaxRetries());
+        task.getRetryBackoff().set(extension.getRetryBackoff());
+        task.getMaxUploadRate().set(extension.getMaxUploadRate());
+    }
+
+    private static void configurePublisher(PublisherOptions task, DeployerPluginExtension extension) {
+        configureClient(task, extension);
+        task.getPublisherUrl().set(extension.getPublisherUrl());
+        task.getUsername().set(extension.getUsername());
+        task.getPassword().set(extension.getPassword());
+        task.getStatusPollInterval().set(extension.getStatusPollInterval());
+        task.getPublishTimeout().set(extension.getPublishTimeout());
+    }
+
+    private static void configureBundle(
+            BundleTask task, DeployerPluginExtension extension, Provider<RegularFile> publishedGavs) {
+        task.getThreads().set(extension.getBundleThreads());
+        task.getCompressionLevel().set(extension.getCompressionLevel());
+        task.getStoredExtensions().set(extension.getStoredExtensions());
+        task.getFastCompressionExtensions().set(extension.getFastCompressionExtensions());
+        task.getFastCompressionLevel().set(extension.getFastCompressionLevel());
+        task.getReproducible().set(extension.getReproducible());
+        task.getChecksums().set(extension.getChecksums());
+        task.getSigningKey().set(extension.getSigningKey());
+        task.getSigningPassword().set(extension.getSigningPassword());
+        task.getPublishedGavs().set(publishedGavs);
+    }
+
+    /**
+     * @return the {@code dirs} inside {@code projectDir} and not inside a nested project of {@code projectDirs}
+     */
+    static List<File> ownedDirs(File projectDir, List<File> projectDirs, List<File> dirs) {
+        return dirs.stream()
+                .filter(dir -> projectDir.equals(ownerOf(dir, projectDirs)))
+                .toList();
+    }
+
+    private static File ownerOf(File dir, List<File> projectDirs) {
+        Path path = dir.toPath().toAbsolutePath().normalize();
+        File owner = null;
+        int depth = -1;
+        for (File projectDir : projectDirs) {
+            Path candidate = projectDir.toPath().toAbsolutePath().normalize();
+            if (path.startsWith(candidate) && candidate.getNameCount() > depth) {
+                owner = projectDir;
+                depth = candidate.getNameCount();
+            }
+        }
+        return owner;
     }
 }
@@ -1,9 +1,13 @@
 package io.github.danielliu1123.deployer;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
-import org.gradle.api.Project;
+import java.util.zip.Deflater;
+import javax.inject.Inject;
+import org.gradle.api.Action;
+import org.gradle.api.NamedDomainObjectContainer;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
@@ -18,15 +22,87 @@ public abstract class DeployerPluginExtension {
     private final Property<String> username;
     private final Property<String> password;
     private final Property<PublishingType> publishingType;
+    private final Property<String> publisherUrl;
+    private final Property<Integer> bundleThreads;
+    private final Property<Integer> compressionLevel;
+    private final ListProperty<String> storedExtensions;
+    private final ListProperty<String> fastCompressionExtensions;
+    private final Property<Integer> fastCompressionLevel;
+    private final Property<Boolean> streamBundle;
+    private final Property<Boolean> reproducible;
+    private final ListProperty<String> checksums;
+    private final Property<Boolean> validate;
+    private final Property<String> signingKey;
+    private final Property<String> signingPassword;
+    private final Property<Long> maxBundleSize;
+    private final Property<Boolean> bundleFragments;
+    private final Property<Integer> uploadConcurrency;
+    private final Property<Long> maxUploadRate;
+    private final Property<Integer> maxRetries;
+    private final Property<Duration> retryBackoff;
+    private final Property<Duration> connectTimeout;
+    private final Property<Duration> requestTimeout;
+    private final Property<Duration> uploadTimeout;
+    private final Property<Duration> statusPollInterval;
+    private final Property<Duration> publishTimeout;
+    private final Property<Boolean> waitInBackground;
+    private final Property<String> snapshotRepositoryUrl;
+    private final Property<Integer> snapshotConcurrency;
+    private final Property<Boolean> skipPublished;
+    private final Property<String> publishedRepositoryUrl;
+    private final Property<Duration> publishedCacheTtl;
+    private final Property<Boolean> buildScanReport;
+    private final NamedDomainObjectContainer<MirrorRepository> mirrors;
 
-    public DeployerPluginExtension(Project project) {
-        ObjectFactory objects = project.getObjects();
+    @Inject
+    public DeployerPluginExtension(ObjectFactory objects) {
         this.dirs = objects.listProperty(File.class);
         this.username = objects.property(String.class);
         this.password = objects.property(String.class);
         this.publishingType = objects.property(PublishingType.class).convention(PublishingType.USER_MANAGED);
+        this.publisherUrl = objects.property(String.class).convention("https://central.sonatype.com");
+        this.bundleThreads =
+                objects.property(Integer.class).convention(Runtime.getRuntime().availableProcessors());
+        this.compressionLevel = objects.property(Integer.class).convention(Deflater.DEFAULT_COMPRESSION);
+        this.storedExtensions = objects.listProperty(String.class).convention(List.of("jar", "zip", "war"));
+        this.fastCompressionExtensions = objects.listProperty(String.class)
+                .convention(List.of("asc", "md5", "sha1", "sha256", "sha512"));
+        this.fastCompressionLevel = objects.property(Integer.class).convention(Deflater.BEST_SPEED);
+        this.streamBundle = objects.property(Boolean.class).convention(false);
+        this.reproducible = objects.property(Boolean.class).convention(true);
+        this.checksums = objects.listProperty(String.class).convention(List.of());
+        this.validate = objects.property(Boolean.class).convention(false);
+        this.signingKey = objects.property(String.class);
+        this.signingPassword = objects.property(String.class);
+        this.maxBundleSize = objects.property(Long.class);
+        this.bundleFragments = objects.property(Boolean.class).convention(false);
+        this.uploadConcurrency = objects.property(Integer.class).convention(4);
+        this.maxUploadRate = objects.property(Long.class);
+        this.maxRetries = objects.property(Integer.class).convention(3);
+        this.retryBackoff = objects.property(Duration.class).convention(Duration.ofSeconds(2));
+        this.connectTimeout = objects.property(Duration.class).convention(Duration.ofSeconds(30));
+        this.requestTimeout = objects.property(Duration.class).convention(Duration.ofMinutes(1));
+        this.uploadTimeout = objects.property(Duration.class).convention(Duration.ofHours(2));
+        this.statusPollInterval = objects.property(Duration.class).convention(Duration.ofSeconds(5));
+        this.publishTimeout = objects.property(Duration.class).convention(Duration.ofHours(3));
+        this.waitInBackground = objects.property(Boolean.class).convention(false);
+        this.snapshotRepositoryUrl =
+                objects.property(String.class).convention("https://central.sonatype.com/repository/maven-snapshots/");
+        this.snapshotConcurrency = objects.property(Integer.class).convention(16);
+        this.skipPublished = objects.property(Boolean.class).convention(false);
+        this.publishedRepositoryUrl = objects.property(String.class).convention("https://repo1.maven.org/maven2/");
+        this.publishedCacheTtl = objects.property(Duration.class).convention(Duration.ofHours(1));
+        this.buildScanReport = objects.property(Boolean.class).convention(false);
+        this.mirrors = objects.domainObjectContainer(MirrorRepository.class);
     }
 
+    /**
+     * Staging repositories to deploy, defaults to the local file repositories of {@code maven-publish}
+     * in this project and its subprojects, e.g. {@code url = layout.buildDirectory.dir("repo")}.
+     *
+     * <p> Discovered repositories are resolved lazily and their {@code publish} tasks run before the deploy tasks,
+     * so nothing has to exist when the build is configured.
+     */
     public ListProperty<File> getDirs() {
         return dirs;
     }
@@ -43,6 +119,280 @@ public abstract class DeployerPluginExtension {
         return publishingType;
     }
 
+    /**
+     * Base URL of the Publisher API receiving bundles and answering status checks, defaults to
+     * {@code https://central.sonatype.com}.
+     *
+     * <p> Only needed to deploy through a proxy or mirror of the Publisher API, or to a simulator in tests.
+     * A path is kept, requests go to {@code <publisherUrl>/api/v1/publisher/...}.
+     */
+    public Property<String> getPublisherUrl() {
+        return publisherUrl;
+    }
+
+    /**
+     * Number of threads used to compress bundle entries, defaults to the number of available processors.
+     */
+    public Property<Integer> getBundleThreads() {
+        return bundleThreads;
+    }
+
+    /**
+     * Deflate level (0-9, or -1 for the default) used for bundle entries.
+     */
+    public Property<Integer> getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * File extensions that are already compressed and are stored in the bundle without compression.
+     */
+    public ListProperty<String> getStoredExtensions() {
+        return storedExtensions;
+    }
+
+    /**
+     * File extensions compressed with {@link #getFastCompressionLevel()}, e.g. signatures and checksums.
+     */
+    public ListProperty<String> getFastCompressionExtensions() {
+        return fastCompressionExtensions;
+    }
+
+    /**
+     * Deflate level used for {@link #getFastCompressionExtensions()}.
+     */
+    public Property<Integer> getFastCompressionLevel() {
+        return fastCompressionLevel;
+    }
+
+    /**
+     * Whether to zip the bundle on the fly into the upload request instead of writing it to disk first.
+     *
+     * <p> Memory use stays bounded regardless of the bundle size, the upload is sent with chunked transfer encoding.
+     */
+    public Property<Boolean> getStreamBundle() {
+        return streamBundle;
+    }
+
+    /**
+     * Whether to sort bundle entries and normalize their timestamps and permissions, defaults to {@code true}.
+     *
+     * <p> Identical staged artifacts then produce a byte-identical bundle, which can be reused from the build cache.
+     */
+    public Property<Boolean> getReproducible() {
+        return reproducible;
+    }
+
+    /**
+     * Checksum files to generate when missing, any of {@code md5}, {@code sha1}, {@code sha256} and {@code sha512},
+     * defaults to none.
+     *
+     * <p> The digests are computed while the files are bundled, each file is read once for all of them.
+     * Signatures ({@code .asc}) and checksum files get no checksums.
+     */
+    public ListProperty<String> getChecksums() {
+        return checksums;
+    }
+
+    /**
+     * Whether to check the dirs against the Maven Central requirements before deploying, defaults to {@code false}.
+     *
+     * <p> POMs, signatures, checksums, sources and javadoc jars and versions are checked locally,
+     * so a bad release fails before it is uploaded, see the {@code deployValidate} task.
+     * POM elements inherited from a parent are looked up in the parent POM when it is staged too.
+     */
+    public Property<Boolean> getValidate() {
+        return validate;
+    }
+
+    /**
+     * ASCII armored secret key used to sign every file that has no {@code .asc} signature, unset (default) to not sign.
+     *
+     * <p> The key is read once and the files are signed in parallel while they are bundled,
+     * the signatures go straight into the bundle, no {@code .asc} file is written to disk.
+     * Replaces the {@code signing} plugin for the staged files, e.g.
+     * {@code signingKey = providers.environmentVariable("GPG_SECRET_KEY")}.
+     */
+    public Property<String> getSigningKey() {
+        return signingKey;
+    }
+
+    /**
+     * Password of {@link #getSigningKey()}, unset if the key is not protected.
+     */
+    public Property<String> getSigningPassword() {
+        return signingPassword;
+    }
+
+    /**
+     * Maximum size in bytes of the files packaged into one bundle, unset (default) for a single bundle.
+     *
+     * <p> When set, the files are split into several bundles that are uploaded concurrently.
+     * A GAV directory is never split across bundles.
+     */
+    public Property<Long> getMaxBundleSize() {
+        return maxBundleSize;
+    }
+
+    /**
+     * Whether each subproject bundles the {@link #getDirs() dirs} inside its directory, defaults to {@code false}.
+     *
+     * <p> The {@code deployBundleFragment} tasks of the subprojects run in parallel with {@code --parallel}
+     * and are cacheable; {@code deployBundle} then merges them by copying their compressed entries,
+     * without compressing anything again. Only subprojects applying {@code maven-publish} get such a task,
+     * dirs of the others are bundled by {@code deployBundle} itself.
+     */
+    public Property<Boolean> getBundleFragments() {
+        return bundleFragments;
+    }
+
+    /**
+     * Maximum number of bundles uploaded at the same time, defaults to 4.
+     */
+    public Property<Integer> getUploadConcurrency() {
+        return uploadConcurrency;
+    }
+
+    /**
+     * Maximum number of bytes per second sent by all bundle uploads together, unset (default) for no limit.
+     *
+     * <p> Keeps a release from saturating the network of a shared CI runner.
+     */
+    public Property<Long> getMaxUploadRate() {
+        return maxUploadRate;
+    }
+
+    /**
+     * Number of times a failed request to the Publisher API is retried, defaults to 3.
+     */
+    public Property<Integer> getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Initial delay between retries, doubled (with jitter) on every attempt, defaults to 2 seconds.
+     */
+    public Property<Duration> getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    /**
+     * Timeout for establishing a connection, defaults to 30 seconds.
+     */
+    public Property<Duration> getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Timeout for Publisher API calls other than uploads, defaults to 1 minute.
+     */
+    public Property<Duration> getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Timeout for uploading one bundle, defaults to 2 hours.
+     */
+    public Property<Duration> getUploadTimeout() {
+        return uploadTimeout;
+    }
+
+    /**
+     * Interval between status checks of a deployment being validated, defaults to 5 seconds.
+     *
+     * <p> Used with {@link PublishingType#WAIT_FOR_PUBLISHED}. The interval grows while the state does not change,
+     * and a deployment being published is polled less often.
+     */
+    public Property<Duration> getStatusPollInterval() {
+        return statusPollInterval;
+    }
+
+    /**
+     * How long to wait for all deployments to be published, defaults to 3 hours.
+     */
+    public Property<Duration> getPublishTimeout() {
+        return publishTimeout;
+    }
+
+    /**
+     * Whether to wait for {@link PublishingType#WAIT_FOR_PUBLISHED} deployments in the background, defaults to
+     * {@code false}.
+     *
+     * <p> The {@code deploy} task then finishes right after the upload and other tasks keep running.
+     * The build waits for the deployments before it finishes and fails if one is not published;
+     * tasks that need the release earlier depend on {@code awaitPublished}.
+     */
+    public Property<Boolean> getWaitInBackground() {
+        return waitInBackground;
+    }
+
+    /**
+     * Repository receiving {@link PublishingType#SNAPSHOT} deployments, defaults to the Maven Central snapshot
+     * repository.
+     */
+    public Property<String> getSnapshotRepositoryUrl() {
+        return snapshotRepositoryUrl;
+    }
+
+    /**
+     * Maximum number of files uploaded at the same time with {@link PublishingType#SNAPSHOT}, defaults to 16.
+     */
+    public Property<Integer> getSnapshotConcurrency() {
+        return snapshotConcurrency;
+    }
+
+    /**
+     * Whether to leave out the GAVs already published in {@link #getPublishedRepositoryUrl()}, defaults to
+     * {@code false}.
+     *
+     * <p> Re-running a release that partly failed, or releasing a monorepo where only a few modules changed
+     * versions, then only deploys what is missing. See the {@code deployCheckPublished} task.
+     */
+    public Property<Boolean> getSkipPublished() {
+        return skipPublished;
+    }
+
+    /**
+     * Repository checked by {@link #getSkipPublished()}, defaults to Maven Central.
+     */
+    public Property<String> getPublishedRepositoryUrl() {
+        return publishedRepositoryUrl;
+    }
+
+    /**
+     * How long a GAV not found by {@link #getSkipPublished()} is not checked again, defaults to 1 hour.
+     * A GAV found is never checked again.
+     */
+    public Property<Duration> getPublishedCacheTtl() {
+        return publishedCacheTtl;
+    }
+
+    /**
+     * Whether the total duration of each deploy phase is added to the build scan as custom values,
+     * defaults to {@code false}.
+     *
+     * <p> The phases are always reported in {@code build/deployer/report.json}, see {@link DeployReportService}.
+     * Requires the Develocity plugin.
+     */
+    public Property<Boolean> getBuildScanReport() {
+        return buildScanReport;
+    }
+
+    /**
+     * Maven repositories receiving a copy of each release, besides Maven Central, none by default.
+     *
+     * <p> The staged files are read once and uploaded to all mirrors concurrently, while the bundle is uploaded to
+     * Maven Central. A mirror that falls behind reads the files again on its own instead of slowing down the others,
+     * and the deploy fails listing each target that failed. See {@link MirrorDeployer}.
+     */
+    public NamedDomainObjectContainer<MirrorRepository> getMirrors() {
+        return mirrors;
+    }
+
+    public void mirrors(Action<? super NamedDomainObjectContainer<MirrorRepository>> action) {
+        action.execute(mirrors);
+    }
+
     @Override
     public String toString() {
         // json pretty print
@@ -71,8 +421,133 @@ public abstract class DeployerPluginExtension {
                 .append(",\n");
         result.append("  \"publishingType\": ")
                 .append(publishingType.isPresent() ? "\"" + publishingType.get().name() + "\"" : "<not set>")
-                .append("\n");
+                .append(",\n");
+        result.append("  \"publisherUrl\": ")
+                .append(publisherUrl.isPresent() ? "\"" + publisherUrl.get() + "\"" : "<not set>")
+                .append(",\n");
+        result.append("  \"bundleThreads\": ")
+                .append(bundleThreads.getOrNull())
+                .append(",\n");
+        result.append("  \"compressionLevel\": ")
+                .append(compressionLevel.getOrNull())
+                .append(",\n");
+        result.append("  \"storedExtensions\": ")
+                .append(toJson(storedExtensions))
+                .append(",\n");
+        result.append("  \"fastCompressionExtensions\": ")
+                .append(toJson(fastCompressionExtensions))
+                .append(",\n");
+        result.append("  \"fastCompressionLevel\": ")
+                .append(fastCompressionLevel.getOrNull())
+                .append(",\n");
+        result.append("  \"streamBundle\": ")
+                .append(streamBundle.getOrNull())
+                .append(",\n");
+        result.append("  \"reproducible\": ")
+                .append(reproducible.getOrNull())
+                .append(",\n");
+        result.append("  \"checksums\": ")
+                .append(toJson(checksums))
+                .append(",\n");
+        result.append("  \"validate\": ")
+                .append(validate.getOrNull())
+                .append(",\n");
+        result.append("  \"signingKey\": ")
+                .append(signingKey.isPresent() ? "\"****\"" : "<not set>")
+                .append(",\n");
+        result.append("  \"signingPassword\": ")
+                .append(signingPassword.isPresent() ? "\"****\"" : "<not set>")
+                .append(",\n");
+        result.append("  \"maxBundleSize\": ")
+                .append(maxBundleSize.getOrNull())
+                .append(",\n");
+        result.append("  \"bundleFragments\": ")
+                .append(bundleFragments.getOrNull())
+                .append(",\n");
+        result.append("  \"uploadConcurrency\": ")
+                .append(uploadConcurrency.getOrNull())
+                .append(",\n");
+        result.append("  \"maxUploadRate\": ")
+                .append(maxUploadRate.getOrNull())
+                .append(",\n");
+        result.append("  \"maxRetries\": ")
+                .append(maxRetries.getOrNull())
+                .append(",\n");
+        result.append("  \"retryBackoff\": ")
+                .append(toJson(retryBackoff))
+                .append(",\n");
+        result.append("  \"connectTimeout\": ")
+                .append(toJson(connectTimeout))
+                .append(",\n");
+        result.append("  \"requestTimeout\": ")
+                .append(toJson(requestTimeout))
+                .append(",\n");
+        result.append("  \"uploadTimeout\": ")
+                .append(toJson(uploadTimeout))
+                .append(",\n");
+        result.append("  \"statusPollInterval\": ")
+                .append(toJson(statusPollInterval))
+                .append(",\n");
+        result.append("  \"publishTimeout\": ")
+                .append(toJson(publishTimeout))
+                .append(",\n");
+        result.append("  \"waitInBackground\": ")
+                .append(waitInBackground.getOrNull())
+                .append(",\n");
+        result.append("  \"snapshotRepositoryUrl\": ")
+                .append(snapshotRepositoryUrl.isPresent() ? "\"" + snapshotRepositoryUrl.get() + "\"" : "<not set>")
+                .append(",\n");
+        result.append("  \"snapshotConcurrency\": ")
+                .append(snapshotConcurrency.getOrNull())
+                .append(",\n");
+        result.append("  \"skipPublished\": ")
+                .append(skipPublished.getOrNull())
+                .append(",\n");
+        result.append("  \"publishedRepositoryUrl\": ")
+                .append(publishedRepositoryUrl.isPresent() ? "\"" + publishedRepositoryUrl.get() + "\"" : "<not set>")
+                .append(",\n");
+        result.append("  \"publishedCacheTtl\": ")
+                .append(toJson(publishedCacheTtl))
+                .append(",\n");
+        result.append("  \"buildScanReport\": ")
+                .append(buildScanReport.getOrNull())
+                .append(",\n");
+        result.append("  \"mirrors\": ");
+        if (mirrors.isEmpty()) {
+            result.append("[]\n");
+        } else {
+            result.append("[\n");
+            int i = 0;
+            for (MirrorRepository mirror : mirrors) {
+                result.append("    {\"name\": \"")
+                        .append(mirror.getName())
+                        .append("\", \"url\": ")
+                        .append(mirror.getUrl().isPresent() ? "\"" + mirror.getUrl().get() + "\"" : "<not set>")
+                        .append(", \"username\": ")
+                        .append(mirror.getUsername().isPresent() ? "\"****\"" : "<not set>")
+                        .append(", \"concurrency\": ")
+                        .append(mirror.getConcurrency().getOrNull())
+                        .append(++i < mirrors.size() ? "},\n" : "}\n");
+            }
+            result.append("  ]\n");
+        }
         result.append("}");
         return result.toString();
     }
+
+    private static String toJson(Property<Duration> value) {
+        return value.isPresent() ? "\"" + value.get() + "\"" : "<not set>";
+    }
+
+    private static String toJson(ListProperty<String> values) {
+        List<String> list = values.getOrElse(Collections.emptyList());
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < list.size(); i++) {
+            result.append("\"").append(list.get(i)).append("\"");
+            if (i < list.size() - 1) {
+                result.append(", ");
+            }
+        }
+        return result.append("]").toString();
+    }
 }
@@ -0,0 +1,11 @@
+package io.github.danielliu1123.deployer;
+
+/**
+ * An uploaded bundle.
+ *
+ * @param bundleName     file name the bundle was uploaded with
+ * @param deploymentId   id returned by the Publisher API
+ * @param publishingType type the bundle was uploaded with, {@code null} if not known
+ * @author Freeman
+ */
+record Deployment(String bundleName, String deploymentId, PublishingType publishingType) {}
@@ -0,0 +1,34 @@
+package io.github.danielliu1123.deployer;
+
+/**
+ * State of a deployment as reported by the Publisher API.
+ *
+ * @author Freeman
+ * @see <a href="https://central.sonatype.org/publish/publish-portal-api/#verify-status-of-the-deployment">Verify Status of the Deployment</a>
+ */
+enum DeploymentState {
+    PENDING,
+    VALIDATING,
+    VALIDATED,
+    PUBLISHING,
+    PUBLISHED,
+    FAILED,
+    UNRECOGNIZED;
+
+    /**
+     * @return whether the deployment will not change state anymore
+     */
+    boolean isTerminal() {
+        return this == PUBLISHED || this == FAILED || this == UNRECOGNIZED;
+    }
+
+    /**
+     * A {@link PublishingType#USER_MANAGED} deployment stops at {@link #VALIDATED} until it is published manually.
+     *
+     * @param publishingType type the deployment was uploaded with, {@code null} if not known
+     * @return whether the deployment will not change state without manual action
+     */
+    boolean isSettled(PublishingType publishingType) {
+        return isTerminal() || (this == VALIDATED && publishingType != PublishingType.AUTOMATIC);
+    }
+}
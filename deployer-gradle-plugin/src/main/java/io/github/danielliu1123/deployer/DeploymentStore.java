@@ -0,0 +1,205 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.function.BiConsumer;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Remembers uploaded deployments in a small properties file, so a later build can follow them
+ * instead of uploading the same bundle again.
+ *
+ * <p> Each deployment is stored with the SHA-256 of its bundle and its last known state.
+ * The file is rewritten atomically on every change.
+ *
+ * @author Freeman
+ */
+final class DeploymentStore {
+
+    private final Path file;
+
+    DeploymentStore(Path file) {
+        this.file = file;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the recorded deployments, oldest first
+     */
+    synchronized List<Entry> load() throws IOException {
+        var properties = read();
+        List<Entry> entries = new ArrayList<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.endsWith(".bundle")) {
+                continue;
+            }
+            var id = key.substring(0, key.length() - ".bundle".length());
+            entries.add(new Entry(
+                    id,
+                    properties.getProperty(id + ".bundle"),
+                    properties.getProperty(id + ".sha256"),
+                    parsePublishingType(properties.getProperty(id + ".publishingType")),
+                    parseState(properties.getProperty(id + ".state")),
+                    Long.parseLong(properties.getProperty(id + ".uploadedAt", "0"))));
+        }
+        entries.sort(Comparator.comparingLong(Entry::uploadedAt).thenComparing(Entry::deploymentId));
+        return entries;
+    }
+
+    /**
+     * @return the newest deployment of a bundle with the given hash, uploaded with {@code publishingType},
+     *     that is still in progress or waits to be published manually
+     */
+    synchronized Optional<Entry> findReusable(String bundleHash, PublishingType publishingType) throws IOException {
+        Entry result = null;
+        for (Entry entry : load()) {
+            if (Objects.equals(entry.bundleHash(), bundleHash)
+                    && entry.publishingType() == publishingType
+                    && !entry.state().isTerminal()) {
+                result = entry;
+            }
+        }
+        return Optional.ofNullable(result);
+    }
+
+    /**
+     * Records a new deployment, forgetting older deployments of the same bundle.
+     */
+    synchronized void save(Entry entry) throws IOException {
+        var properties = read();
+        if (entry.bundleHash() != null) {
+            for (String key : properties.stringPropertyNames()) {
+                if (key.endsWith(".sha256") && entry.bundleHash().equals(properties.getProperty(key))) {
+                    remove(properties, key.substring(0, key.length() - ".sha256".length()));
+                }
+            }
+        }
+        var id = entry.deploymentId();
+        properties.setProperty(id + ".bundle", entry.bundleName());
+        if (entry.bundleHash() != null) {
+            properties.setProperty(id + ".sha256", entry.bundleHash());
+        }
+        if (entry.publishingType() != null) {
+            properties.setProperty(id + ".publishingType", entry.publishingType().name());
+        }
+        properties.setProperty(id + ".state", entry.state().name());
+        properties.setProperty(id + ".uploadedAt", String.valueOf(entry.uploadedAt()));
+        write(properties);
+    }
+
+    /**
+     * Updates the last known state of a recorded deployment, unknown ids are ignored.
+     */
+    synchronized void updateState(String deploymentId, DeploymentState state) throws IOException {
+        var properties = read();
+        if (properties.getProperty(deploymentId + ".bundle") == null) {
+            return;
+        }
+        properties.setProperty(deploymentId + ".state", state.name());
+        write(properties);
+    }
+
+    /**
+     * @return a {@link DeploymentWatcher} listener recording every state change, failures are only logged
+     */
+    BiConsumer<Deployment, DeploymentState> recorder(Logger logger) {
+        return (deployment, state) -> {
+            try {
+                updateState(deployment.deploymentId(), state);
+            } catch (IOException e) {
+                logger.warn("Failed to record state of deployment {} in {}: {}", deployment.deploymentId(), file, e);
+            }
+        };
+    }
+
+    private Properties read() throws IOException {
+        var properties = new Properties();
+        if (Files.isRegularFile(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return properties;
+    }
+
+    private void write(Properties properties) throws IOException {
+        Files.createDirectories(file.getParent());
+        var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "Maven Central deployments, see the deployStatus task");
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void remove(Properties properties, String id) {
+        for (String suffix : List.of(".bundle", ".sha256", ".publishingType", ".state", ".uploadedAt")) {
+            properties.remove(id + suffix);
+        }
+    }
+
+    /**
+     * @return {@code null} for deployments recorded before the type was, or an unknown type
+     */
+    private static PublishingType parsePublishingType(String publishingType) {
+        try {
+            return publishingType != null ? PublishingType.valueOf(publishingType) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static DeploymentState parseState(String state) {
+        try {
+            return state != null ? DeploymentState.valueOf(state) : DeploymentState.UNRECOGNIZED;
+        } catch (IllegalArgumentException e) {
+            return DeploymentState.UNRECOGNIZED;
+        }
+    }
+
+    /**
+     * @param deploymentId   id returned by the Publisher API
+     * @param bundleName     file name the bundle was uploaded with
+     * @param bundleHash     hex encoded SHA-256 of the bundle, {@code null} for a streamed bundle
+     * @param publishingType type the bundle was uploaded with, {@code null} if not recorded
+     * @param state          last known state
+     * @param uploadedAt     upload time in epoch millis
+     */
+    record Entry(
+            String deploymentId,
+            String bundleName,
+            String bundleHash,
+            PublishingType publishingType,
+            DeploymentState state,
+            long uploadedAt) {
+
+        /**
+         * @return whether the deployment is still being validated or published, see
+         *     {@link DeploymentState#isSettled(PublishingType)}
+         */
+        boolean isLive() {
+            return !state.isSettled(publishingType);
+        }
+
+        Entry withState(DeploymentState state) {
+            return new Entry(deploymentId, bundleName, bundleHash, publishingType, state, uploadedAt);
+        }
+
+        Deployment deployment() {
+            return new Deployment(bundleName, deploymentId, publishingType);
+        }
+    }
+}
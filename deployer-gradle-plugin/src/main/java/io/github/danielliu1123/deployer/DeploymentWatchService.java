@@ -0,0 +1,83 @@
+package io.github.danielliu1123.deployer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Waits for deployments to be published in the background, so {@link DeployTask} does not hold a worker
+ * while Maven Central validates and publishes.
+ *
+ * <p> The build waits for all deployments when the service is closed, at the end of the build,
+ * and fails if one of them was not published. Tasks that need the release on Maven Central earlier
+ * depend on {@link AwaitPublishedTask} instead.
+ *
+ * @author Freeman
+ */
+public abstract class DeploymentWatchService implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+
+    static final String NAME = "deployerDeploymentWatch";
+
+    private final List<CompletableFuture<Map<Deployment, DeploymentState>>> watches = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(new NamedThreadFactory("deployer-publish"));
+
+    /**
+     * Starts watching {@code deployments} on a background thread and returns immediately.
+     */
+    CompletableFuture<Map<Deployment, DeploymentState>> watch(DeploymentWatcher watcher, List<Deployment> deployments) {
+        var future = CompletableFuture.supplyAsync(
+                () -> {
+                    try {
+                        return watcher.await(deployments);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for deployments", e);
+                    }
+                },
+                executor);
+        watches.add(future);
+        return future;
+    }
+
+    /**
+     * Blocks until every watched deployment is published.
+     *
+     * @return the number of watched deployments
+     * @throws IllegalStateException if a deployment was not published
+     */
+    int awaitAll() {
+        int count = 0;
+        RuntimeException failure = null;
+        for (var watch : watches) {
+            try {
+                count += watch.join().size();
+            } catch (CompletionException e) {
+                var cause = e.getCause() instanceof RuntimeException r ? r : new IllegalStateException(e.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        try {
+            awaitAll();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Follows deployments until they are PUBLISHED or FAILED, all of them concurrently.
+ * A {@link PublishingType#USER_MANAGED} deployment is done once VALIDATED, it is then published manually.
+ *
+ * <p> The polling interval depends on the state: validation usually takes seconds to a few minutes and is polled
+ * at {@link Settings#pollInterval()}, publishing takes tens of minutes and is polled less often.
+ * While a deployment stays in the same state the interval grows, up to a cap, and it is reset on every change.
+ * Each state change is logged as it happens.
+ *
+ * @author Freeman
+ */
+final class DeploymentWatcher {
+
+    private static final Pattern DEPLOYMENT_STATE = Pattern.compile("\"deploymentState\"\\s*:\\s*\"([^\"]+)\"");
+
+    private static final int MAX_THREADS = 4;
+    private static final double GROWTH = 1.5;
+
+    private final PublisherClient client;
+    private final Settings settings;
+    private final Logger logger;
+    private final BiConsumer<Deployment, DeploymentState> listener;
+
+    DeploymentWatcher(PublisherClient client, Settings settings, Logger logger) {
+        this(client, settings, logger, (deployment, state) -> {});
+    }
+
+    /**
+     * @param listener called on a watcher thread whenever a deployment changes state
+     */
+    DeploymentWatcher(
+            PublisherClient client,
+            Settings settings,
+            Logger logger,
+            BiConsumer<Deployment, DeploymentState> listener) {
+        this.client = client;
+        this.settings = settings;
+        this.logger = logger;
+        this.listener = listener;
+    }
+
+    /**
+     * Blocks until every deployment is settled, see {@link DeploymentState#isSettled}, or the timeout elapsed.
+     *
+     * @return the final state of each deployment, in the order of {@code deployments}
+     * @throws IllegalStateException if a deployment failed, or on timeout
+     */
+    Map<Deployment, DeploymentState> await(List<Deployment> deployments) throws InterruptedException {
+        if (deployments.isEmpty()) {
+            return Map.of();
+        }
+        for (Deployment deployment : deployments) {
+            logger.lifecycle(
+                    "[{}] Waiting for deployment to be {} (deploymentId: {})",
+                    deployment.bundleName(),
+                    isUserManaged(deployment) ? DeploymentState.VALIDATED : DeploymentState.PUBLISHED,
+                    deployment.deploymentId());
+        }
+
+        var scheduler = Executors.newScheduledThreadPool(
+                Math.min(deployments.size(), MAX_THREADS), new NamedThreadFactory("deployer-watcher"));
+        try {
+            List<Watch> watches = new ArrayList<>();
+            for (Deployment deployment : deployments) {
+                var watch = new Watch(deployment, System.nanoTime());
+                watches.add(watch);
+                scheduler.execute(() -> poll(watch, scheduler));
+            }
+
+            try {
+                CompletableFuture.allOf(watches.stream().map(w -> w.result).toArray(CompletableFuture[]::new))
+                        .get(settings.timeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                List<String> pending = new ArrayList<>();
+                for (Watch watch : watches) {
+                    if (!watch.result.isDone()) {
+                        pending.add(watch.deployment.bundleName() + " (" + watch.state + ")");
+                    }
+                }
+                throw new IllegalStateException("Timeout waiting for deployments to be PUBLISHED after %s: %s"
+                        .formatted(format(settings.timeout()), pending));
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to watch deployments", e.getCause());
+            }
+
+            Map<Deployment, DeploymentState> states = new LinkedHashMap<>();
+            List<String> failures = new ArrayList<>();
+            for (Watch watch : watches) {
+                var state = watch.result.join();
+                states.put(watch.deployment, state);
+                if (state == DeploymentState.FAILED || state == DeploymentState.UNRECOGNIZED) {
+                    failures.add(watch.deployment.bundleName() + " (" + state + ", response: " + watch.body + ")");
+                }
+            }
+            if (!failures.isEmpty()) {
+                throw new IllegalStateException("%d of %d deployments were not published: %s"
+                        .formatted(failures.size(), deployments.size(), failures));
+            }
+            return states;
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void poll(Watch watch, ScheduledExecutorService scheduler) {
+        var deployment = watch.deployment;
+        var state = watch.state;
+        try {
+            var response = client.status(deployment.deploymentId());
+            if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                watch.body = response.body();
+                state = parseState(response.body());
+            } else {
+                logger.warn(
+                        "[{}] Status check failed with code {}: {}",
+                        deployment.bundleName(),
+                        response.statusCode(),
+                        response.body());
+            }
+        } catch (IOException e) {
+            logger.warn("[{}] Status check failed: {}", deployment.bundleName(), e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException e) {
+            watch.result.completeExceptionally(e);
+            return;
+        }
+
+        watch.update(state);
+        if (state != null && state.isSettled(deployment.publishingType())) {
+            watch.result.complete(state);
+            return;
+        }
+        var interval = interval(state, watch.unchangedPolls, settings.pollInterval());
+        try {
+            scheduler.schedule(() -> poll(watch, scheduler), interval.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down, await() has already given up
+        }
+    }
+
+    /**
+     * @param state          current state, {@code null} if not known yet
+     * @param unchangedPolls number of polls since the state last changed
+     * @param base           interval for a fresh state during validation
+     */
+    static Duration interval(DeploymentState state, int unchangedPolls, Duration base) {
+        long baseMillis = Math.max(1, base.toMillis());
+        long min = baseMillis;
+        long max = baseMillis * 4;
+        if (state == DeploymentState.PUBLISHING) {
+            min = baseMillis * 4;
+            max = baseMillis * 12;
+        }
+        double grown = min * Math.pow(GROWTH, Math.min(unchangedPolls, 32));
+        return Duration.ofMillis((long) Math.min(grown, max));
+    }
+
+    /**
+     * Checks the state of a deployment once.
+     *
+     * @return the current state, or {@code null} if the Publisher API did not answer with 2xx
+     */
+    static DeploymentState check(PublisherClient client, String deploymentId)
+            throws IOException, InterruptedException {
+        var response = client.status(deploymentId);
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            return null;
+        }
+        return parseState(response.body());
+    }
+
+    static DeploymentState parseState(String responseBody) {
+        Matcher matcher = DEPLOYMENT_STATE.matcher(responseBody);
+        if (!matcher.find()) {
+            return DeploymentState.UNRECOGNIZED;
+        }
+        try {
+            return DeploymentState.valueOf(matcher.group(1));
+        } catch (IllegalArgumentException e) {
+            return DeploymentState.UNRECOGNIZED;
+        }
+    }
+
+    private static boolean isUserManaged(Deployment deployment) {
+        return deployment.publishingType() == PublishingType.USER_MANAGED;
+    }
+
+    static String format(Duration duration) {
+        return "%dm%ds".formatted(duration.toMinutes(), duration.toSecondsPart());
+    }
+
+    /**
+     * @param pollInterval interval between status checks while the deployment is validated
+     * @param timeout      overall deadline for all deployments
+     */
+    record Settings(Duration pollInterval, Duration timeout) implements Serializable {
+
+        static Settings of(PublisherOptions options) {
+            return new Settings(options.getStatusPollInterval().get(), options.getPublishTimeout().get());
+        }
+    }
+
+    private final class Watch {
+
+        private final Deployment deployment;
+        private final long start;
+        private final CompletableFuture<DeploymentState> result = new CompletableFuture<>();
+        private volatile DeploymentState state;
+        private volatile String body;
+        private int unchangedPolls;
+
+        Watch(Deployment deployment, long start) {
+            this.deployment = deployment;
+            this.start = start;
+        }
+
+        void update(DeploymentState newState) {
+            if (newState == state) {
+                unchangedPolls++;
+                return;
+            }
+            var elapsed = format(Duration.ofNanos(System.nanoTime() - start));
+            switch (newState) {
+                case PUBLISHED -> logger.lifecycle(
+                        "[{}] ✓ [ {} ] Deployment successfully PUBLISHED and available on Maven Central!",
+                        deployment.bundleName(),
+                        elapsed);
+                case FAILED -> logger.error("[{}] ✗ Deployment FAILED. Response: {}", deployment.bundleName(), body);
+                case UNRECOGNIZED -> logger.warn(
+                        "[{}] Unrecognized deployment state. Response: {}", deployment.bundleName(), body);
+                case VALIDATED -> {
+                    if (isUserManaged(deployment)) {
+                        logger.lifecycle(
+                                "[{}] ✓ [ {} ] Deployment VALIDATED, publish it on the Central Portal",
+                                deployment.bundleName(),
+                                elapsed);
+                    } else {
+                        logChange(newState, elapsed);
+                    }
+                }
+                default -> logChange(newState, elapsed);
+            }
+            state = newState;
+            unchangedPolls = 0;
+            listener.accept(deployment, newState);
+        }
+
+        private void logChange(DeploymentState newState, String elapsed) {
+            if (state == null) {
+                logger.lifecycle("[{}] [ {} ] {}", deployment.bundleName(), elapsed, newState);
+            } else {
+                logger.lifecycle("[{}] [ {} ] {} -> {}", deployment.bundleName(), elapsed, state, newState);
+            }
+        }
+    }
+}
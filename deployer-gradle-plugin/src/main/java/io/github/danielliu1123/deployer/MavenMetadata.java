@@ -0,0 +1,195 @@
+package io.github.danielliu1123.deployer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Merges the {@code maven-metadata.xml} files of a repository with newly deployed snapshots.
+ *
+ * <p> Two files are maintained: one per GAV directory listing the files of the latest snapshot build,
+ * and one per GA directory listing the versions.
+ * Entries of the remote files that are not replaced are kept, so deploying some classifiers of a version
+ * does not hide the others.
+ *
+ * @author Freeman
+ * @see <a href="https://maven.apache.org/repositories/metadata.html">Maven Metadata</a>
+ */
+final class MavenMetadata {
+
+    static final String FILE_NAME = "maven-metadata.xml";
+
+    private MavenMetadata() {}
+
+    /**
+     * @return the build number of the latest snapshot in the GAV {@code metadata}, 0 if there is none
+     */
+    static int buildNumberOf(Element metadata) {
+        var snapshot = element(metadata, "versioning", "snapshot", "buildNumber");
+        if (snapshot == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(snapshot.getTextContent().trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @param uploaded files of the new snapshot build
+     * @param remote   metadata currently in the repository, or {@code null}
+     * @return the GAV metadata
+     */
+    static String versionMetadata(
+            String groupId,
+            String artifactId,
+            String version,
+            Snapshot snapshot,
+            String lastUpdated,
+            List<SnapshotVersion> uploaded,
+            Element remote) {
+        Map<String, SnapshotVersion> versions = new LinkedHashMap<>();
+        var remoteVersions = element(remote, "versioning", "snapshotVersions");
+        if (remoteVersions != null) {
+            for (Element e : children(remoteVersions, "snapshotVersion")) {
+                var v = new SnapshotVersion(
+                        text(e, "classifier"), text(e, "extension"), text(e, "value"), text(e, "updated"));
+                versions.put(v.key(), v);
+            }
+        }
+        for (SnapshotVersion v : uploaded) {
+            versions.remove(v.key());
+            versions.put(v.key(), v);
+        }
+
+        var xml = header(groupId, artifactId);
+        xml.append("  <version>").append(escape(version)).append("</version>\n");
+        xml.append("  <versioning>\n");
+        xml.append("    <snapshot>\n");
+        xml.append("      <timestamp>").append(snapshot.timestamp()).append("</timestamp>\n");
+        xml.append("      <buildNumber>").append(snapshot.buildNumber()).append("</buildNumber>\n");
+        xml.append("    </snapshot>\n");
+        xml.append("    <lastUpdated>").append(lastUpdated).append("</lastUpdated>\n");
+        xml.append("    <snapshotVersions>\n");
+        for (SnapshotVersion v : versions.values()) {
+            xml.append("      <snapshotVersion>\n");
+            if (v.classifier() != null && !v.classifier().isEmpty()) {
+                xml.append("        <classifier>")
+                        .append(escape(v.classifier()))
+                        .append("</classifier>\n");
+            }
+            xml.append("        <extension>").append(escape(v.extension())).append("</extension>\n");
+            xml.append("        <value>").append(escape(v.value())).append("</value>\n");
+            xml.append("        <updated>").append(escape(v.updated())).append("</updated>\n");
+            xml.append("      </snapshotVersion>\n");
+        }
+        xml.append("    </snapshotVersions>\n");
+        xml.append("  </versioning>\n");
+        xml.append("</metadata>\n");
+        return xml.toString();
+    }
+
+    /**
+     * @param versions versions deployed, the last one becomes the latest
+     * @param remote   metadata currently in the repository, or {@code null}
+     * @return the GA metadata
+     */
+    static String artifactMetadata(
+            String groupId, String artifactId, List<String> versions, String lastUpdated, Element remote) {
+        Set<String> all = new LinkedHashSet<>();
+        var remoteVersions = element(remote, "versioning", "versions");
+        if (remoteVersions != null) {
+            for (Element e : children(remoteVersions, "version")) {
+                all.add(e.getTextContent().trim());
+            }
+        }
+        all.addAll(versions);
+
+        var xml = header(groupId, artifactId);
+        xml.append("  <versioning>\n");
+        xml.append("    <latest>")
+                .append(escape(versions.get(versions.size() - 1)))
+                .append("</latest>\n");
+        xml.append("    <versions>\n");
+        for (String version : all) {
+            xml.append("      <version>").append(escape(version)).append("</version>\n");
+        }
+        xml.append("    </versions>\n");
+        xml.append("    <lastUpdated>").append(lastUpdated).append("</lastUpdated>\n");
+        xml.append("  </versioning>\n");
+        xml.append("</metadata>\n");
+        return xml.toString();
+    }
+
+    private static StringBuilder header(String groupId, String artifactId) {
+        var xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<metadata modelVersion=\"1.1.0\">\n");
+        xml.append("  <groupId>").append(escape(groupId)).append("</groupId>\n");
+        xml.append("  <artifactId>").append(escape(artifactId)).append("</artifactId>\n");
+        return xml;
+    }
+
+    private static Element element(Element root, String... path) {
+        Element element = root;
+        for (String name : path) {
+            element = element != null ? BundleValidator.child(element, name) : null;
+        }
+        return element;
+    }
+
+    private static List<Element> children(Element element, String name) {
+        List<Element> result = new ArrayList<>();
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element e && name.equals(e.getTagName())) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    private static String text(Element element, String name) {
+        var child = BundleValidator.child(element, name);
+        return child != null ? child.getTextContent().trim() : "";
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * @param timestamp   UTC time of the build, {@code yyyyMMdd.HHmmss}
+     * @param buildNumber number of the build, starting at 1 for each version
+     */
+    record Snapshot(String timestamp, int buildNumber) {
+
+        /**
+         * @return the version the files of this build are named with, e.g. {@code 1.0.0-20250101.120000-3}
+         */
+        String versionOf(String baseVersion) {
+            return baseVersion.substring(0, baseVersion.length() - "SNAPSHOT".length()) + timestamp + "-"
+                    + buildNumber;
+        }
+    }
+
+    /**
+     * One file of a snapshot build.
+     *
+     * @param classifier e.g. {@code sources}, empty for the main artifact
+     * @param extension  e.g. {@code jar} or {@code pom}
+     * @param value      version of the file, see {@link Snapshot#versionOf}
+     * @param updated    UTC time of the deploy, {@code yyyyMMddHHmmss}
+     */
+    record SnapshotVersion(String classifier, String extension, String value, String updated) {
+
+        private String key() {
+            return classifier + ":" + extension;
+        }
+    }
+}
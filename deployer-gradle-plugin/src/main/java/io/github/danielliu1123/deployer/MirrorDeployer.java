@@ -0,0 +1,695 @@
+package io.github.danielliu1123.deployer;
+
+import io.github.danielliu1123.deployer.BundlePlan.Source;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.gradle.api.logging.Logger;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+/**
+ * Deploys a release to several Maven repositories at once, e.g. an internal Nexus mirroring Maven Central,
+ * reading each staged file once.
+ *
+ * <p> Reader threads read every file in chunks, compute its missing checksums and signature on the way,
+ * and hand the chunks to one {@link Feed} per repository. Each repository uploads from its feeds on its own threads,
+ * at most {@link Repository#concurrency()} files at a time, and holds at most {@link #BUFFER_BYTES} of chunks it did
+ * not send yet. The readers wait while all repositories hold that much, i.e. they keep pace with the fastest one.
+ * A repository falling behind is detached from the file being read and reads the rest of it from disk itself,
+ * so a slow repository never holds up the readers or the other repositories.
+ * A retried upload also reads the file from disk.
+ *
+ * <p> Once all files of a repository are uploaded, the {@code maven-metadata.xml} of each GA is merged with the
+ * remote one and uploaded. Staged {@code maven-metadata.xml} files describe the local repository and are ignored.
+ * Each repository succeeds or fails on its own, see {@link Result}.
+ *
+ * @author Freeman
+ */
+final class MirrorDeployer {
+
+    static final int CHUNK_SIZE = 256 * 1024;
+    /**
+     * Maximum number of bytes read but not sent yet, per repository.
+     */
+    static final long BUFFER_BYTES = 32L * 1024 * 1024;
+
+    private static final DateTimeFormatter LAST_UPDATED =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+    /**
+     * Maximum number of failures listed per repository.
+     */
+    private static final int MAX_REPORTED_FAILURES = 10;
+    /**
+     * Maximum time the readers wait for a repository to send buffered chunks, before detaching all of them.
+     */
+    private static final long MAX_STALL_NANOS = 1_000_000_000L;
+
+    private final List<Repository> repositories;
+    private final Options options;
+    private final Logger logger;
+    // notified whenever a repository sent or dropped chunks
+    private final Object drained = new Object();
+
+    MirrorDeployer(List<Repository> repositories, Options options, Logger logger) {
+        this.repositories = repositories;
+        this.options = options;
+        this.logger = logger;
+    }
+
+    /**
+     * @param sources files to deploy, see {@link BundlePlan#scan}
+     * @param now     time of the deploy, written to the metadata
+     * @return one result per repository, in the order of the repositories
+     * @throws IllegalArgumentException if a file is not in a GAV directory of a release version
+     */
+    List<Result> deploy(List<Source> sources, Instant now) throws InterruptedException {
+        List<Source> files = new ArrayList<>();
+        Set<String> names = new LinkedHashSet<>();
+        Map<String, Ga> gas = new LinkedHashMap<>();
+        for (Source source : sources) {
+            if (fileName(source.name()).startsWith("maven-metadata")) {
+                continue;
+            }
+            var gav = SnapshotDeployer.Gav.parse(BundlePlan.gavOf(source.name()));
+            if (gav.version().endsWith("-SNAPSHOT")) {
+                throw new IllegalArgumentException("Snapshots are not deployed to mirrors, got " + gav.path());
+            }
+            var ga = gas.computeIfAbsent(
+                    gav.gaPath(), path -> new Ga(path, gav.groupId(), gav.artifactId(), new ArrayList<>()));
+            if (!ga.versions().contains(gav.version())) {
+                ga.versions().add(gav.version());
+            }
+            files.add(source);
+            names.add(source.name());
+        }
+
+        String lastUpdated = LAST_UPDATED.format(now);
+        List<Mirror> mirrors = repositories.stream().map(Mirror::new).toList();
+        ExecutorService readers = Executors.newFixedThreadPool(
+                Math.max(1, options.readThreads()), new NamedThreadFactory("deployer-mirror-read"));
+        try {
+            for (Source source : files) {
+                var digests = new CompletableFuture<Map<String, String>>();
+                List<Feed> feeds = new ArrayList<>();
+                for (Mirror mirror : mirrors) {
+                    var feed = new Feed(source.file(), mirror.buffered, drained);
+                    feeds.add(feed);
+                    mirror.submit(source, feed, digests);
+                }
+                var algorithms = missing(source, names);
+                readers.execute(() -> read(source, algorithms, mirrors, feeds, digests));
+            }
+
+            List<CompletableFuture<Result>> pending = new ArrayList<>();
+            for (Mirror mirror : mirrors) {
+                pending.add(mirror.finish(gas.values(), lastUpdated));
+            }
+            List<Result> results = new ArrayList<>();
+            for (int i = 0; i < mirrors.size(); i++) {
+                try {
+                    results.add(pending.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(mirrors.get(i).result(List.of(describe(e.getCause()))));
+                }
+            }
+            return results;
+        } finally {
+            readers.shutdownNow();
+            for (Mirror mirror : mirrors) {
+                mirror.executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * @return the checksums, and the signature, to generate for {@code source}, none if it has them all
+     */
+    private Collection<String> missing(Source source, Set<String> names) {
+        if (Checksums.isExempt(source.name())) {
+            return List.of();
+        }
+        Set<String> algorithms = new LinkedHashSet<>(BundleValidator.REQUIRED_CHECKSUMS);
+        algorithms.addAll(options.checksums());
+        List<String> result = new ArrayList<>();
+        for (String algorithm : Checksums.normalize(algorithms)) {
+            if (!names.contains(source.name() + "." + algorithm)) {
+                result.add(algorithm);
+            }
+        }
+        if (options.signer() != null && !names.contains(source.name() + "." + Checksums.SIGNATURE)) {
+            result.add(Checksums.SIGNATURE);
+        }
+        return result;
+    }
+
+    /**
+     * Reads {@code source} once, into all feeds, waiting only while none of them has room.
+     */
+    private void read(
+            Source source,
+            Collection<String> algorithms,
+            List<Mirror> mirrors,
+            List<Feed> feeds,
+            CompletableFuture<Map<String, String>> digests) {
+        try (var in = Files.newInputStream(source.file())) {
+            var checksums = new Checksums(algorithms, options.signer());
+            long offset = 0;
+            for (byte[] chunk; (chunk = in.readNBytes(CHUNK_SIZE)).length > 0; offset += chunk.length) {
+                checksums.update(chunk, 0, chunk.length);
+                awaitRoom(mirrors, chunk.length);
+                for (Feed feed : feeds) {
+                    feed.offer(chunk, offset);
+                }
+            }
+            for (Feed feed : feeds) {
+                feed.end(null);
+            }
+            digests.complete(checksums.finish());
+        } catch (IOException | RuntimeException e) {
+            for (Feed feed : feeds) {
+                feed.end(e);
+            }
+            digests.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Waits until a repository has room for {@code length} more bytes, or none sent anything for
+     * {@link #MAX_STALL_NANOS}, e.g. as all their uploads wait for files still being read.
+     */
+    private void awaitRoom(List<Mirror> mirrors, int length) throws InterruptedIOException {
+        long deadline = System.nanoTime() + MAX_STALL_NANOS;
+        synchronized (drained) {
+            for (long left = MAX_STALL_NANOS;
+                    left > 0 && mirrors.stream().allMatch(m -> m.buffered.get() + length > BUFFER_BYTES);
+                    left = deadline - System.nanoTime()) {
+                try {
+                    drained.wait(Math.max(1, left / 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for mirrors");
+                }
+            }
+        }
+    }
+
+    private static String describe(Throwable e) {
+        return e instanceof IllegalStateException ? e.getMessage() : e.toString();
+    }
+
+    private static String fileName(String name) {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * The uploads to one repository.
+     */
+    private final class Mirror {
+
+        private final Repository repository;
+        private final ExecutorService executor;
+        // bytes in the chunks of all feeds of this repository
+        private final AtomicLong buffered = new AtomicLong();
+        private final AtomicInteger files = new AtomicInteger();
+        private final AtomicInteger reread = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        private final List<CompletableFuture<Void>> uploads = new ArrayList<>();
+        private final long start = System.nanoTime();
+
+        Mirror(Repository repository) {
+            this.repository = repository;
+            this.executor = Executors.newFixedThreadPool(
+                    Math.max(1, repository.concurrency()),
+                    new NamedThreadFactory("deployer-mirror-" + repository.name()));
+        }
+
+        void submit(Source source, Feed feed, CompletableFuture<Map<String, String>> digests) {
+            uploads.add(CompletableFuture.runAsync(() -> upload(source, feed, digests), executor));
+        }
+
+        /**
+         * Uploads the metadata once all files are uploaded, without blocking any thread meanwhile.
+         */
+        CompletableFuture<Result> finish(Collection<Ga> gas, String lastUpdated) {
+            return CompletableFuture.allOf(uploads.toArray(CompletableFuture<?>[]::new))
+                    .thenCompose(done -> {
+                        if (!failures.isEmpty()) {
+                            // metadata last, a release becomes visible only once all its files are there
+                            return CompletableFuture.completedFuture(null);
+                        }
+                        return CompletableFuture.allOf(gas.stream()
+                                .map(ga -> CompletableFuture.runAsync(() -> uploadMetadata(ga, lastUpdated), executor))
+                                .toArray(CompletableFuture<?>[]::new));
+                    })
+                    .thenApply(done -> result(List.of()));
+        }
+
+        Result result(List<String> more) {
+            List<String> all = new ArrayList<>(failures);
+            all.addAll(more);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            return new Result(repository.name(), files.get(), bytes.get(), reread.get(), millis, all);
+        }
+
+        private void upload(Source source, Feed feed, CompletableFuture<Map<String, String>> digests) {
+            try {
+                // the first attempt reads the feed, a retry reads the file from disk
+                var first = new AtomicBoolean(true);
+                repository.put(
+                        source.name(),
+                        source.size(),
+                        () -> first.getAndSet(false) ? feed.stream() : open(source.file()));
+                bytes.addAndGet(source.size());
+                if (feed.isDetached() && reread.incrementAndGet() == 1) {
+                    logger.lifecycle("[{}] Fell behind, reading files from disk again", repository.name());
+                }
+                for (var e : digests.get().entrySet()) {
+                    put(source.name() + "." + e.getKey(), e.getValue().getBytes(StandardCharsets.US_ASCII));
+                }
+                files.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.add(source.name() + " (interrupted)");
+            } catch (ExecutionException e) {
+                failures.add(source.name() + " (" + e.getCause() + ")");
+            } catch (Exception e) {
+                failures.add(describe(e));
+            } finally {
+                feed.close();
+            }
+        }
+
+        /**
+         * Merges the GA metadata with the one in the repository and uploads it with its checksums.
+         */
+        private void uploadMetadata(Ga ga, String lastUpdated) {
+            String path = ga.path() + "/" + MavenMetadata.FILE_NAME;
+            try {
+                byte[] remote = repository.get(path);
+                Element element = remote != null ? BundleValidator.parseXml(new ByteArrayInputStream(remote)) : null;
+                byte[] data = MavenMetadata.artifactMetadata(
+                                ga.groupId(), ga.artifactId(), ga.versions(), lastUpdated, element)
+                        .getBytes(StandardCharsets.UTF_8);
+                Set<String> algorithms = new LinkedHashSet<>(BundleValidator.REQUIRED_CHECKSUMS);
+                algorithms.addAll(options.checksums());
+                var checksums = new Checksums(Checksums.normalize(algorithms));
+                checksums.update(data, 0, data.length);
+
+                put(path, data);
+                for (var e : checksums.finish().entrySet()) {
+                    put(path + "." + e.getKey(), e.getValue().getBytes(StandardCharsets.US_ASCII));
+                }
+            } catch (SAXException e) {
+                failures.add("Invalid %s: %s".formatted(path, e.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.add(path + " (interrupted)");
+            } catch (Exception e) {
+                failures.add(describe(e));
+            }
+        }
+
+        private void put(String path, byte[] data) throws IOException, InterruptedException {
+            repository.put(path, data.length, () -> new ByteArrayInputStream(data));
+            bytes.addAndGet(data.length);
+        }
+
+        private static InputStream open(Path file) {
+            try {
+                return Files.newInputStream(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * The chunks of one file on their way to one repository.
+     *
+     * <p> The reader never waits for a feed: when the repository holds {@link #BUFFER_BYTES} already,
+     * the feed is detached, its chunks are dropped if the upload has not started yet, and the upload continues
+     * from disk where the chunks end.
+     */
+    static final class Feed {
+
+        private final Path file;
+        private final AtomicLong buffered;
+        private final Object drained;
+        private final Deque<byte[]> chunks = new ArrayDeque<>();
+        private long queued;
+        // offset the rest of the file is read from disk, -1 while attached
+        private long detachedAt = -1;
+        private boolean started;
+        private boolean ended;
+        private boolean closed;
+        private Exception failure;
+
+        /**
+         * @param buffered bytes in the chunks of all feeds of the repository
+         * @param drained  notified whenever chunks leave {@code buffered}
+         */
+        Feed(Path file, AtomicLong buffered, Object drained) {
+            this.file = file;
+            this.buffered = buffered;
+            this.drained = drained;
+        }
+
+        /**
+         * @param offset position of {@code chunk} in the file
+         */
+        synchronized void offer(byte[] chunk, long offset) {
+            if (closed || detachedAt >= 0) {
+                return;
+            }
+            if (buffered.addAndGet(chunk.length) > BUFFER_BYTES) {
+                buffered.addAndGet(-chunk.length);
+                if (started) {
+                    detachedAt = offset;
+                } else {
+                    release();
+                    detachedAt = 0;
+                }
+                notifyAll();
+                return;
+            }
+            chunks.add(chunk);
+            queued += chunk.length;
+            notifyAll();
+        }
+
+        /**
+         * @param failure why the file could not be read, {@code null} once it is read completely
+         */
+        synchronized void end(Exception failure) {
+            ended = true;
+            this.failure = failure;
+            notifyAll();
+        }
+
+        synchronized boolean isDetached() {
+            return detachedAt >= 0;
+        }
+
+        /**
+         * Drops the chunks not read yet, the upload is done.
+         */
+        synchronized void close() {
+            closed = true;
+            release();
+            notifyAll();
+        }
+
+        /**
+         * @return the content of the file, from the chunks, then from disk if detached
+         */
+        synchronized InputStream stream() {
+            started = true;
+            return new FeedStream();
+        }
+
+        private void release() {
+            if (queued > 0) {
+                buffered.addAndGet(-queued);
+                queued = 0;
+                chunks.clear();
+                signal();
+            }
+        }
+
+        private void signal() {
+            synchronized (drained) {
+                drained.notifyAll();
+            }
+        }
+
+        /**
+         * @return the next chunk, or {@code null} at the end of the file or where it is detached
+         */
+        private synchronized byte[] take() throws IOException {
+            while (chunks.isEmpty() && !ended && detachedAt < 0 && !closed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while reading " + file);
+                }
+            }
+            if (closed) {
+                throw new IOException("Stream closed: " + file);
+            }
+            var chunk = chunks.poll();
+            if (chunk != null) {
+                queued -= chunk.length;
+                buffered.addAndGet(-chunk.length);
+                signal();
+                return chunk;
+            }
+            if (detachedAt < 0 && failure != null) {
+                throw new IOException("Failed to read " + file, failure);
+            }
+            return null;
+        }
+
+        private final class FeedStream extends InputStream {
+
+            private byte[] chunk;
+            private int position;
+            private InputStream disk;
+            private boolean eof;
+
+            @Override
+            public int read() throws IOException {
+                var b = new byte[1];
+                return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (disk != null) {
+                    return disk.read(b, off, len);
+                }
+                if (eof) {
+                    return -1;
+                }
+                while (chunk == null || position == chunk.length) {
+                    chunk = take();
+                    position = 0;
+                    if (chunk == null) {
+                        long offset;
+                        synchronized (Feed.this) {
+                            offset = detachedAt;
+                        }
+                        if (offset < 0) {
+                            eof = true;
+                            return -1;
+                        }
+                        disk = Files.newInputStream(file);
+                        disk.skipNBytes(offset);
+                        return disk.read(b, off, len);
+                    }
+                }
+                int n = Math.min(len, chunk.length - position);
+                System.arraycopy(chunk, position, b, off, n);
+                position += n;
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (disk != null) {
+                    disk.close();
+                }
+                Feed.this.close();
+            }
+        }
+    }
+
+    /**
+     * A Maven repository receiving files at their path in the repository layout.
+     */
+    interface Repository {
+
+        String name();
+
+        /**
+         * @return maximum number of files uploaded at the same time
+         */
+        int concurrency();
+
+        /**
+         * @return the content of {@code path}, or {@code null} if there is none
+         */
+        byte[] get(String path) throws IOException, InterruptedException;
+
+        /**
+         * @param content opens the content, called again for each attempt
+         */
+        void put(String path, long size, Supplier<InputStream> content) throws IOException, InterruptedException;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the url of {@code target} is neither {@code http(s):} nor {@code file:}
+     */
+    static Repository repositoryOf(Target target, PublisherClient.Settings settings, Logger logger) {
+        URI uri = URI.create(target.url());
+        return switch (uri.getScheme() == null ? "" : uri.getScheme()) {
+            case "file" -> new FileRepository(target.name(), target.concurrency(), Path.of(uri));
+            case "http", "https" -> new HttpRepository(
+                    target.name(),
+                    target.concurrency(),
+                    new RepositoryClient(uri, target.username(), target.password(), settings, logger));
+            default -> throw new IllegalArgumentException(
+                    "Mirror '%s' must have an http(s): or file: url, got %s".formatted(target.name(), target.url()));
+        };
+    }
+
+    /**
+     * A repository over HTTP, files are written with {@code PUT}.
+     */
+    record HttpRepository(String name, int concurrency, RepositoryClient client) implements Repository {
+
+        @Override
+        public byte[] get(String path) throws IOException, InterruptedException {
+            var response = client.get(path);
+            if (response.statusCode() == 404) {
+                return null;
+            }
+            check(path, response.statusCode());
+            return response.body();
+        }
+
+        @Override
+        public void put(String path, long size, Supplier<InputStream> content)
+                throws IOException, InterruptedException {
+            var response = client.put(
+                    path,
+                    () -> HttpRequest.BodyPublishers.fromPublisher(
+                            HttpRequest.BodyPublishers.ofInputStream(content), size));
+            check(path, response.statusCode());
+        }
+
+        private static void check(String path, int status) {
+            if (status < 200 || status >= 300) {
+                throw new IllegalStateException("%s (status %d)".formatted(path, status));
+            }
+        }
+    }
+
+    /**
+     * A repository in a local directory, each file is written to a temporary file first and moved in place.
+     */
+    record FileRepository(String name, int concurrency, Path root) implements Repository {
+
+        @Override
+        public byte[] get(String path) throws IOException {
+            var file = root.resolve(path);
+            return Files.isRegularFile(file) ? Files.readAllBytes(file) : null;
+        }
+
+        @Override
+        public void put(String path, long size, Supplier<InputStream> content) throws IOException {
+            var file = root.resolve(path);
+            Files.createDirectories(file.getParent());
+            var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (var in = content.get()) {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * A mirror as configured, see {@link MirrorRepository}.
+     *
+     * @param username username for basic authentication, {@code null} for none
+     */
+    record Target(String name, String url, String username, String password, int concurrency)
+            implements Serializable {
+
+        static List<Target> of(Collection<MirrorRepository> mirrors) {
+            List<Target> result = new ArrayList<>();
+            for (MirrorRepository mirror : mirrors) {
+                if (!mirror.getUrl().isPresent()) {
+                    throw new IllegalStateException("No url set for mirror '%s'".formatted(mirror.getName()));
+                }
+                result.add(new Target(
+                        mirror.getName(),
+                        mirror.getUrl().get(),
+                        mirror.getUsername().getOrNull(),
+                        mirror.getPassword().getOrNull(),
+                        mirror.getConcurrency().get()));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @param readThreads threads reading the staged files
+     * @param checksums   checksum files to generate when missing besides md5 and sha1, see {@link Checksums#normalize}
+     * @param signer      signs files without a signature, or {@code null} to not sign
+     */
+    record Options(int readThreads, Set<String> checksums, Signer signer) {}
+
+    /**
+     * @param name     name of the repository
+     * @param files    number of staged files uploaded
+     * @param bytes    number of bytes uploaded, including generated checksums, signatures and metadata
+     * @param reread   number of files read from disk again because the repository fell behind
+     * @param millis   time taken
+     * @param failures what failed, empty if the repository has the whole release
+     */
+    record Result(String name, int files, long bytes, int reread, long millis, List<String> failures) {
+
+        boolean failed() {
+            return !failures.isEmpty();
+        }
+
+        /**
+         * @return the first failures, e.g. {@code [a.jar (status 500)] and 3 more}
+         */
+        String describeFailures() {
+            var listed = failures.subList(0, Math.min(failures.size(), MAX_REPORTED_FAILURES));
+            return failures.size() > listed.size()
+                    ? listed + " and " + (failures.size() - listed.size()) + " more"
+                    : listed.toString();
+        }
+    }
+
+    /**
+     * @param path     GA directory, e.g. {@code com/example/demo}
+     * @param versions versions deployed, the last one becomes the latest
+     */
+    private record Ga(String path, String groupId, String artifactId, List<String> versions) {}
+}
@@ -0,0 +1,57 @@
+package io.github.danielliu1123.deployer;
+
+import javax.inject.Inject;
+import org.gradle.api.Named;
+import org.gradle.api.provider.Property;
+
+/**
+ * A Maven repository receiving a copy of every release deployed to Maven Central, e.g. an internal Nexus or a local
+ * directory.
+ *
+ * <pre>{@code
+ * deploy {
+ *     mirrors {
+ *         nexus {
+ *             url = "https://nexus.example.com/repository/maven-releases/"
+ *             username = System.getenv("NEXUS_USERNAME")
+ *             password = System.getenv("NEXUS_PASSWORD")
+ *         }
+ *     }
+ * }
+ * }</pre>
+ *
+ * @author Freeman
+ * @see DeployerPluginExtension#getMirrors()
+ */
+public abstract class MirrorRepository implements Named {
+
+    private final String name;
+
+    @Inject
+    public MirrorRepository(String name) {
+        this.name = name;
+        getConcurrency().convention(8);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Root of the repository, {@code http(s):} or {@code file:}, e.g. {@code file("build/mirror").toURI().toString()}.
+     */
+    public abstract Property<String> getUrl();
+
+    /**
+     * Username for basic authentication, none if not set.
+     */
+    public abstract Property<String> getUsername();
+
+    public abstract Property<String> getPassword();
+
+    /**
+     * Maximum number of files uploaded to this repository at the same time, defaults to 8.
+     */
+    public abstract Property<Integer> getConcurrency();
+}
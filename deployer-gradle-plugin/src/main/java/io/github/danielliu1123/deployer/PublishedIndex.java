@@ -0,0 +1,156 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Finds the GAVs that already exist in a repository, e.g. Maven Central, so they are not deployed again.
+ *
+ * <p> A GAV exists if its POM does, which is checked with concurrent {@code HEAD} requests.
+ * Results are cached in a properties file: a published release never changes, so a GAV found is remembered
+ * for good, while a GAV not found is checked again once the TTL expired.
+ *
+ * @author Freeman
+ */
+final class PublishedIndex {
+
+    private static final String PUBLISHED = "published";
+    private static final String MISSING = "missing";
+
+    private final RepositoryClient client;
+    private final Path cacheFile;
+    private final Options options;
+    private final Logger logger;
+
+    PublishedIndex(RepositoryClient client, Path cacheFile, Options options, Logger logger) {
+        this.client = client;
+        this.cacheFile = cacheFile;
+        this.options = options;
+        this.logger = logger;
+    }
+
+    /**
+     * @param gavs GAV directories, e.g. {@code com/example/demo/1.0.0}
+     * @param now  current time in epoch millis
+     */
+    Result findPublished(Collection<String> gavs, long now) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        var cache = read();
+        Set<String> published = new TreeSet<>();
+        List<String> unknown = new ArrayList<>();
+        for (String gav : new TreeSet<>(gavs)) {
+            var entry = cache.getProperty(gav);
+            if (entry != null && entry.startsWith(PUBLISHED)) {
+                published.add(gav);
+            } else if (entry == null || now - checkedAt(entry) >= options.ttl().toMillis()) {
+                unknown.add(gav);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(options.concurrency(), unknown.size())), new NamedThreadFactory("deployer-index"));
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (String gav : unknown) {
+                futures.add(executor.submit(() -> client.head(pomPathOf(gav))));
+            }
+            for (int i = 0; i < unknown.size(); i++) {
+                String gav = unknown.get(i);
+                int status;
+                try {
+                    status = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    logger.warn("Failed to check whether {} is published, deploying it: {}", gav, e.getCause());
+                    continue;
+                }
+                if (status >= 200 && status < 300) {
+                    published.add(gav);
+                    cache.setProperty(gav, PUBLISHED + "|" + now);
+                } else if (status == 404) {
+                    cache.setProperty(gav, MISSING + "|" + now);
+                } else {
+                    logger.warn("Failed to check whether {} is published (status {}), deploying it", gav, status);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (!unknown.isEmpty()) {
+            write(cache);
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        return new Result(published, gavs.size(), unknown.size(), millis);
+    }
+
+    /**
+     * @return the path of the POM of {@code gav}, e.g. {@code com/example/demo/1.0.0/demo-1.0.0.pom}
+     */
+    static String pomPathOf(String gav) {
+        String[] segments = gav.split("/");
+        if (segments.length < 3) {
+            throw new IllegalArgumentException("Not a group/artifactId/version directory: " + gav);
+        }
+        String version = segments[segments.length - 1];
+        String artifactId = segments[segments.length - 2];
+        return gav + "/" + artifactId + "-" + version + ".pom";
+    }
+
+    private static long checkedAt(String entry) {
+        try {
+            return Long.parseLong(entry.substring(entry.indexOf('|') + 1));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return 0;
+        }
+    }
+
+    private Properties read() throws IOException {
+        var properties = new Properties();
+        if (Files.isRegularFile(cacheFile)) {
+            try (Reader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return properties;
+    }
+
+    private void write(Properties properties) throws IOException {
+        Files.createDirectories(cacheFile.getParent());
+        var tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "GAVs found in " + client.getBaseUri() + ", <published|missing>|<checked at>");
+        }
+        Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param concurrency maximum number of concurrent requests
+     * @param ttl         how long a GAV not found is not checked again
+     */
+    record Options(int concurrency, Duration ttl) {}
+
+    /**
+     * @param published GAVs found in the repository, sorted
+     * @param gavs      number of GAVs looked up
+     * @param checked   number of GAVs checked with a request, the others were cached
+     * @param millis    time taken
+     */
+    record Result(Set<String> published, int gavs, int checked, long millis) {}
+}
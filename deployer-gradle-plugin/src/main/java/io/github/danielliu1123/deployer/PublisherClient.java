@@ -0,0 +1,335 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.Serializable;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import org.gradle.api.logging.Logger;
+
+/**
+ * HTTP client for the Maven Central Publisher API, shared by all uploads and status checks of a deploy.
+ *
+ * <p> Connections are reused (HTTP/2 when the server supports it), every request has a timeout,
+ * and requests failing with an I/O error or a retryable status (408, 429, 5xx) are retried
+ * with jittered exponential backoff. A {@code Retry-After} header takes precedence over the backoff.
+ *
+ * <p> Uploads are not idempotent, every upload received creates a deployment. They are only retried when they
+ * clearly did not reach the server: the connection failed, or the server rejected them with {@code 429} or
+ * {@code 503} and a {@code Retry-After}. A timeout or a {@code 502} may come after the bundle was received.
+ *
+ * @author Freeman
+ * @see <a href="https://central.sonatype.org/publish/publish-portal-api/">Publisher API</a>
+ */
+final class PublisherClient {
+
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private final URI baseUri;
+    private final String authorization;
+    private final Settings settings;
+    private final Logger logger;
+    private final HttpClient httpClient;
+    private final UploadProgress.RateLimiter limiter;
+
+    /**
+     * @param baseUri root of the Publisher API, paths below it are kept, e.g. behind a proxy
+     */
+    PublisherClient(URI baseUri, String username, String password, Settings settings, Logger logger) {
+        this.baseUri = baseUri.toString().endsWith("/") ? baseUri : URI.create(baseUri + "/");
+        var credentials = "%s:%s".formatted(username, password);
+        this.authorization =
+                "Bearer " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+        this.settings = settings;
+        this.logger = logger;
+        this.httpClient = newHttpClient(settings);
+        // shared by concurrent uploads
+        this.limiter = settings.maxUploadRate() > 0 ? new UploadProgress.RateLimiter(settings.maxUploadRate()) : null;
+    }
+
+    /**
+     * @return a client reusing its connections, HTTP/2 when the server supports it
+     */
+    static HttpClient newHttpClient(Settings settings) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(settings.connectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Creates the settings of all clients from {@code options}.
+     */
+    static Settings settingsOf(ClientOptions options) {
+        return new Settings(
+                options.getConnectTimeout().get(),
+                options.getRequestTimeout().get(),
+                options.getUploadTimeout().get(),
+                options.getMaxRetries().get(),
+                options.getRetryBackoff().get(),
+                options.getMaxUploadRate().getOrElse(0L));
+    }
+
+    /**
+     * Creates a client for the {@link PublisherOptions#getPublisherUrl() Publisher API} with the credentials
+     * and settings of {@code options}.
+     */
+    static PublisherClient create(PublisherOptions options, Logger logger) {
+        return new PublisherClient(
+                URI.create(options.getPublisherUrl().get()),
+                options.getUsername().get(),
+                options.getPassword().get(),
+                settingsOf(options),
+                logger);
+    }
+
+    /**
+     * Uploads a bundle, retrying only failures that did not reach the server, see {@link PublisherClient}.
+     *
+     * <p> {@code content} is opened again for every attempt, so a bundle on disk is re-read, never re-created.
+     * The progress of the upload is logged, see {@link UploadProgress}.
+     *
+     * @param size size of {@code content}, {@code -1} if unknown
+     *
+     * @see <a href="https://central.sonatype.org/publish/publish-portal-api/#uploading-a-deployment-bundle">Upload Bundle</a>
+     */
+    HttpResponse<String> upload(
+            String bundleName, Supplier<InputStream> content, long size, PublishingType publishingType)
+            throws IOException, InterruptedException {
+        var uri = baseUri.resolve("api/v1/publisher/upload?publishingType=" + publishingType.name());
+        Supplier<HttpRequest> request = () -> {
+            // random boundary
+            String boundary = "----JavaBoundary" + UUID.randomUUID();
+
+            // multipart body: headers + file bytes + end boundary
+            String partHeaders = "--" + boundary + "\r\n" + "Content-Disposition: form-data; name=bundle; filename="
+                    + bundleName + "\r\n" + "Content-Type: application/octet-stream\r\n\r\n";
+            String endBoundary = "\r\n--" + boundary + "--\r\n";
+
+            return HttpRequest.newBuilder()
+                    .uri(uri)
+                    .timeout(settings.uploadTimeout())
+                    .header("Authorization", authorization)
+                    .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                    .POST(new UploadProgress(
+                            createMultipartBody(partHeaders, content, endBoundary),
+                            "[" + bundleName + "]",
+                            size,
+                            limiter,
+                            logger))
+                    .build();
+        };
+        return send(
+                httpClient,
+                "[" + bundleName + "] upload",
+                request,
+                HttpResponse.BodyHandlers.ofString(),
+                false,
+                settings,
+                logger);
+    }
+
+    /**
+     * @see <a href="https://central.sonatype.org/publish/publish-portal-api/#verify-status-of-the-deployment">Verify Status of the Deployment</a>
+     */
+    HttpResponse<String> status(String deploymentId) throws IOException, InterruptedException {
+        var request = HttpRequest.newBuilder()
+                .uri(baseUri.resolve("api/v1/publisher/status?id=" + deploymentId))
+                .timeout(settings.requestTimeout())
+                .header("Authorization", authorization)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        return send("[" + deploymentId + "] status", () -> request);
+    }
+
+    URI getBaseUri() {
+        return baseUri;
+    }
+
+    private HttpResponse<String> send(String description, Supplier<HttpRequest> requestFactory)
+            throws IOException, InterruptedException {
+        return send(
+                httpClient, description, requestFactory, HttpResponse.BodyHandlers.ofString(), settings, logger);
+    }
+
+    /**
+     * Sends an idempotent request, retrying I/O errors and retryable statuses as described in {@link PublisherClient}.
+     *
+     * @param requestFactory creates the request of each attempt
+     */
+    static <T> HttpResponse<T> send(
+            HttpClient httpClient,
+            String description,
+            Supplier<HttpRequest> requestFactory,
+            HttpResponse.BodyHandler<T> bodyHandler,
+            Settings settings,
+            Logger logger)
+            throws IOException, InterruptedException {
+        return send(httpClient, description, requestFactory, bodyHandler, true, settings, logger);
+    }
+
+    /**
+     * @param idempotent whether the request can be sent again after it may have reached the server
+     */
+    private static <T> HttpResponse<T> send(
+            HttpClient httpClient,
+            String description,
+            Supplier<HttpRequest> requestFactory,
+            HttpResponse.BodyHandler<T> bodyHandler,
+            boolean idempotent,
+            Settings settings,
+            Logger logger)
+            throws IOException, InterruptedException {
+        int maxRetries = Math.max(0, settings.maxRetries());
+        for (int attempt = 0; ; attempt++) {
+            Duration delay;
+            try {
+                var response = httpClient.send(requestFactory.get(), bodyHandler);
+                boolean retry = idempotent ? isRetryable(response.statusCode()) : isRejected(response);
+                if (!retry || attempt >= maxRetries) {
+                    if (!idempotent && !retry && isRetryable(response.statusCode())) {
+                        logger.warn(
+                                "{} failed with status {}, not retried as the server may have received it; "
+                                        + "check the deployments on the Central Portal before deploying again",
+                                description,
+                                response.statusCode());
+                    }
+                    return response;
+                }
+                delay = retryAfter(response).orElse(backoff(settings, attempt));
+                logger.lifecycle(
+                        "{} failed with status {}, retrying in {} ms ({}/{})",
+                        description,
+                        response.statusCode(),
+                        delay.toMillis(),
+                        attempt + 1,
+                        maxRetries);
+            } catch (IOException e) {
+                // an interrupted send throws InterruptedException, never retried
+                if (!idempotent && !isConnectFailure(e)) {
+                    throw new IOException(
+                            description + " failed and is not retried, the server may have received it; "
+                                    + "check the deployments on the Central Portal before deploying again",
+                            e);
+                }
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+                delay = backoff(settings, attempt);
+                logger.lifecycle(
+                        "{} failed: {}, retrying in {} ms ({}/{})",
+                        description,
+                        e,
+                        delay.toMillis(),
+                        attempt + 1,
+                        maxRetries);
+            }
+            Thread.sleep(delay.toMillis());
+        }
+    }
+
+    /**
+     * Exponential backoff with jitter: a random delay between half and all of {@code initial * 2^attempt}, capped.
+     */
+    Duration backoff(int attempt) {
+        return backoff(settings, attempt);
+    }
+
+    private static Duration backoff(Settings settings, int attempt) {
+        long initial = Math.max(1, settings.retryBackoff().toMillis());
+        long ceiling = Math.min(MAX_BACKOFF.toMillis(), initial << Math.min(attempt, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+    }
+
+    static boolean isRetryable(int status) {
+        return status == 408 || status == 429 || status >= 500;
+    }
+
+    /**
+     * @return whether the server turned the request away without processing it
+     */
+    private static boolean isRejected(HttpResponse<?> response) {
+        int status = response.statusCode();
+        return (status == 429 || status == 503) && response.headers().firstValue("Retry-After").isPresent();
+    }
+
+    /**
+     * @return whether {@code e} means no connection was made, i.e. nothing was sent
+     */
+    private static boolean isConnectFailure(IOException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Optional<Duration> retryAfter(HttpResponse<?> response) {
+        return response.headers().firstValue("Retry-After").flatMap(value -> {
+            try {
+                long seconds = Long.parseLong(value.trim());
+                return Optional.of(Duration.ofSeconds(Math.min(seconds, MAX_BACKOFF.toSeconds())));
+            } catch (NumberFormatException e) {
+                // HTTP-date form, not worth parsing
+                return Optional.empty();
+            }
+        });
+    }
+
+    static HttpRequest.BodyPublisher createMultipartBody(
+            String headers, Supplier<InputStream> content, String endBoundary) {
+        var headerBuffer = headers.getBytes(StandardCharsets.UTF_8);
+        var endBuffer = endBoundary.getBytes(StandardCharsets.UTF_8);
+        // the supplier is invoked again if the request is resent, each call opens a fresh stream
+        return HttpRequest.BodyPublishers.ofInputStream(() -> {
+            var headerBytes = new ByteArrayInputStream(headerBuffer);
+            var endBytes = new ByteArrayInputStream(endBuffer);
+            return new SequenceInputStream(
+                    Collections.enumeration(Arrays.asList(headerBytes, content.get(), endBytes)));
+        });
+    }
+
+    /**
+     * @param connectTimeout timeout for establishing a connection
+     * @param requestTimeout timeout for API calls other than uploads
+     * @param uploadTimeout  timeout for a bundle upload, including sending the bundle
+     * @param maxRetries     number of times a failed request is retried
+     * @param retryBackoff   initial backoff between retries, doubled on every attempt
+     * @param maxUploadRate  bytes per second sent by all bundle uploads together, {@code 0} for no limit
+     */
+    record Settings(
+            Duration connectTimeout,
+            Duration requestTimeout,
+            Duration uploadTimeout,
+            int maxRetries,
+            Duration retryBackoff,
+            long maxUploadRate)
+            implements Serializable {
+
+        Settings(
+                Duration connectTimeout,
+                Duration requestTimeout,
+                Duration uploadTimeout,
+                int maxRetries,
+                Duration retryBackoff) {
+            this(connectTimeout, requestTimeout, uploadTimeout, maxRetries, retryBackoff, 0);
+        }
+    }
+}
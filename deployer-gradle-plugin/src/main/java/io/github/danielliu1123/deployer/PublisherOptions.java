@@ -0,0 +1,38 @@
+package io.github.danielliu1123.deployer;
+
+import java.time.Duration;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+
+/**
+ * Options of the tasks uploading to or following deployments of the Publisher API,
+ * wired from {@link DeployerPluginExtension}.
+ *
+ * @author Freeman
+ */
+public interface PublisherOptions extends ClientOptions {
+
+    /**
+     * @see DeployerPluginExtension#getPublisherUrl()
+     */
+    @Internal
+    Property<String> getPublisherUrl();
+
+    @Internal
+    Property<String> getUsername();
+
+    @Internal
+    Property<String> getPassword();
+
+    /**
+     * @see DeployerPluginExtension#getStatusPollInterval()
+     */
+    @Internal
+    Property<Duration> getStatusPollInterval();
+
+    /**
+     * @see DeployerPluginExtension#getPublishTimeout()
+     */
+    @Internal
+    Property<Duration> getPublishTimeout();
+}
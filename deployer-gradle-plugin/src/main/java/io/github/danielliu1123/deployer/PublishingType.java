@@ -16,5 +16,12 @@ public enum PublishingType {
      * This option uploads the bundle with USER_MANAGED publishing type and then polls
      * the deployment status until it reaches PUBLISHED state.
      */
-    WAIT_FOR_PUBLISHED
+    WAIT_FOR_PUBLISHED,
+    /**
+     * Deploy -SNAPSHOT versions file by file to the snapshot repository instead of uploading a bundle.
+     * Files are uploaded concurrently and maven-metadata.xml is merged and uploaded once per GAV at the end.
+     *
+     * @see DeployerPluginExtension#getSnapshotRepositoryUrl()
+     */
+    SNAPSHOT
 }
@@ -0,0 +1,98 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Supplier;
+import org.gradle.api.logging.Logger;
+
+/**
+ * HTTP client for a Maven repository, e.g. the Maven Central snapshot repository.
+ *
+ * <p> Files are read with {@code GET} and written with {@code PUT} at their path in the repository layout.
+ * Like {@link PublisherClient}, one client shares its connections between all requests of a deploy
+ * and retries transient failures.
+ *
+ * @author Freeman
+ */
+final class RepositoryClient {
+
+    private final URI baseUri;
+    private final String authorization;
+    private final PublisherClient.Settings settings;
+    private final Logger logger;
+    private final HttpClient httpClient;
+
+    /**
+     * @param baseUri  root of the repository
+     * @param username username for basic authentication, {@code null} for none
+     */
+    RepositoryClient(URI baseUri, String username, String password, PublisherClient.Settings settings, Logger logger) {
+        this.baseUri = baseUri.toString().endsWith("/") ? baseUri : URI.create(baseUri + "/");
+        if (username != null) {
+            var credentials = "%s:%s".formatted(username, password);
+            this.authorization =
+                    "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+        } else {
+            this.authorization = null;
+        }
+        this.settings = settings;
+        this.logger = logger;
+        this.httpClient = PublisherClient.newHttpClient(settings);
+    }
+
+    /**
+     * @param path path in the repository, e.g. {@code com/example/demo/maven-metadata.xml}
+     */
+    HttpResponse<byte[]> get(String path) throws IOException, InterruptedException {
+        var request = request(path).timeout(settings.requestTimeout()).GET().build();
+        return PublisherClient.send(
+                httpClient, "GET " + path, () -> request, HttpResponse.BodyHandlers.ofByteArray(), settings, logger);
+    }
+
+    /**
+     * @return the status of a {@code HEAD} request for {@code path}, e.g. 200 if the file exists and 404 if not
+     */
+    int head(String path) throws IOException, InterruptedException {
+        var request = request(path)
+                .timeout(settings.requestTimeout())
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        var response = PublisherClient.send(
+                httpClient, "HEAD " + path, () -> request, HttpResponse.BodyHandlers.discarding(), settings, logger);
+        return response.statusCode();
+    }
+
+    /**
+     * @param body creates the content of each attempt
+     */
+    HttpResponse<String> put(String path, Supplier<HttpRequest.BodyPublisher> body)
+            throws IOException, InterruptedException {
+        return PublisherClient.send(
+                httpClient,
+                "PUT " + path,
+                () -> request(path)
+                        .timeout(settings.uploadTimeout())
+                        .PUT(body.get())
+                        .build(),
+                HttpResponse.BodyHandlers.ofString(),
+                settings,
+                logger);
+    }
+
+    URI getBaseUri() {
+        return baseUri;
+    }
+
+    private HttpRequest.Builder request(String path) {
+        var builder = HttpRequest.newBuilder().uri(baseUri.resolve(path));
+        if (authorization != null) {
+            builder.header("Authorization", authorization);
+        }
+        return builder;
+    }
+}
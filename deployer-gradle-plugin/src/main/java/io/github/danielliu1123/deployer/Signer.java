@@ -0,0 +1,143 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import org.bouncycastle.bcpg.ArmoredOutputStream;
+import org.bouncycastle.bcpg.BCPGOutputStream;
+import org.bouncycastle.bcpg.HashAlgorithmTags;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRingCollection;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.PGPSignatureGenerator;
+import org.bouncycastle.openpgp.PGPUtil;
+import org.bouncycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.bouncycastle.openpgp.operator.bc.BcPBESecretKeyDecryptorBuilder;
+import org.bouncycastle.openpgp.operator.bc.BcPGPContentSignerBuilder;
+import org.bouncycastle.openpgp.operator.bc.BcPGPDigestCalculatorProvider;
+import org.gradle.api.provider.Provider;
+
+/**
+ * Creates detached, ASCII armored PGP signatures ({@code .asc} files) with an in-memory key.
+ *
+ * <p> The key is parsed and decrypted once, a {@link Signer} can then be shared by any number of threads,
+ * each signature being computed by its own {@link Signature}.
+ *
+ * @author Freeman
+ */
+final class Signer {
+
+    private final PGPPrivateKey privateKey;
+    private final PGPPublicKey publicKey;
+
+    private Signer(PGPPrivateKey privateKey, PGPPublicKey publicKey) {
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+    }
+
+    /**
+     * @return a signer for the given key, or {@code null} if no key is set
+     */
+    static Signer create(Provider<String> armoredKey, Provider<String> password) {
+        return armoredKey.isPresent() ? of(armoredKey.get(), password.getOrNull()) : null;
+    }
+
+    /**
+     * @param armoredKey ASCII armored secret key, e.g. the output of {@code gpg --armor --export-secret-keys}
+     * @param password   password of the key, {@code null} or empty if it is not protected
+     * @throws IllegalArgumentException if the key cannot be read or decrypted
+     */
+    static Signer of(String armoredKey, String password) {
+        try {
+            PGPSecretKey secretKey = findSigningKey(readKeyRings(armoredKey));
+            var decryptor = new BcPBESecretKeyDecryptorBuilder(new BcPGPDigestCalculatorProvider())
+                    .build(password != null ? password.toCharArray() : new char[0]);
+            return new Signer(secretKey.extractPrivateKey(decryptor), secretKey.getPublicKey());
+        } catch (IOException | PGPException e) {
+            throw new IllegalArgumentException("Failed to read the signing key: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Identifies the key without decrypting it, e.g. as a task input that must not hold the secret.
+     *
+     * @return hex encoded fingerprint of the key signing with {@code armoredKey}
+     * @throws IllegalArgumentException if the key cannot be read
+     */
+    static String fingerprintOf(String armoredKey) {
+        try {
+            var fingerprint = findSigningKey(readKeyRings(armoredKey)).getPublicKey().getFingerprint();
+            return HexFormat.of().withUpperCase().formatHex(fingerprint);
+        } catch (IOException | PGPException e) {
+            throw new IllegalArgumentException("Failed to read the signing key: " + e.getMessage(), e);
+        }
+    }
+
+    private static PGPSecretKeyRingCollection readKeyRings(String armoredKey) throws IOException, PGPException {
+        return new PGPSecretKeyRingCollection(
+                PGPUtil.getDecoderStream(
+                        new ByteArrayInputStream(armoredKey.trim().getBytes(StandardCharsets.US_ASCII))),
+                new BcKeyFingerprintCalculator());
+    }
+
+    private static PGPSecretKey findSigningKey(PGPSecretKeyRingCollection keyRings) {
+        for (PGPSecretKeyRing keyRing : keyRings) {
+            for (PGPSecretKey key : keyRing) {
+                // keys exported without their private part, e.g. gpg offline primary keys, cannot sign
+                if (key.isSigningKey() && !key.isPrivateKeyEmpty()) {
+                    return key;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No secret key able to sign found in the signing key");
+    }
+
+    /**
+     * @return a new signature, to be updated with the bytes of one file
+     */
+    Signature newSignature() {
+        var generator = new PGPSignatureGenerator(
+                new BcPGPContentSignerBuilder(publicKey.getAlgorithm(), HashAlgorithmTags.SHA512), publicKey);
+        try {
+            generator.init(PGPSignature.BINARY_DOCUMENT, privateKey);
+        } catch (PGPException e) {
+            throw new IllegalStateException("Failed to initialize the signature", e);
+        }
+        return new Signature(generator);
+    }
+
+    /**
+     * Signature of a single file, not thread-safe.
+     */
+    static final class Signature {
+
+        private final PGPSignatureGenerator generator;
+
+        private Signature(PGPSignatureGenerator generator) {
+            this.generator = generator;
+        }
+
+        void update(byte[] data, int offset, int length) {
+            generator.update(data, offset, length);
+        }
+
+        /**
+         * @return the content of the {@code .asc} file
+         */
+        String finish() {
+            var out = new ByteArrayOutputStream(1024);
+            try (var armored = ArmoredOutputStream.builder().clearHeaders().build(out)) {
+                generator.generate().encode(new BCPGOutputStream(armored));
+            } catch (IOException | PGPException e) {
+                throw new IllegalStateException("Failed to generate the signature", e);
+            }
+            return out.toString(StandardCharsets.US_ASCII);
+        }
+    }
+}
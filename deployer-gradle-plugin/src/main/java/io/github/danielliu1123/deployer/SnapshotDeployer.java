@@ -0,0 +1,444 @@
+package io.github.danielliu1123.deployer;
+
+import io.github.danielliu1123.deployer.BundlePlan.Source;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.gradle.api.logging.Logger;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+/**
+ * Deploys {@code -SNAPSHOT} versions straight to a Maven repository, file by file.
+ *
+ * <p> All files are uploaded concurrently over the connections of one {@link RepositoryClient},
+ * at most {@link Options#concurrency()} at a time. Each GAV gets a new snapshot build:
+ * files are renamed to {@code <artifactId>-<version>-<timestamp>-<buildNumber>}, the build number following
+ * the one in the repository. Only when every file is uploaded, the {@code maven-metadata.xml}
+ * of each GAV and GA is merged with the remote one and uploaded, once.
+ *
+ * <p> Staged {@code maven-metadata.xml} files describe the local repository and are ignored.
+ * When a GAV directory holds several local builds, e.g. after publishing twice without cleaning,
+ * only the files of the latest one are deployed.
+ *
+ * @author Freeman
+ */
+final class SnapshotDeployer {
+
+    private static final Pattern TIMESTAMPED = Pattern.compile("\\d{8}\\.\\d{6}-\\d+");
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyyMMdd.HHmmss").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter LAST_UPDATED =
+            DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+    /**
+     * Maximum number of failed uploads listed in the exception message.
+     */
+    private static final int MAX_REPORTED_FAILURES = 10;
+
+    private final RepositoryClient client;
+    private final Options options;
+    private final Logger logger;
+
+    SnapshotDeployer(RepositoryClient client, Options options, Logger logger) {
+        this.client = client;
+        this.options = options;
+        this.logger = logger;
+    }
+
+    /**
+     * @param sources files to deploy, see {@link BundlePlan#scan}
+     * @param now     time of the snapshot builds
+     * @throws IllegalArgumentException if a file is not a {@code -SNAPSHOT} artifact
+     * @throws IllegalStateException    if a file could not be uploaded, no metadata is uploaded then
+     */
+    Result deploy(List<Source> sources, Instant now) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Map<Gav, List<Source>> gavs = new LinkedHashMap<>();
+        for (Source source : sources) {
+            if (!fileName(source.name()).startsWith("maven-metadata")) {
+                gavs.computeIfAbsent(Gav.of(BundlePlan.gavOf(source.name())), k -> new ArrayList<>())
+                        .add(source);
+            }
+        }
+        if (gavs.isEmpty()) {
+            return new Result(0, 0, 0, 0);
+        }
+
+        String timestamp = TIMESTAMP.format(now);
+        String lastUpdated = LAST_UPDATED.format(now);
+        var bytes = new AtomicLong();
+        int threads = Math.max(1, options.concurrency());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("deployer-snapshot"));
+        try {
+            Map<Gav, Element> remote = new LinkedHashMap<>();
+            List<Gav> keys = List.copyOf(gavs.keySet());
+            var fetched = runAll(executor, "fetch", keys.stream()
+                    .map(gav -> (Callable<Element>) () -> fetchMetadata(gav.path()))
+                    .toList());
+            for (int i = 0; i < keys.size(); i++) {
+                remote.put(keys.get(i), fetched.get(i));
+            }
+
+            List<Callable<Void>> uploads = new ArrayList<>();
+            Map<Gav, Build> builds = new LinkedHashMap<>();
+            for (var e : gavs.entrySet()) {
+                var gav = e.getKey();
+                int buildNumber = MavenMetadata.buildNumberOf(remote.get(gav)) + 1;
+                var snapshot = new MavenMetadata.Snapshot(timestamp, buildNumber);
+                var build = new Build(snapshot, new ArrayList<>());
+                builds.put(gav, build);
+                String version = snapshot.versionOf(gav.version());
+                logger.lifecycle("[{}] Deploying as {}", gav.path(), version);
+
+                var latest = latestBuild(gav, e.getValue());
+                if (latest.size() < e.getValue().size()) {
+                    logger.lifecycle(
+                            "[{}] Ignoring {} files of older local builds",
+                            gav.path(),
+                            e.getValue().size() - latest.size());
+                }
+                Set<String> names = new LinkedHashSet<>();
+                for (Source source : latest.values()) {
+                    names.add(source.name());
+                }
+                for (var file : latest.entrySet()) {
+                    String tail = file.getKey();
+                    Source source = file.getValue();
+                    String path = gav.path() + "/" + gav.artifactId() + "-" + version + tail;
+                    if (!Checksums.isExempt(path)) {
+                        build.files().add(snapshotVersion(tail, version, lastUpdated));
+                    }
+                    var missing = missingChecksums(source, names);
+                    uploads.add(() -> {
+                        bytes.addAndGet(upload(source, path, missing));
+                        return null;
+                    });
+                }
+            }
+            runAll(executor, "upload", uploads);
+
+            // metadata last, a snapshot build becomes visible only once all its files are there
+            List<Callable<Void>> versionMetadata = new ArrayList<>();
+            Map<String, List<Gav>> gas = new LinkedHashMap<>();
+            for (var e : builds.entrySet()) {
+                var gav = e.getKey();
+                var build = e.getValue();
+                gas.computeIfAbsent(gav.gaPath(), k -> new ArrayList<>()).add(gav);
+                versionMetadata.add(() -> {
+                    var xml = MavenMetadata.versionMetadata(
+                            gav.groupId(),
+                            gav.artifactId(),
+                            gav.version(),
+                            build.snapshot(),
+                            lastUpdated,
+                            build.files(),
+                            remote.get(gav));
+                    bytes.addAndGet(uploadMetadata(gav.path(), xml));
+                    return null;
+                });
+            }
+            runAll(executor, "upload", versionMetadata);
+
+            List<Callable<Void>> artifactMetadata = new ArrayList<>();
+            for (var e : gas.entrySet()) {
+                var ga = e.getValue().get(0);
+                var versions = e.getValue().stream().map(Gav::version).toList();
+                artifactMetadata.add(() -> {
+                    var xml = MavenMetadata.artifactMetadata(
+                            ga.groupId(), ga.artifactId(), versions, lastUpdated, fetchMetadata(e.getKey()));
+                    bytes.addAndGet(uploadMetadata(e.getKey(), xml));
+                    return null;
+                });
+            }
+            runAll(executor, "upload", artifactMetadata);
+
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            return new Result(gavs.size(), uploads.size(), bytes.get(), millis);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the algorithms of the checksum files to generate for {@code source}, none if it has them all
+     */
+    private List<String> missingChecksums(Source source, Collection<String> names) {
+        if (Checksums.isExempt(source.name())) {
+            return List.of();
+        }
+        return options.checksums().stream()
+                .filter(algorithm -> !names.contains(source.name() + "." + algorithm))
+                .toList();
+    }
+
+    /**
+     * Uploads a file, and the checksum files computed while reading it.
+     *
+     * @return number of bytes uploaded
+     */
+    private long upload(Source source, String path, List<String> checksums) throws Exception {
+        var digests = new AtomicReference<Checksums>();
+        put(
+                path,
+                () -> HttpRequest.BodyPublishers.fromPublisher(
+                        HttpRequest.BodyPublishers.ofInputStream(() -> {
+                            // digests of the last attempt, the one that succeeded
+                            var attempt = new Checksums(checksums);
+                            digests.set(attempt);
+                            try {
+                                return attempt.wrap(Files.newInputStream(source.file()));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }),
+                        source.size()));
+        long bytes = source.size();
+        for (var e : digests.get().finish().entrySet()) {
+            bytes += put(path + "." + e.getKey(), e.getValue().getBytes(StandardCharsets.US_ASCII));
+        }
+        return bytes;
+    }
+
+    /**
+     * Uploads {@code dir/maven-metadata.xml} and its checksum files.
+     *
+     * @return number of bytes uploaded
+     */
+    private long uploadMetadata(String dir, String xml) throws Exception {
+        byte[] data = xml.getBytes(StandardCharsets.UTF_8);
+        String path = dir + "/" + MavenMetadata.FILE_NAME;
+        Set<String> algorithms = new LinkedHashSet<>(BundleValidator.REQUIRED_CHECKSUMS);
+        algorithms.addAll(options.checksums());
+        var checksums = new Checksums(Checksums.normalize(algorithms));
+        checksums.update(data, 0, data.length);
+
+        long bytes = put(path, data);
+        for (var e : checksums.finish().entrySet()) {
+            bytes += put(path + "." + e.getKey(), e.getValue().getBytes(StandardCharsets.US_ASCII));
+        }
+        return bytes;
+    }
+
+    private long put(String path, byte[] data) throws Exception {
+        put(path, () -> HttpRequest.BodyPublishers.ofByteArray(data));
+        return data.length;
+    }
+
+    private void put(String path, Supplier<HttpRequest.BodyPublisher> body) throws Exception {
+        var response = client.put(path, body);
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            throw new IllegalStateException("%s (status %d)".formatted(path, response.statusCode()));
+        }
+    }
+
+    /**
+     * @return the {@code maven-metadata.xml} of {@code dir} in the repository, or {@code null} if there is none
+     */
+    private Element fetchMetadata(String dir) throws IOException, InterruptedException {
+        String path = dir + "/" + MavenMetadata.FILE_NAME;
+        var response = client.get(path);
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            throw new IllegalStateException("%s (status %d)".formatted(path, response.statusCode()));
+        }
+        try {
+            return BundleValidator.parseXml(new ByteArrayInputStream(response.body()));
+        } catch (SAXException e) {
+            throw new IllegalStateException("Invalid %s: %s".formatted(path, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Runs {@code tasks} on {@code executor} and waits for all of them.
+     *
+     * @return the results, in the order of {@code tasks}
+     * @throws IllegalStateException listing the failed tasks
+     */
+    private static <T> List<T> runAll(ExecutorService executor, String action, List<Callable<T>> tasks)
+            throws InterruptedException {
+        List<Future<T>> futures = new ArrayList<>();
+        for (Callable<T> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        List<T> results = new ArrayList<>();
+        List<String> failures = new ArrayList<>();
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                results.add(null);
+                var cause = e.getCause();
+                failures.add(cause instanceof IllegalStateException ? cause.getMessage() : cause.toString());
+            }
+        }
+        if (!failures.isEmpty()) {
+            var listed = failures.subList(0, Math.min(failures.size(), MAX_REPORTED_FAILURES));
+            throw new IllegalStateException("Failed to %s %d of %d files: %s%s"
+                    .formatted(
+                            action,
+                            failures.size(),
+                            tasks.size(),
+                            listed,
+                            failures.size() > listed.size() ? " and more" : ""));
+        }
+        return results;
+    }
+
+    /**
+     * @return the files of the latest local build of {@code gav}, by what follows the version in their name
+     */
+    static Map<String, Source> latestBuild(Gav gav, List<Source> files) {
+        Map<String, Source> latest = new LinkedHashMap<>();
+        Map<String, String> builds = new LinkedHashMap<>();
+        for (Source source : files) {
+            var name = StagedName.of(gav, fileName(source.name()));
+            var previous = builds.get(name.tail());
+            if (previous == null || StagedName.compareBuilds(name.build(), previous) > 0) {
+                latest.put(name.tail(), source);
+                builds.put(name.tail(), name.build());
+            }
+        }
+        String newest = builds.values().stream()
+                .max(StagedName::compareBuilds)
+                .orElse("");
+        latest.keySet().removeIf(tail -> !builds.get(tail).equals(newest));
+        return latest;
+    }
+
+    private static MavenMetadata.SnapshotVersion snapshotVersion(String tail, String version, String updated) {
+        String classifier = "";
+        String extension = tail.startsWith(".") ? tail.substring(1) : tail;
+        if (tail.startsWith("-")) {
+            int dot = tail.indexOf('.');
+            classifier = dot > 0 ? tail.substring(1, dot) : tail.substring(1);
+            extension = dot > 0 ? tail.substring(dot + 1) : "";
+        }
+        return new MavenMetadata.SnapshotVersion(classifier, extension, version, updated);
+    }
+
+    private static String fileName(String name) {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * @param concurrency maximum number of concurrent requests
+     * @param checksums   checksum files to generate when missing, see {@link Checksums#normalize}
+     */
+    record Options(int concurrency, Set<String> checksums) {}
+
+    /**
+     * @param gavs   number of GAV directories deployed
+     * @param files  number of staged files uploaded
+     * @param bytes  number of bytes uploaded, including generated checksums and metadata
+     * @param millis time taken
+     */
+    record Result(int gavs, int files, long bytes, long millis) {}
+
+    /**
+     * @param path GAV directory, e.g. {@code com/example/demo/1.0.0-SNAPSHOT}
+     */
+    record Gav(String path, String groupId, String artifactId, String version) {
+
+        static Gav of(String path) {
+            var gav = parse(path);
+            if (!gav.version().endsWith("-SNAPSHOT")) {
+                throw new IllegalArgumentException(
+                        "Only -SNAPSHOT versions can be deployed as snapshots, got " + path);
+            }
+            return gav;
+        }
+
+        /**
+         * @throws IllegalArgumentException if {@code path} has less than three segments
+         */
+        static Gav parse(String path) {
+            String[] segments = path.split("/");
+            if (segments.length < 3) {
+                throw new IllegalArgumentException("Not a group/artifactId/version directory: " + path);
+            }
+            String groupId = String.join(".", List.of(segments).subList(0, segments.length - 2));
+            return new Gav(path, groupId, segments[segments.length - 2], segments[segments.length - 1]);
+        }
+
+        /**
+         * @return the version without {@code -SNAPSHOT}
+         */
+        String baseVersion() {
+            return version.substring(0, version.length() - "-SNAPSHOT".length());
+        }
+
+        String gaPath() {
+            return path.substring(0, path.lastIndexOf('/'));
+        }
+    }
+
+    /**
+     * Name of a staged file, {@code <artifactId>-<baseVersion>-<build><tail>}.
+     *
+     * @param build {@code SNAPSHOT}, or {@code <timestamp>-<buildNumber>} for a file staged with a unique version
+     * @param tail  what follows the version, e.g. {@code -sources.jar}
+     */
+    record StagedName(String build, String tail) {
+
+        static StagedName of(Gav gav, String fileName) {
+            String prefix = gav.artifactId() + "-" + gav.baseVersion() + "-";
+            if (fileName.startsWith(prefix)) {
+                String rest = fileName.substring(prefix.length());
+                if (rest.startsWith("SNAPSHOT")) {
+                    return new StagedName("SNAPSHOT", rest.substring("SNAPSHOT".length()));
+                }
+                var matcher = TIMESTAMPED.matcher(rest);
+                if (matcher.lookingAt()) {
+                    return new StagedName(matcher.group(), rest.substring(matcher.end()));
+                }
+            }
+            throw new IllegalArgumentException("'%s' in %s is not named %s-%s"
+                    .formatted(fileName, gav.path(), gav.artifactId(), gav.version()));
+        }
+
+        /**
+         * Orders builds by timestamp then build number, {@code SNAPSHOT} first.
+         */
+        static int compareBuilds(String a, String b) {
+            if (a.equals(b)) {
+                return 0;
+            }
+            if (a.equals("SNAPSHOT") || b.equals("SNAPSHOT")) {
+                return a.equals("SNAPSHOT") ? -1 : 1;
+            }
+            int dash = a.indexOf('-');
+            int otherDash = b.indexOf('-');
+            int result = a.substring(0, dash).compareTo(b.substring(0, otherDash));
+            return result != 0
+                    ? result
+                    : Integer.compare(
+                            Integer.parseInt(a.substring(dash + 1)), Integer.parseInt(b.substring(otherDash + 1)));
+        }
+    }
+
+    private record Build(MavenMetadata.Snapshot snapshot, List<MavenMetadata.SnapshotVersion> files) {}
+}
@@ -0,0 +1,202 @@
+package io.github.danielliu1123.deployer;
+
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Wraps the body of an upload to count its bytes as the HTTP client sends them.
+ *
+ * <p> While the body is sent, the progress, current and average throughput, and the remaining time when the size
+ * is known, are logged every {@link #INTERVAL}, so a large upload does not look like a hung build.
+ * With a {@link RateLimiter}, the bytes are paced so the uploads sharing it stay below its rate.
+ *
+ * @author Freeman
+ */
+final class UploadProgress implements HttpRequest.BodyPublisher {
+
+    static final Duration INTERVAL = Duration.ofSeconds(10);
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final HttpRequest.BodyPublisher delegate;
+    private final String description;
+    private final long size;
+    private final RateLimiter limiter;
+    private final Logger logger;
+
+    /**
+     * @param description prefix of the log messages, e.g. {@code [demo-bundle.zip]}
+     * @param size        size of the uploaded content, {@code -1} if unknown
+     * @param limiter     paces the bytes sent, {@code null} for no limit
+     */
+    UploadProgress(
+            HttpRequest.BodyPublisher delegate, String description, long size, RateLimiter limiter, Logger logger) {
+        this.delegate = delegate;
+        this.description = description;
+        this.size = size;
+        this.limiter = limiter;
+        this.logger = logger;
+    }
+
+    @Override
+    public long contentLength() {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        // a new subscription for every attempt, counted from zero
+        delegate.subscribe(new Counter(subscriber));
+    }
+
+    /**
+     * @return e.g. {@code 512.0 MiB of 2.0 GiB (25%), 48.3 MiB/s (average 45.1 MiB/s), 0m34s left}
+     */
+    static String describe(long bytes, long size, double bytesPerSecond, double averageBytesPerSecond) {
+        var result = new StringBuilder(formatBytes(bytes));
+        if (size > 0) {
+            result.append(" of ")
+                    .append(formatBytes(size))
+                    .append(" (")
+                    .append(Math.min(100, bytes * 100 / size))
+                    .append("%)");
+        }
+        result.append(", ")
+                .append(formatBytes((long) bytesPerSecond))
+                .append("/s (average ")
+                .append(formatBytes((long) averageBytesPerSecond))
+                .append("/s)");
+        if (size > 0 && averageBytesPerSecond > 0) {
+            long left = (long) (Math.max(0, size - bytes) / averageBytesPerSecond);
+            result.append(", ").append(DeploymentWatcher.format(Duration.ofSeconds(left))).append(" left");
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return e.g. {@code 512 B}, {@code 1.5 KiB} or {@code 2.0 GiB}
+     */
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        int unit = (63 - Long.numberOfLeadingZeros(bytes)) / 10;
+        return String.format(
+                Locale.ROOT, "%.1f %siB", bytes / (double) (1L << (unit * 10)), "KMGTPE".charAt(unit - 1));
+    }
+
+    private static double perSecond(long bytes, long nanos) {
+        return nanos > 0 ? bytes * (double) NANOS_PER_SECOND / nanos : 0;
+    }
+
+    private final class Counter implements Flow.Subscriber<ByteBuffer> {
+
+        private final Flow.Subscriber<? super ByteBuffer> downstream;
+        private final long start = System.nanoTime();
+        // onNext is never called concurrently, no synchronization needed
+        private long bytes;
+        private long reportedBytes;
+        private long reportedAt = start;
+
+        Counter(Flow.Subscriber<? super ByteBuffer> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            downstream.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            int length = item.remaining();
+            if (limiter != null) {
+                limiter.acquire(length);
+            }
+            bytes += length;
+            long now = System.nanoTime();
+            if (now - reportedAt >= INTERVAL.toNanos()) {
+                logger.lifecycle(
+                        "{} Sent {}",
+                        description,
+                        describe(
+                                bytes,
+                                size,
+                                perSecond(bytes - reportedBytes, now - reportedAt),
+                                perSecond(bytes, now - start)));
+                reportedBytes = bytes;
+                reportedAt = now;
+            }
+            downstream.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            long nanos = System.nanoTime() - start;
+            logger.lifecycle(
+                    "{} Sent {} in {} ms ({}/s)",
+                    description,
+                    formatBytes(bytes),
+                    nanos / 1_000_000,
+                    formatBytes((long) perSecond(bytes, nanos)));
+            downstream.onComplete();
+        }
+    }
+
+    /**
+     * Paces the bytes sent by all uploads of a deploy to an average rate.
+     *
+     * <p> Each chunk reserves its share of the time line and waits until its slot begins,
+     * so concurrent uploads split the rate between them.
+     */
+    static final class RateLimiter {
+
+        private final long bytesPerSecond;
+        private long next;
+
+        RateLimiter(long bytesPerSecond) {
+            if (bytesPerSecond <= 0) {
+                throw new IllegalArgumentException("The upload rate must be positive: " + bytesPerSecond);
+            }
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        /**
+         * Waits until {@code bytes} may be sent.
+         */
+        void acquire(long bytes) {
+            long wait = reserve(bytes, System.nanoTime());
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    // the upload is cancelled by the HTTP client
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * @param now current time in nanos
+         * @return nanos to wait before {@code bytes} may be sent
+         */
+        synchronized long reserve(long bytes, long now) {
+            if (next == 0 || next - now < 0) {
+                next = now;
+            }
+            long wait = next - now;
+            next += bytes * NANOS_PER_SECOND / bytesPerSecond;
+            return wait;
+        }
+    }
+}
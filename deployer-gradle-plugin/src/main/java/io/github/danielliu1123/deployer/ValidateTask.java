@@ -0,0 +1,87 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Checks the configured dirs against the Maven Central requirements, see {@link BundleValidator}.
+ *
+ * <p> Runs before anything is bundled or uploaded, so a bad release fails in seconds
+ * instead of after an upload and a server side validation.
+ *
+ * @author Freeman
+ */
+@CacheableTask
+public abstract class ValidateTask extends DefaultTask {
+
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getDirs();
+
+    /**
+     * Does not affect the report.
+     */
+    @Internal
+    public abstract Property<Integer> getThreads();
+
+    /**
+     * Checksums generated while bundling, not required on disk.
+     */
+    @Input
+    public abstract ListProperty<String> getChecksums();
+
+    /**
+     * Whether files are signed while bundling, signatures are then not required on disk.
+     */
+    @Input
+    public abstract Property<Boolean> getSigned();
+
+    /**
+     * GAV directories left out, one per line, see {@link CheckPublishedTask}.
+     */
+    @InputFile
+    @Optional
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getPublishedGavs();
+
+    /**
+     * One line per problem, written even when the validation fails.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getReportFile();
+
+    @TaskAction
+    public void validate() throws IOException {
+        List<Path> dirs = BundlePlan.directories(getDirs().getFiles(), getLogger());
+
+        var options = new BundleValidator.Options(
+                getThreads().get(), Checksums.normalize(getChecksums().get()), getSigned().get());
+        var report = new BundleValidator(options).validate(BundlePlan.exclude(
+                BundlePlan.scan(dirs, true), CheckPublishedTask.readPublished(getPublishedGavs())));
+
+        var text = report.format();
+        Files.writeString(getReportFile().get().getAsFile().toPath(), text + "\n");
+        if (!report.isValid()) {
+            throw new IllegalStateException(
+                    "Artifacts do not meet the Maven Central requirements, nothing was uploaded.\n" + text);
+        }
+        getLogger().lifecycle(text);
+    }
+}
@@ -0,0 +1,243 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the central directory of a zip and gives access to the raw, still compressed, entry data.
+ *
+ * <p> Counterpart of {@link ZipWriter}: entries can be copied from one zip to another without being inflated
+ * and deflated again.
+ *
+ * @author Freeman
+ */
+final class ZipReader implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int MAX_COMMENT = 0xFFFF;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Map<String, Entry> entries;
+
+    private ZipReader(Path path, FileChannel channel, Map<String, Entry> entries) {
+        this.path = path;
+        this.channel = channel;
+        this.entries = entries;
+    }
+
+    static ZipReader open(Path path) throws IOException {
+        var channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ZipReader(path, channel, readCentralDirectory(channel));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return entries in central directory order
+     */
+    List<Entry> getEntries() {
+        return List.copyOf(entries.values());
+    }
+
+    /**
+     * @return the entry with the given name, or {@code null}
+     */
+    Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Opens the entry data exactly as stored in the zip, i.e. still compressed for DEFLATED entries.
+     */
+    InputStream openRaw(Entry entry) throws IOException {
+        var localHeader = read(channel, entry.localHeaderOffset(), 30);
+        if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header for '%s' in %s".formatted(entry.header().name(), path));
+        }
+        int nameLength = Short.toUnsignedInt(localHeader.getShort(26));
+        int extraLength = Short.toUnsignedInt(localHeader.getShort(28));
+        long dataStart = entry.localHeaderOffset() + 30 + nameLength + extraLength;
+        return new ChannelInputStream(channel, dataStart, entry.header().compressedSize());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static Map<String, Entry> readCentralDirectory(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int tailLength = (int) Math.min(size, END_SIZE + MAX_COMMENT + ZIP64_LOCATOR_SIZE);
+        var tail = read(channel, size - tailLength, tailLength);
+
+        int end = -1;
+        for (int i = tailLength - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new ZipException("End of central directory not found");
+        }
+
+        long count = Short.toUnsignedInt(tail.getShort(end + 10));
+        long centralSize = Integer.toUnsignedLong(tail.getInt(end + 12));
+        long centralStart = Integer.toUnsignedLong(tail.getInt(end + 16));
+
+        int locator = end - ZIP64_LOCATOR_SIZE;
+        if (locator >= 0 && tail.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+            long zip64EndOffset = tail.getLong(locator + 8);
+            var zip64End = read(channel, zip64EndOffset, 56);
+            if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                throw new ZipException("Invalid ZIP64 end of central directory");
+            }
+            count = zip64End.getLong(32);
+            centralSize = zip64End.getLong(40);
+            centralStart = zip64End.getLong(48);
+        }
+
+        if (centralSize > Integer.MAX_VALUE) {
+            throw new ZipException("Central directory too large: " + centralSize);
+        }
+        var central = read(channel, centralStart, (int) centralSize);
+        Map<String, Entry> result = new LinkedHashMap<>();
+        int position = 0;
+        for (long i = 0; i < count; i++) {
+            if (central.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header at entry " + i);
+            }
+            int method = Short.toUnsignedInt(central.getShort(position + 10));
+            long dosTime = Integer.toUnsignedLong(central.getInt(position + 12));
+            long crc = Integer.toUnsignedLong(central.getInt(position + 16));
+            long compressedSize = Integer.toUnsignedLong(central.getInt(position + 20));
+            long uncompressedSize = Integer.toUnsignedLong(central.getInt(position + 24));
+            int nameLength = Short.toUnsignedInt(central.getShort(position + 28));
+            int extraLength = Short.toUnsignedInt(central.getShort(position + 30));
+            int commentLength = Short.toUnsignedInt(central.getShort(position + 32));
+            long externalAttributes = Integer.toUnsignedLong(central.getInt(position + 38));
+            long offset = Integer.toUnsignedLong(central.getInt(position + 42));
+
+            byte[] nameBytes = new byte[nameLength];
+            central.get(position + 46, nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // ZIP64 extra field, values are present only for the fields set to the magic value
+            int extra = position + 46 + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = Short.toUnsignedInt(central.getShort(extra));
+                int length = Short.toUnsignedInt(central.getShort(extra + 2));
+                if (id == 0x0001) {
+                    int field = extra + 4;
+                    if (uncompressedSize == ZIP64_MAGIC) {
+                        uncompressedSize = central.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == ZIP64_MAGIC) {
+                        compressedSize = central.getLong(field);
+                        field += 8;
+                    }
+                    if (offset == ZIP64_MAGIC) {
+                        offset = central.getLong(field);
+                    }
+                }
+                extra += 4 + length;
+            }
+
+            int mode = (int) (externalAttributes >>> 16);
+            var header = new ZipWriter.Header(
+                    name,
+                    method,
+                    dosTime,
+                    mode != 0 ? mode : ZipWriter.Header.DEFAULT_FILE_MODE,
+                    crc,
+                    compressedSize,
+                    uncompressedSize);
+            result.put(name, new Entry(header, offset));
+            position = extraEnd + commentLength;
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        var buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new ZipException("Unexpected end of zip file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * @param header            header of the entry, as found in the central directory
+     * @param localHeaderOffset offset of the local file header
+     */
+    record Entry(ZipWriter.Header header, long localHeaderOffset) {}
+
+    /**
+     * Reads a range of a channel with positional reads, so several streams can share one channel.
+     */
+    private static final class ChannelInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+        private long remaining;
+
+        ChannelInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+            if (n < 0) {
+                throw new ZipException("Unexpected end of zip file");
+            }
+            position += n;
+            remaining -= n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package io.github.danielliu1123.deployer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Minimal zip writer that accepts entries whose data has already been compressed elsewhere.
+ *
+ * <p> {@link java.util.zip.ZipOutputStream} always compresses the data it is given, which makes it impossible
+ * to deflate entries on several threads and assemble them afterwards. This writer only lays out headers,
+ * data and the central directory, switching to ZIP64 records when sizes, offsets or the entry count
+ * do not fit the classic format.
+ *
+ * @author Freeman
+ */
+final class ZipWriter implements Closeable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+    /**
+     * Version made by: upper byte 3 (Unix) so that external attributes carry file permissions.
+     */
+    private static final int VERSION_MADE_BY_UNIX = 3 << 8;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 1980-02-01 00:00:00, the timestamp Gradle uses for reproducible archives.
+     * It is not affected by the time zone, as MS-DOS times store local date and time fields.
+     */
+    static final long CONSTANT_DOS_TIME = (2L << 21) | (1L << 16);
+
+    private final CountingOutputStream out;
+    private final List<CentralRecord> records = new ArrayList<>();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    // the deflater reads its input from the array until it is consumed, so its output needs another one
+    private final byte[] deflated = new byte[BUFFER_SIZE];
+    private final ByteBuffer scratch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    private boolean finished;
+
+    ZipWriter(OutputStream out) {
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    }
+
+    /**
+     * Writes an entry whose (possibly compressed) data is already in memory.
+     */
+    void writeEntry(Header header, byte[] data) throws IOException {
+        long offset = out.count;
+        writeLocalHeader(header, 0, false);
+        out.write(data, 0, (int) header.compressedSize());
+        records.add(new CentralRecord(header, 0, offset));
+    }
+
+    /**
+     * Writes an entry whose CRC and sizes are known ahead of time, copying the data as is from the stream.
+     *
+     * <p> The data must already be in the form described by the header: plain bytes for STORED entries,
+     * raw deflate data for DEFLATED entries, e.g. copied from another zip with {@link ZipReader#openRaw}.
+     */
+    void writeRawEntry(Header header, InputStream data) throws IOException {
+        long offset = out.count;
+        writeLocalHeader(header, 0, false);
+        long copied = data.transferTo(out);
+        if (copied != header.compressedSize()) {
+            throw new IOException("Size of '%s' changed while bundling, expected %d bytes but got %d"
+                    .formatted(header.name(), header.compressedSize(), copied));
+        }
+        records.add(new CentralRecord(header, 0, offset));
+    }
+
+    /**
+     * Deflates an entry while writing it, trailing the CRC and sizes in a data descriptor.
+     *
+     * <p> Used for entries that are too large to be compressed in memory, and with
+     * {@link Deflater#NO_COMPRESSION} for large already-compressed ones, whose CRC is then computed in the same read.
+     *
+     * @param expectedSize size of the uncompressed data, used to decide whether ZIP64 sizes are needed
+     * @return the written header, with CRC and sizes filled in
+     */
+    Header writeDeflatedEntry(Header header, InputStream data, long expectedSize, int level) throws IOException {
+        // incompressible data grows a little, by the headers of the deflate blocks
+        boolean zip64 = expectedSize + (expectedSize >> 10) + 64 >= ZIP64_MAGIC;
+        long offset = out.count;
+        writeLocalHeader(header, FLAG_DATA_DESCRIPTOR, zip64);
+
+        var crc = new CRC32();
+        var deflater = new Deflater(level, true);
+        long size = 0;
+        long start = out.count;
+        try {
+            int n;
+            while ((n = data.read(buffer)) != -1) {
+                crc.update(buffer, 0, n);
+                size += n;
+                deflater.setInput(buffer, 0, n);
+                drain(deflater);
+            }
+            deflater.finish();
+            drainFinished(deflater);
+        } finally {
+            deflater.end();
+        }
+        long compressedSize = out.count - start;
+        if (!zip64 && (size >= ZIP64_MAGIC || compressedSize >= ZIP64_MAGIC)) {
+            throw new IOException("Entry '%s' grew beyond 4 GiB while bundling".formatted(header.name()));
+        }
+
+        writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        writeInt(crc.getValue());
+        if (zip64) {
+            writeLong(compressedSize);
+            writeLong(size);
+        } else {
+            writeInt(compressedSize);
+            writeInt(size);
+        }
+
+        var written = header.withData(ZipEntry.DEFLATED, crc.getValue(), compressedSize, size);
+        records.add(new CentralRecord(written, FLAG_DATA_DESCRIPTOR, offset));
+        return written;
+    }
+
+    /**
+     * @return number of bytes written so far
+     */
+    long getBytesWritten() {
+        return out.count;
+    }
+
+    /**
+     * Writes the central directory. The underlying stream is flushed but left open.
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+
+        long centralStart = out.count;
+        for (CentralRecord record : records) {
+            writeCentralHeader(record);
+        }
+        long centralSize = out.count - centralStart;
+
+        int count = records.size();
+        boolean zip64 = count >= ZIP64_MAGIC_COUNT || centralStart >= ZIP64_MAGIC || centralSize >= ZIP64_MAGIC;
+        if (zip64) {
+            long zip64EndStart = out.count;
+            writeInt(ZIP64_END_SIGNATURE);
+            writeLong(44); // size of the remaining record
+            writeShort(VERSION_MADE_BY_UNIX | VERSION_ZIP64);
+            writeShort(VERSION_ZIP64);
+            writeInt(0); // number of this disk
+            writeInt(0); // disk where central directory starts
+            writeLong(count);
+            writeLong(count);
+            writeLong(centralSize);
+            writeLong(centralStart);
+
+            writeInt(ZIP64_LOCATOR_SIGNATURE);
+            writeInt(0); // disk with the zip64 end record
+            writeLong(zip64EndStart);
+            writeInt(1); // total number of disks
+        }
+
+        writeInt(END_SIGNATURE);
+        writeShort(0); // number of this disk
+        writeShort(0); // disk where central directory starts
+        writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+        writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+        writeInt(Math.min(centralSize, ZIP64_MAGIC));
+        writeInt(Math.min(centralStart, ZIP64_MAGIC));
+        writeShort(0); // comment length
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void drain(Deflater deflater) throws IOException {
+        while (!deflater.needsInput()) {
+            int n = deflater.deflate(deflated, 0, deflated.length);
+            if (n > 0) {
+                out.write(deflated, 0, n);
+            }
+        }
+    }
+
+    private void drainFinished(Deflater deflater) throws IOException {
+        while (!deflater.finished()) {
+            int n = deflater.deflate(deflated, 0, deflated.length);
+            if (n > 0) {
+                out.write(deflated, 0, n);
+            }
+        }
+    }
+
+    private void writeLocalHeader(Header header, int extraFlags, boolean forceZip64) throws IOException {
+        byte[] name = header.name().getBytes(StandardCharsets.UTF_8);
+        boolean descriptor = (extraFlags & FLAG_DATA_DESCRIPTOR) != 0;
+        boolean zip64 = forceZip64 || header.size() >= ZIP64_MAGIC || header.compressedSize() >= ZIP64_MAGIC;
+
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        writeShort(FLAG_UTF8 | extraFlags);
+        writeShort(header.method());
+        writeInt(header.dosTime());
+        if (descriptor) {
+            writeInt(0);
+            writeInt(zip64 ? ZIP64_MAGIC : 0);
+            writeInt(zip64 ? ZIP64_MAGIC : 0);
+        } else {
+            writeInt(header.crc());
+            writeInt(zip64 ? ZIP64_MAGIC : header.compressedSize());
+            writeInt(zip64 ? ZIP64_MAGIC : header.size());
+        }
+        writeShort(name.length);
+        writeShort(zip64 ? 20 : 0);
+        out.write(name);
+        if (zip64) {
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(16);
+            writeLong(descriptor ? 0 : header.size());
+            writeLong(descriptor ? 0 : header.compressedSize());
+        }
+    }
+
+    private void writeCentralHeader(CentralRecord record) throws IOException {
+        Header header = record.header();
+        byte[] name = header.name().getBytes(StandardCharsets.UTF_8);
+
+        boolean sizeOverflow = header.size() >= ZIP64_MAGIC;
+        boolean compressedOverflow = header.compressedSize() >= ZIP64_MAGIC;
+        boolean offsetOverflow = record.offset() >= ZIP64_MAGIC;
+        int extraLength = (sizeOverflow ? 8 : 0) + (compressedOverflow ? 8 : 0) + (offsetOverflow ? 8 : 0);
+        boolean zip64 = extraLength > 0;
+
+        writeInt(CENTRAL_HEADER_SIGNATURE);
+        writeShort(VERSION_MADE_BY_UNIX | (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT));
+        writeShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        writeShort(FLAG_UTF8 | record.flags());
+        writeShort(header.method());
+        writeInt(header.dosTime());
+        writeInt(header.crc());
+        writeInt(compressedOverflow ? ZIP64_MAGIC : header.compressedSize());
+        writeInt(sizeOverflow ? ZIP64_MAGIC : header.size());
+        writeShort(name.length);
+        writeShort(zip64 ? extraLength + 4 : 0);
+        writeShort(0); // comment length
+        writeShort(0); // disk number start
+        writeShort(0); // internal attributes
+        writeInt((long) header.unixMode() << 16);
+        writeInt(offsetOverflow ? ZIP64_MAGIC : record.offset());
+        out.write(name);
+        if (zip64) {
+            // the order of the fields is fixed by the spec: size, compressed size, offset
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(extraLength);
+            if (sizeOverflow) {
+                writeLong(header.size());
+            }
+            if (compressedOverflow) {
+                writeLong(header.compressedSize());
+            }
+            if (offsetOverflow) {
+                writeLong(record.offset());
+            }
+        }
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private void writeInt(long value) throws IOException {
+        scratch.clear();
+        scratch.putInt((int) value);
+        out.write(scratch.array(), 0, 4);
+    }
+
+    private void writeLong(long value) throws IOException {
+        scratch.clear();
+        scratch.putLong(value);
+        out.write(scratch.array(), 0, 8);
+    }
+
+    /**
+     * Converts epoch millis to the MS-DOS date/time format used by zip headers, in the local time zone.
+     */
+    static long toDosTime(long epochMillis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (time.getYear() - 1980) << 25)
+                | ((long) time.getMonthValue() << 21)
+                | ((long) time.getDayOfMonth() << 16)
+                | ((long) time.getHour() << 11)
+                | ((long) time.getMinute() << 5)
+                | ((long) time.getSecond() >> 1);
+    }
+
+    /**
+     * Everything a zip header needs to know about an entry.
+     *
+     * @param name           entry name, '/' separated
+     * @param method         {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+     * @param dosTime        last modified time, see {@link #toDosTime(long)}
+     * @param unixMode       unix file mode stored in the external attributes, e.g. {@code 0100644}
+     * @param crc            CRC-32 of the uncompressed data
+     * @param compressedSize size of the data as stored in the zip
+     * @param size           size of the uncompressed data
+     */
+    record Header(String name, int method, long dosTime, int unixMode, long crc, long compressedSize, long size) {
+
+        static final int DEFAULT_FILE_MODE = 0100644;
+
+        Header withData(int method, long crc, long compressedSize, long size) {
+            return new Header(name, method, dosTime, unixMode, crc, compressedSize, size);
+        }
+    }
+
+    private record CentralRecord(Header header, int flags, long offset) {}
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private final OutputStream delegate;
+        private long count;
+
+        CountingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
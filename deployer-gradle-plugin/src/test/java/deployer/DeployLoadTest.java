@@ -0,0 +1,153 @@
+package deployer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pushes a large release through the {@code deploy} task against a {@link PublisherApiSimulator}.
+ *
+ * <p> Excluded from {@code test}, run with {@code ./gradlew :deployer-gradle-plugin:loadTest}. The staged release has
+ * {@code deployer.load.files} files (10000) of {@code deployer.load.bytes} bytes in total (2 GiB),
+ * the build runs with a heap of {@code deployer.load.maxHeap} (512m) and fails on an {@link OutOfMemoryError},
+ * and every upload must be received at {@code deployer.load.minMegabytesPerSecond} (20 MB/s) or faster.
+ */
+@Tag("load")
+class DeployLoadTest {
+
+    static final int FILES = Integer.getInteger("deployer.load.files", 10_000);
+    static final long BYTES = Long.getLong("deployer.load.bytes", 2L << 30);
+    static final String MAX_HEAP = System.getProperty("deployer.load.maxHeap", "512m");
+    static final double MIN_MEGABYTES_PER_SECOND =
+            Double.parseDouble(System.getProperty("deployer.load.minMegabytesPerSecond", "20"));
+
+    static final int FILES_PER_GAV = 100;
+
+    @TempDir
+    File rootDir;
+
+    @Test
+    void testDeploysLargeRelease() throws Exception {
+        try (var simulator = PublisherApiSimulator.start()) {
+            simulator.latency(Duration.ofMillis(50));
+
+            var result = deploy(simulator, "");
+
+            assertThat(result.task(":deploy").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+            assertThat(simulator.getUploads()).hasSize(1);
+            assertUploads(simulator);
+        }
+    }
+
+    @Test
+    void testStreamsLargeRelease() throws Exception {
+        try (var simulator = PublisherApiSimulator.start()) {
+            simulator.latency(Duration.ofMillis(50));
+
+            var result = deploy(simulator, "streamBundle = true");
+
+            assertThat(result.task(":deploy").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+            assertThat(simulator.getUploads()).hasSize(1);
+            assertUploads(simulator);
+            assertThat(result.task(":deployBundle").getOutcome()).isEqualTo(TaskOutcome.SKIPPED);
+        }
+    }
+
+    @Test
+    void testDeploysSplitReleaseUnderThrottling() throws Exception {
+        try (var simulator = PublisherApiSimulator.start()) {
+            simulator.latency(Duration.ofMillis(50)).failUploads(1).throttleEvery(3, 1);
+
+            var result = deploy(simulator, "maxBundleSize = " + BYTES / 4 + "L");
+
+            assertThat(result.task(":deploy").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+            assertThat(simulator.getUploads()).hasSizeGreaterThanOrEqualTo(4);
+            assertThat(simulator.getThrottled()).isPositive();
+            assertUploads(simulator);
+        }
+    }
+
+    private static void assertUploads(PublisherApiSimulator simulator) {
+        long bytes = 0;
+        for (var upload : simulator.getUploads()) {
+            assertThat(upload.megabytesPerSecond())
+                    .as("MB/s of %s", upload.fileName())
+                    .isGreaterThanOrEqualTo(MIN_MEGABYTES_PER_SECOND);
+            assertThat(simulator.getChecks(upload.deploymentId())).isEqualTo(5);
+            bytes += upload.bytes();
+        }
+        // jars are stored, the bundles are at least as large as the staged files
+        assertThat(bytes).isGreaterThanOrEqualTo(BYTES);
+    }
+
+    private BuildResult deploy(PublisherApiSimulator simulator, String options) throws IOException {
+        stage(rootDir.toPath().resolve("artifacts"));
+        Files.writeString(new File(rootDir, "settings.gradle").toPath(), """
+                rootProject.name = "deployer-load-test"
+                """);
+        Files.writeString(new File(rootDir, "gradle.properties").toPath(), """
+                org.gradle.jvmargs=-Xmx%s -XX:+ExitOnOutOfMemoryError
+                """.formatted(MAX_HEAP));
+        Files.writeString(new File(rootDir, "build.gradle").toPath(), """
+                plugins {
+                    id 'io.github.danielliu1123.deployer'
+                }
+
+                deploy {
+                    dirs = [ file("artifacts") ]
+                    username = "testuser"
+                    password = "testpassword"
+                    publishingType = io.github.danielliu1123.deployer.PublishingType.WAIT_FOR_PUBLISHED
+                    publisherUrl = "%s"
+                    validate = false
+                    retryBackoff = java.time.Duration.ofMillis(10)
+                    statusPollInterval = java.time.Duration.ofMillis(20)
+                    %s
+                }
+                """.formatted(simulator.getUri(), options));
+
+        return GradleRunner.create()
+                .withProjectDir(rootDir)
+                .withPluginClasspath()
+                .forwardOutput()
+                .withArguments("deploy")
+                .build();
+    }
+
+    /**
+     * Writes {@link #FILES} incompressible jars of {@link #BYTES} in total, {@link #FILES_PER_GAV} per GAV.
+     */
+    private static void stage(Path dir) throws IOException {
+        var random = new Random(20261017L);
+        var pool = new byte[1 << 20];
+        random.nextBytes(pool);
+        long size = BYTES / FILES;
+        for (int i = 0; i < FILES; i++) {
+            var artifactId = "module" + i / FILES_PER_GAV;
+            var gav = Files.createDirectories(dir.resolve("com/example/load/" + artifactId + "/1.0.0"));
+            var name = artifactId + "-1.0.0-part" + i % FILES_PER_GAV + ".jar";
+            try (OutputStream out = Files.newOutputStream(gav.resolve(name))) {
+                // a random slice of the pool, deflate does not see repetitions across files
+                int offset = random.nextInt(pool.length);
+                for (long left = size; left > 0; ) {
+                    int n = (int) Math.min(left, pool.length - offset);
+                    out.write(pool, offset, n);
+                    left -= n;
+                    offset = 0;
+                }
+            }
+        }
+    }
+}
@@ -4,8 +4,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.File;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
 import org.gradle.testkit.runner.BuildResult;
 import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -92,4 +95,360 @@ class DeployerPluginTest {
                 .contains("\"password\": \"****\"")
                 .contains("\"publishingType\": \"AUTOMATIC\"");
     }
+
+    @Test
+    void testDeployBundleTask() throws Exception {
+        String settingsGradleContent = """
+                rootProject.name = "deployer-test-bundle"
+                """;
+        String buildGradleContent = """
+                plugins {
+                    id 'io.github.danielliu1123.deployer'
+                }
+
+                deploy {
+                    dirs = [ file("artifacts") ]
+                    username = "testuser"
+                    password = "testpassword"
+                }
+                """;
+
+        Files.writeString(settingsFile.toPath(), settingsGradleContent);
+        Files.writeString(buildFile.toPath(), buildGradleContent);
+        File gavDir = new File(rootDir, "artifacts/com/example/demo/1.0.0");
+        Files.createDirectories(gavDir.toPath());
+        Files.writeString(new File(gavDir, "demo-1.0.0.pom").toPath(), "<project/>");
+
+        GradleRunner runner = GradleRunner.create()
+                .withProjectDir(rootDir)
+                .withPluginClasspath()
+                .forwardOutput()
+                .withArguments("deployBundle");
+
+        BuildResult first = runner.build();
+        assertThat(first.task(":deployBundle").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(new File(rootDir, "build/deployer/bundles/" + rootDir.getName() + "-bundle.zip"))
+                .isFile();
+        assertThat(Files.readString(new File(rootDir, "build/deployer/report.json").toPath()))
+                .contains("\"phase\": \"scan\"", "\"phase\": \"bundle\"", "\"bytesOut\": ");
+
+        BuildResult second = runner.build();
+        assertThat(second.task(":deployBundle").getOutcome()).isEqualTo(TaskOutcome.UP_TO_DATE);
+    }
+
+    @Test
+    void testDeploysToPublisherApiSimulator() throws Exception {
+        try (var simulator = PublisherApiSimulator.start()) {
+            simulator.failUploads(1).throttleEvery(4, 0).latency(Duration.ofMillis(10));
+            String settingsGradleContent = """
+                    rootProject.name = "deployer-test-simulator"
+                    """;
+            String buildGradleContent = """
+                    plugins {
+                        id 'io.github.danielliu1123.deployer'
+                    }
+
+                    deploy {
+                        dirs = [ file("artifacts") ]
+                        username = "testuser"
+                        password = "testpassword"
+                        publishingType = io.github.danielliu1123.deployer.PublishingType.WAIT_FOR_PUBLISHED
+                        publisherUrl = "%s"
+                        validate = false
+                        retryBackoff = java.time.Duration.ofMillis(10)
+                        statusPollInterval = java.time.Duration.ofMillis(20)
+                    }
+                    """
+                    .formatted(simulator.getUri());
+
+            Files.writeString(settingsFile.toPath(), settingsGradleContent);
+            Files.writeString(buildFile.toPath(), buildGradleContent);
+            File gavDir = new File(rootDir, "artifacts/com/example/demo/1.0.0");
+            Files.createDirectories(gavDir.toPath());
+            Files.writeString(new File(gavDir, "demo-1.0.0.pom").toPath(), "<project/>");
+
+            BuildResult result = GradleRunner.create()
+                    .withProjectDir(rootDir)
+                    .withPluginClasspath()
+                    .forwardOutput()
+                    .withArguments("deploy")
+                    .build();
+
+            assertThat(result.task(":deploy").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+            assertThat(simulator.getUploadAttempts()).isEqualTo(2);
+            assertThat(simulator.getUploads()).hasSize(1);
+            var upload = simulator.getUploads().get(0);
+            assertThat(upload.fileName()).isEqualTo(rootDir.getName() + "-bundle.zip");
+            assertThat(upload.publishingType()).isEqualTo("AUTOMATIC");
+            assertThat(simulator.getChecks(upload.deploymentId())).isEqualTo(5);
+            assertThat(simulator.getThrottled()).isPositive();
+            assertThat(Files.readString(new File(rootDir, "build/deployer/report.json").toPath()))
+                    .contains("\"to\": \"PUBLISHED\"");
+        }
+    }
+
+    @Test
+    void testUploadsOtherBundlesWhenOneFails() throws Exception {
+        try (var simulator = PublisherApiSimulator.start()) {
+            simulator.rejectUploadsOf(rootDir.getName() + "-bundle-2.zip");
+            Files.writeString(settingsFile.toPath(), """
+                    rootProject.name = "deployer-test-split"
+                    """);
+            Files.writeString(buildFile.toPath(), """
+                    plugins {
+                        id 'io.github.danielliu1123.deployer'
+                    }
+
+                    deploy {
+                        dirs = [ file("artifacts") ]
+                        username = "testuser"
+                        password = "testpassword"
+                        publishingType = io.github.danielliu1123.deployer.PublishingType.USER_MANAGED
+                        publisherUrl = "%s"
+                        maxBundleSize = 1000L
+                        uploadConcurrency = 1
+                    }
+                    """
+                    .formatted(simulator.getUri()));
+            for (String artifactId : List.of("core", "web", "cli")) {
+                File gavDir = new File(rootDir, "artifacts/com/example/" + artifactId + "/1.0.0");
+                Files.createDirectories(gavDir.toPath());
+                Files.writeString(
+                        new File(gavDir, artifactId + "-1.0.0.pom").toPath(), "<project/>".repeat(60));
+            }
+
+            BuildResult result = GradleRunner.create()
+                    .withProjectDir(rootDir)
+                    .withPluginClasspath()
+                    .forwardOutput()
+                    .withArguments("deploy")
+                    .buildAndFail();
+
+            assertThat(result.getOutput()).contains("Failed to upload 1 of 3 bundles", "-bundle-2.zip (status 400)");
+            assertThat(simulator.getUploads())
+                    .extracting(PublisherApiSimulator.Upload::fileName)
+                    .containsExactlyInAnyOrder(
+                            rootDir.getName() + "-bundle-1.zip", rootDir.getName() + "-bundle-3.zip");
+        }
+    }
+
+    @Test
+    void testDeploysToPublisherApiBelowPath() throws Exception {
+        try (var simulator = PublisherApiSimulator.start("/central")) {
+            Files.writeString(settingsFile.toPath(), """
+                    rootProject.name = "deployer-test-proxy"
+                    """);
+            Files.writeString(buildFile.toPath(), """
+                    plugins {
+                        id 'io.github.danielliu1123.deployer'
+                    }
+
+                    deploy {
+                        dirs = [ file("artifacts") ]
+                        username = "testuser"
+                        password = "testpassword"
+                        publishingType = io.github.danielliu1123.deployer.PublishingType.WAIT_FOR_PUBLISHED
+                        publisherUrl = "%s"
+                        validate = false
+                        statusPollInterval = java.time.Duration.ofMillis(20)
+                    }
+                    """
+                    .formatted(simulator.getUri()));
+            File gavDir = new File(rootDir, "artifacts/com/example/demo/1.0.0");
+            Files.createDirectories(gavDir.toPath());
+            Files.writeString(new File(gavDir, "demo-1.0.0.pom").toPath(), "<project/>");
+
+            BuildResult result = GradleRunner.create()
+                    .withProjectDir(rootDir)
+                    .withPluginClasspath()
+                    .forwardOutput()
+                    .withArguments("deploy")
+                    .build();
+
+            assertThat(result.task(":deploy").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+            assertThat(simulator.getUploads()).hasSize(1);
+            assertThat(simulator.getChecks(simulator.getUploads().get(0).deploymentId()))
+                    .isEqualTo(5);
+        }
+    }
+
+    @Test
+    void testDiscoversStagingRepositoriesWithConfigurationCache() throws Exception {
+        String settingsGradleContent = """
+                rootProject.name = "deployer-test-discovery"
+                include("lib")
+                """;
+        String buildGradleContent = """
+                plugins {
+                    id 'io.github.danielliu1123.deployer'
+                }
+
+                subprojects {
+                    apply plugin: "java-library"
+                    apply plugin: "maven-publish"
+                    group = "com.example"
+                    version = "1.0.0"
+                    publishing {
+                        publications {
+                            register("maven", MavenPublication) {
+                                from components.java
+                            }
+                        }
+                        repositories {
+                            maven {
+                                url = layout.buildDirectory.dir("repo")
+                            }
+                        }
+                    }
+                }
+                """;
+
+        Files.writeString(settingsFile.toPath(), settingsGradleContent);
+        Files.writeString(buildFile.toPath(), buildGradleContent);
+        Files.createDirectories(new File(rootDir, "lib").toPath());
+
+        GradleRunner runner = GradleRunner.create()
+                .withProjectDir(rootDir)
+                .withPluginClasspath()
+                .forwardOutput()
+                .withArguments("deployBundle", "--configuration-cache");
+
+        BuildResult first = runner.build();
+        assertThat(first.task(":lib:publishMavenPublicationToMavenRepository").getOutcome())
+                .isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(first.task(":deployBundle").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(first.getOutput()).contains("Configuration cache entry stored.");
+
+        BuildResult second = runner.build();
+        assertThat(second.getOutput()).contains("Configuration cache entry reused.");
+        assertThat(second.task(":lib:publishMavenPublicationToMavenRepository")).isNotNull();
+        assertThat(new File(rootDir, "build/deployer/bundles/" + rootDir.getName() + "-bundle.zip"))
+                .isFile();
+    }
+
+    @Test
+    void testLeavesOutRepositoriesWithoutPublications() throws Exception {
+        String settingsGradleContent = """
+                rootProject.name = "deployer-test-no-publications"
+                include("lib")
+                """;
+        String buildGradleContent = """
+                plugins {
+                    id 'io.github.danielliu1123.deployer'
+                }
+
+                allprojects {
+                    apply plugin: "maven-publish"
+                    group = "com.example"
+                    version = "1.0.0"
+                    publishing {
+                        repositories {
+                            maven {
+                                url = layout.buildDirectory.dir("repo")
+                            }
+                        }
+                    }
+                }
+
+                project(":lib") {
+                    apply plugin: "java-library"
+                    publishing {
+                        publications {
+                            register("maven", MavenPublication) {
+                                from components.java
+                            }
+                        }
+                    }
+                }
+                """;
+
+        Files.writeString(settingsFile.toPath(), settingsGradleContent);
+        Files.writeString(buildFile.toPath(), buildGradleContent);
+        Files.createDirectories(new File(rootDir, "lib").toPath());
+
+        BuildResult result = GradleRunner.create()
+                .withProjectDir(rootDir)
+                .withPluginClasspath()
+                .forwardOutput()
+                .withArguments("deployBundle", "--configuration-cache")
+                .build();
+
+        assertThat(result.task(":deployBundle").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(new File(rootDir, "build/repo")).doesNotExist();
+        assertThat(new File(rootDir, "build/deployer/bundles/" + rootDir.getName() + "-bundle.zip"))
+                .isFile();
+    }
+
+    @Test
+    void testRegistersBundleFragmentsInPublishingSubprojects() throws Exception {
+        String settingsGradleContent = """
+                rootProject.name = "deployer-test-fragments"
+                include("app", "app:lib", "docs")
+                """;
+        String buildGradleContent = """
+                plugins {
+                    id 'io.github.danielliu1123.deployer'
+                }
+
+                deploy {
+                    bundleFragments = true
+                }
+                """;
+
+        Files.writeString(settingsFile.toPath(), settingsGradleContent);
+        Files.writeString(buildFile.toPath(), buildGradleContent);
+        Files.createDirectories(new File(rootDir, "app/lib").toPath());
+        Files.createDirectories(new File(rootDir, "docs").toPath());
+        Files.writeString(new File(rootDir, "app/build.gradle").toPath(), """
+                apply plugin: "maven-publish"
+                apply plugin: "io.github.danielliu1123.deployer"
+                """);
+        Files.writeString(new File(rootDir, "app/lib/build.gradle").toPath(), """
+                apply plugin: "maven-publish"
+                """);
+
+        BuildResult result = GradleRunner.create()
+                .withProjectDir(rootDir)
+                .withPluginClasspath()
+                .forwardOutput()
+                .withArguments("tasks", "--all")
+                .build();
+
+        assertThat(result.getOutput())
+                .contains("app:deployBundleFragment", "app:lib:deployBundleFragment")
+                .doesNotContain("docs:deployBundleFragment");
+    }
+
+    @Test
+    void testAwaitPublishedTask() throws Exception {
+        String settingsGradleContent = """
+                rootProject.name = "deployer-test-await-published"
+                """;
+        String buildGradleContent = """
+                plugins {
+                    id 'io.github.danielliu1123.deployer'
+                }
+
+                deploy {
+                    dirs = [ file("artifacts") ]
+                    username = "testuser"
+                    password = "testpassword"
+                    publishingType = io.github.danielliu1123.deployer.PublishingType.WAIT_FOR_PUBLISHED
+                    waitInBackground = true
+                }
+                """;
+
+        Files.writeString(settingsFile.toPath(), settingsGradleContent);
+        Files.writeString(buildFile.toPath(), buildGradleContent);
+
+        BuildResult result = GradleRunner.create()
+                .withProjectDir(rootDir)
+                .withPluginClasspath()
+                .forwardOutput()
+                .withArguments("awaitPublished")
+                .build();
+
+        assertThat(result.task(":awaitPublished").getOutcome()).isEqualTo(TaskOutcome.SUCCESS);
+        assertThat(result.getOutput()).contains("0 deployment(s) published");
+    }
 }
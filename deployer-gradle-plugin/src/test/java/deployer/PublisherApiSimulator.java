@@ -0,0 +1,286 @@
+package deployer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An embedded stand-in of the Maven Central Publisher API, for tests deploying through
+ * {@code deploy { publisherUrl = ... }}.
+ *
+ * <p> Uploads are read and counted but not kept, so bundles of several GB cost no memory. Each upload gets a
+ * deployment ID, and each status check of a deployment moves it one step along {@link #states(String...)}.
+ * Latency, failed or rejected uploads and throttling with {@code 429} and {@code Retry-After} are configurable.
+ */
+final class PublisherApiSimulator implements AutoCloseable {
+
+    private static final List<String> PUBLISHED =
+            List.of("PENDING", "VALIDATING", "VALIDATED", "PUBLISHING", "PUBLISHED");
+
+    private final HttpServer server;
+    private final String path;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger uploadAttempts = new AtomicInteger();
+    private final AtomicInteger throttled = new AtomicInteger();
+    private final AtomicInteger deployments = new AtomicInteger();
+    private final List<Upload> uploads = new CopyOnWriteArrayList<>();
+    // deploymentId -> number of status checks
+    private final Map<String, AtomicInteger> checks = new ConcurrentHashMap<>();
+
+    private volatile Duration latency = Duration.ZERO;
+    private volatile int failedUploads;
+    private volatile String rejectedFileName;
+    private volatile int throttleEvery;
+    private volatile int retryAfterSeconds;
+    private volatile List<String> states = PUBLISHED;
+
+    private PublisherApiSimulator(String path) throws IOException {
+        this.path = path;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext(path + "/api/v1/publisher/upload", this::upload);
+        server.createContext(path + "/api/v1/publisher/status", this::status);
+        server.start();
+    }
+
+    static PublisherApiSimulator start() throws IOException {
+        return start("");
+    }
+
+    /**
+     * Serves the API below {@code path}, like a proxy would, e.g. {@code /central}.
+     */
+    static PublisherApiSimulator start(String path) throws IOException {
+        return new PublisherApiSimulator(path);
+    }
+
+    /**
+     * @return the value of {@code publisherUrl}
+     */
+    URI getUri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    /**
+     * Delays every response by {@code latency}, on top of reading the request.
+     */
+    PublisherApiSimulator latency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Answers the first {@code count} uploads with {@code 503} and a {@code Retry-After} of 0 after reading them,
+     * i.e. an overloaded server turning them away.
+     */
+    PublisherApiSimulator failUploads(int count) {
+        this.failedUploads = count;
+        return this;
+    }
+
+    /**
+     * Answers every upload of the bundle named {@code fileName} with {@code 400} after reading it,
+     * e.g. an invalid bundle.
+     */
+    PublisherApiSimulator rejectUploadsOf(String fileName) {
+        this.rejectedFileName = fileName;
+        return this;
+    }
+
+    /**
+     * Answers every {@code n}th request with {@code 429} and a {@code Retry-After} of {@code retryAfterSeconds},
+     * after reading it.
+     */
+    PublisherApiSimulator throttleEvery(int n, int retryAfterSeconds) {
+        this.throttleEvery = n;
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    /**
+     * States reported by the status checks of every deployment, one step per check, the last one repeated.
+     * Defaults to {@code PENDING}, {@code VALIDATING}, {@code VALIDATED}, {@code PUBLISHING}, {@code PUBLISHED}.
+     */
+    PublisherApiSimulator states(String... states) {
+        this.states = List.of(states);
+        return this;
+    }
+
+    /**
+     * @return the accepted uploads, in the order they finished
+     */
+    List<Upload> getUploads() {
+        return List.copyOf(uploads);
+    }
+
+    /**
+     * @return uploads received, including failed ones but not throttled ones
+     */
+    int getUploadAttempts() {
+        return uploadAttempts.get();
+    }
+
+    int getThrottled() {
+        return throttled.get();
+    }
+
+    /**
+     * @return status checks of {@code deploymentId}
+     */
+    int getChecks(String deploymentId) {
+        var count = checks.get(deploymentId);
+        return count != null ? count.get() : 0;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void upload(HttpExchange exchange) throws IOException {
+        if (rejected(exchange)) {
+            return;
+        }
+        int attempt = uploadAttempts.incrementAndGet();
+        long start = System.nanoTime();
+        var received = receive(exchange.getRequestBody());
+        long nanos = System.nanoTime() - start;
+        delay();
+        if (attempt <= failedUploads) {
+            exchange.getResponseHeaders().set("Retry-After", "0");
+            respond(exchange, 503, "Service Unavailable");
+            return;
+        }
+        if (received.fileName().equals(rejectedFileName)) {
+            respond(exchange, 400, "Invalid bundle: " + received.fileName());
+            return;
+        }
+        var query = exchange.getRequestURI().getQuery();
+        var deploymentId = "deployment-" + deployments.incrementAndGet();
+        checks.put(deploymentId, new AtomicInteger());
+        uploads.add(new Upload(
+                deploymentId,
+                received.fileName(),
+                query != null ? query.replace("publishingType=", "") : null,
+                received.bytes(),
+                nanos));
+        respond(exchange, 201, deploymentId);
+    }
+
+    private void status(HttpExchange exchange) throws IOException {
+        if (rejected(exchange)) {
+            return;
+        }
+        exchange.getRequestBody().readAllBytes();
+        delay();
+        var query = exchange.getRequestURI().getQuery();
+        var deploymentId = query != null ? query.replace("id=", "") : "";
+        var count = checks.get(deploymentId);
+        if (count == null) {
+            respond(exchange, 404, "Deployment not found: " + deploymentId);
+            return;
+        }
+        var current = states;
+        var state = current.get(Math.min(count.getAndIncrement(), current.size() - 1));
+        respond(exchange, 200, """
+                {"deploymentId":"%s","deploymentName":"%s","deploymentState":"%s","purls":[]}"""
+                .formatted(deploymentId, deploymentId, state));
+    }
+
+    /**
+     * @return whether the request was answered with 401 or 429
+     */
+    private boolean rejected(HttpExchange exchange) throws IOException {
+        var authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        boolean unauthorized = authorization == null || !authorization.startsWith("Bearer ");
+        int n = throttleEvery;
+        boolean throttle = !unauthorized && n > 0 && requests.incrementAndGet() % n == 0;
+        if (!unauthorized && !throttle) {
+            return false;
+        }
+        // a response before the whole body is sent resets the connection, not what a client sees from Central
+        exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+        if (unauthorized) {
+            respond(exchange, 401, "Unauthorized");
+        } else {
+            throttled.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+            respond(exchange, 429, "Too Many Requests");
+        }
+        return true;
+    }
+
+    /**
+     * Counts the bytes of a multipart body and picks the file name from its part headers.
+     */
+    private static Received receive(InputStream body) throws IOException {
+        var buffer = new byte[64 * 1024];
+        String fileName = null;
+        long bytes = 0;
+        for (int n; (n = body.read(buffer)) != -1; ) {
+            if (fileName == null) {
+                var head = new String(buffer, 0, n, StandardCharsets.ISO_8859_1);
+                int start = head.indexOf("filename=");
+                if (start >= 0) {
+                    int end = head.indexOf("\r\n", start);
+                    fileName = head.substring(start + "filename=".length(), end >= 0 ? end : head.length());
+                }
+            }
+            bytes += n;
+        }
+        return new Received(fileName, bytes);
+    }
+
+    private void delay() {
+        var current = latency;
+        if (!current.isZero()) {
+            try {
+                Thread.sleep(current.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (var out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @param deploymentId   returned to the client
+     * @param fileName       file name of the multipart part
+     * @param publishingType query parameter of the upload
+     * @param bytes          size of the multipart body
+     * @param nanos          time spent receiving the body
+     */
+    record Upload(String deploymentId, String fileName, String publishingType, long bytes, long nanos) {
+
+        /**
+         * @return MB/s the body was received at
+         */
+        double megabytesPerSecond() {
+            return nanos > 0 ? bytes * 1_000.0 / nanos : 0;
+        }
+    }
+
+    private record Received(String fileName, long bytes) {}
+}
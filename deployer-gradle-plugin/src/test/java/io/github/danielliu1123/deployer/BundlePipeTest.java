@@ -0,0 +1,76 @@
+package io.github.danielliu1123.deployer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BundlePipeTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testStreamsBundle() throws Exception {
+        stage(3);
+        var executor = Executors.newCachedThreadPool(new NamedThreadFactory("test-bundle-stream"));
+        try (var streams = streams(executor)) {
+            List<String> names = new ArrayList<>();
+            try (var zip = new ZipInputStream(streams.get())) {
+                for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                    names.add(entry.getName());
+                }
+            }
+            assertThat(names).contains("com/example/demo/1.0.0/demo-1.0.0-part0.jar");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCloseStopsProducerOfAbandonedStream() throws Exception {
+        stage(8);
+        var executor = Executors.newCachedThreadPool(new NamedThreadFactory("test-bundle-stream"));
+        var streams = streams(executor);
+        // e.g. a timed out request, the HttpClient reads a little and never closes the body
+        var abandoned = streams.get();
+        assertThat(abandoned.readNBytes(1024).length).isEqualTo(1024);
+        executor.shutdown();
+
+        // the producer waits for room in the queue
+        assertThat(executor.awaitTermination(200, TimeUnit.MILLISECONDS)).isFalse();
+
+        streams.close();
+
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private BundlePipe.Streams streams(ExecutorService executor) throws IOException {
+        var writer = new BundleWriter(BundleWriterTest.options(Set.of(), null));
+        return new BundlePipe.Streams(writer, BundlePlan.scan(List.of(dir), true), 1, executor);
+    }
+
+    /**
+     * Writes {@code count} incompressible jars of 1 MiB, far more than the queue holds.
+     */
+    private void stage(int count) throws Exception {
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0"));
+        var random = new Random(20261017L);
+        for (int i = 0; i < count; i++) {
+            var data = new byte[1 << 20];
+            random.nextBytes(data);
+            Files.write(gav.resolve("demo-1.0.0-part" + i + ".jar"), data);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package io.github.danielliu1123.deployer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BundlePlanTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testIdenticalEntriesAreKeptOnce() throws Exception {
+        var first = stage("first", "com/example/parent/1.0.0/parent-1.0.0.pom", "<project/>");
+        stage("first", "com/example/core/1.0.0/core-1.0.0.pom", "<project>core</project>");
+        var second = stage("second", "com/example/parent/1.0.0/parent-1.0.0.pom", "<project/>");
+        stage("second", "com/example/web/1.0.0/web-1.0.0.pom", "<project>web</project>");
+
+        var sources = BundlePlan.scan(List.of(first, second), true);
+
+        assertThat(sources.stream().map(BundlePlan.Source::name).toList())
+                .containsExactly(
+                        "com/example/core/1.0.0/core-1.0.0.pom",
+                        "com/example/parent/1.0.0/parent-1.0.0.pom",
+                        "com/example/web/1.0.0/web-1.0.0.pom");
+        assertThat(sources.get(1).file()).isEqualTo(first.resolve("com/example/parent/1.0.0/parent-1.0.0.pom"));
+    }
+
+    @Test
+    void testConflictingEntriesAreReportedUpFront() throws Exception {
+        var first = stage("first", "com/example/parent/1.0.0/parent-1.0.0.pom", "<project>a</project>");
+        stage("first", "com/example/parent/1.0.0/parent-1.0.0.jar", "jar");
+        var second = stage("second", "com/example/parent/1.0.0/parent-1.0.0.pom", "<project>b</project>");
+        stage("second", "com/example/parent/1.0.0/parent-1.0.0.jar", "other jar");
+
+        assertThatThrownBy(() -> BundlePlan.scan(List.of(first, second), true))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("2 entries are staged with different content in several dirs")
+                .hasMessageContaining("com/example/parent/1.0.0/parent-1.0.0.pom in [")
+                .hasMessageContaining("com/example/parent/1.0.0/parent-1.0.0.jar in [");
+    }
+
+    @Test
+    void testExcludesMetadataOfFullyPublishedGas() throws Exception {
+        // laid out by maven-publish, the metadata of each GA next to its versions
+        for (String file : List.of("maven-metadata.xml", "maven-metadata.xml.md5", "maven-metadata.xml.sha1")) {
+            stage("repo", "com/example/core/" + file, "core metadata");
+            stage("repo", "com/example/web/" + file, "web metadata");
+        }
+        stage("repo", "com/example/core/1.0.0/core-1.0.0.pom", "<project>core</project>");
+        stage("repo", "com/example/core/1.0.0/core-1.0.0.jar", "core");
+        stage("repo", "com/example/web/1.0.0/web-1.0.0.pom", "<project>web 1.0.0</project>");
+        var root = stage("repo", "com/example/web/1.1.0/web-1.1.0.pom", "<project>web 1.1.0</project>");
+        var sources = BundlePlan.scan(List.of(root), true);
+
+        assertThat(BundlePlan.gavsOf(sources))
+                .containsExactly("com/example/core/1.0.0", "com/example/web/1.0.0", "com/example/web/1.1.0");
+
+        var partly = BundlePlan.exclude(sources, Set.of("com/example/core/1.0.0", "com/example/web/1.0.0"));
+        assertThat(partly.stream().map(BundlePlan.Source::name).toList())
+                .containsExactly(
+                        "com/example/web/1.1.0/web-1.1.0.pom",
+                        "com/example/web/maven-metadata.xml",
+                        "com/example/web/maven-metadata.xml.md5",
+                        "com/example/web/maven-metadata.xml.sha1");
+
+        var all = BundlePlan.exclude(
+                sources, Set.of("com/example/core/1.0.0", "com/example/web/1.0.0", "com/example/web/1.1.0"));
+        assertThat(all).isEmpty();
+        assertThat(BundlePlan.gavsOf(all)).isEmpty();
+    }
+
+    @Test
+    void testSplitKeepsShardsBelowMaxSize() {
+        var sources = List.of(
+                source("com/example/a/1.0.0/a-1.0.0.jar", 400),
+                source("com/example/b/1.0.0/b-1.0.0.jar", 300),
+                source("com/example/c/1.0.0/c-1.0.0.jar", 300),
+                source("com/example/d/1.0.0/d-1.0.0.jar", 200),
+                source("com/example/e/1.0.0/e-1.0.0.jar", 100));
+
+        var shards = BundlePlan.split(sources, 700);
+
+        assertThat(shards.stream().map(BundlePlanTest::size).toList()).allMatch(size -> size <= 700);
+        assertThat(shards.stream().mapToInt(List::size).sum()).isEqualTo(sources.size());
+        assertThat(shards).hasSize(2);
+        assertThat(BundlePlan.split(sources, 0)).containsExactly(sources);
+    }
+
+    @Test
+    void testSplitKeepsEachGavWhole() {
+        var sources = List.of(
+                source("com/example/a/1.0.0/a-1.0.0.pom", 100),
+                source("com/example/a/1.0.0/a-1.0.0.jar", 300),
+                source("com/example/b/1.0.0/b-1.0.0.pom", 100),
+                source("com/example/b/1.0.0/b-1.0.0.jar", 300),
+                source("com/example/a/1.0.0/a-1.0.0-sources.jar", 200));
+
+        var shards = BundlePlan.split(sources, 700);
+
+        assertThat(shards).hasSize(2);
+        for (var shard : shards) {
+            assertThat(shard.stream().map(s -> BundlePlan.gavOf(s.name())).distinct().toList())
+                    .hasSize(1);
+        }
+        var a = shards.stream()
+                .filter(shard -> shard.get(0).name().startsWith("com/example/a/"))
+                .findFirst()
+                .orElseThrow();
+        // the relative order of the sources is kept
+        assertThat(a.stream().map(BundlePlan.Source::name).toList())
+                .containsExactly(
+                        "com/example/a/1.0.0/a-1.0.0.pom",
+                        "com/example/a/1.0.0/a-1.0.0.jar",
+                        "com/example/a/1.0.0/a-1.0.0-sources.jar");
+    }
+
+    @Test
+    void testSplitGivesOversizedGavItsOwnShard() {
+        var big = source("com/example/big/1.0.0/big-1.0.0.jar", 5000);
+        var sources = List.of(
+                source("com/example/a/1.0.0/a-1.0.0.jar", 100),
+                big,
+                source("com/example/b/1.0.0/b-1.0.0.jar", 100));
+
+        var shards = BundlePlan.split(sources, 1000);
+
+        assertThat(shards).hasSize(2);
+        assertThat(shards).contains(List.of(big));
+        assertThat(BundlePlan.split(sources, 1000)).isEqualTo(shards);
+    }
+
+    @Test
+    void testBundleName() {
+        assertThat(BundlePlan.bundleName("demo", 0, 1)).isEqualTo("demo-bundle.zip");
+        assertThat(BundlePlan.bundleName("demo", 0, 3)).isEqualTo("demo-bundle-1.zip");
+        assertThat(BundlePlan.bundleName("demo", 2, 3)).isEqualTo("demo-bundle-3.zip");
+    }
+
+    @Test
+    void testSkipsMissingDirectories() throws Exception {
+        var repo = stage("repo", "com/example/core/1.0.0/core-1.0.0.pom", "<project>core</project>");
+        var missing = dir.resolve("missing");
+        var file = Files.writeString(dir.resolve("file"), "file");
+        var logger = Logging.getLogger(BundlePlanTest.class);
+
+        assertThat(BundlePlan.directories(List.of(repo.toFile(), missing.toFile()), logger))
+                .containsExactly(repo);
+        assertThatThrownBy(() -> BundlePlan.directories(List.of(repo.toFile(), file.toFile()), logger))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("not a directory");
+    }
+
+    static BundlePlan.Source source(String name, long size) {
+        return new BundlePlan.Source(name, Path.of(name), size, 0);
+    }
+
+    static long size(List<BundlePlan.Source> shard) {
+        return shard.stream().mapToLong(BundlePlan.Source::size).sum();
+    }
+
+    Path stage(String root, String name, String content) throws Exception {
+        var file = dir.resolve(root).resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        return dir.resolve(root);
+    }
+}
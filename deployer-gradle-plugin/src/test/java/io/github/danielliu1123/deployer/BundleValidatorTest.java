@@ -0,0 +1,156 @@
+package io.github.danielliu1123.deployer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BundleValidatorTest {
+
+    static final String POM =
+            """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <project xmlns="http://maven.apache.org/POM/4.0.0">
+              <modelVersion>4.0.0</modelVersion>
+              <groupId>com.example</groupId>
+              <artifactId>demo</artifactId>
+              <version>1.0.0</version>
+              <name>demo</name>
+              <description>Demo</description>
+              <url>https://example.com</url>
+              <licenses><license><name>MIT</name></license></licenses>
+              <developers><developer><id>freeman</id></developer></developers>
+              <scm><url>https://example.com/demo</url></scm>
+            </project>
+            """;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testValidRelease() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0"));
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), POM);
+        for (String file : List.of("demo-1.0.0.jar", "demo-1.0.0-sources.jar", "demo-1.0.0-javadoc.jar")) {
+            Files.writeString(gav.resolve(file), file);
+        }
+        sign(gav);
+
+        var report = validate(new BundleValidator.Options(2, List.of(), false));
+
+        assertThat(report.problems()).isEmpty();
+        assertThat(report.gavs()).isEqualTo(1);
+    }
+
+    @Test
+    void testReportsProblems() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0"));
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), POM.replace("<version>1.0.0</version>", "")
+                .replace("<scm><url>https://example.com/demo</url></scm>", ""));
+        Files.writeString(gav.resolve("demo-1.0.0.jar"), "jar");
+        Files.writeString(gav.resolve("other-1.0.0.txt"), "txt");
+        sign(gav);
+        Files.delete(gav.resolve("demo-1.0.0.jar.asc"));
+        Files.delete(gav.resolve("demo-1.0.0.jar.sha1"));
+
+        var report = validate(new BundleValidator.Options(2, List.of(), false));
+
+        assertThat(report.problems())
+                .extracting(BundleValidator.Problem::message)
+                .containsExactlyInAnyOrder(
+                        "missing signature demo-1.0.0.jar.asc",
+                        "missing checksum demo-1.0.0.jar.sha1",
+                        "file name does not start with demo-1.0.0",
+                        "missing <version>",
+                        "missing <scm><url>",
+                        "missing demo-1.0.0-sources.jar",
+                        "missing demo-1.0.0-javadoc.jar");
+        assertThat(report.format()).contains("com/example/demo/1.0.0", "demo-1.0.0.jar: missing signature");
+    }
+
+    @Test
+    void testGeneratedFilesAreNotRequired() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0"));
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), POM);
+
+        var report = validate(new BundleValidator.Options(2, List.of("md5", "sha1"), true));
+
+        assertThat(report.problems()).isEmpty();
+    }
+
+    @Test
+    void testInheritsElementsFromStagedParent() throws Exception {
+        var parent = Files.createDirectories(dir.resolve("com/example/parent/1.0.0"));
+        Files.writeString(parent.resolve("parent-1.0.0.pom"), POM.replace("demo", "parent"));
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0"));
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), childPom("parent"));
+
+        var report = validate(new BundleValidator.Options(2, List.of("md5", "sha1"), true));
+
+        assertThat(report.problems()).isEmpty();
+    }
+
+    @Test
+    void testReportsElementsMissingInStagedParent() throws Exception {
+        var parent = Files.createDirectories(dir.resolve("com/example/parent/1.0.0"));
+        Files.writeString(
+                parent.resolve("parent-1.0.0.pom"),
+                POM.replace("demo", "parent").replace("<url>https://example.com</url>", ""));
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0"));
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), childPom("parent"));
+
+        var report = validate(new BundleValidator.Options(2, List.of("md5", "sha1"), true));
+
+        assertThat(report.problems())
+                .extracting(problem -> problem.gav() + ": " + problem.message())
+                .containsExactlyInAnyOrder(
+                        "com/example/parent/1.0.0: missing <url>", "com/example/demo/1.0.0: missing <url>");
+    }
+
+    @Test
+    void testElementsOfParentNotStagedAreNotRequired() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0"));
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), childPom("released-parent"));
+
+        var report = validate(new BundleValidator.Options(2, List.of("md5", "sha1"), true));
+
+        assertThat(report.problems()).isEmpty();
+    }
+
+    /**
+     * @return a POM setting its name only, everything else comes from its {@code com.example} parent
+     */
+    static String childPom(String parentArtifactId) {
+        return """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <project xmlns="http://maven.apache.org/POM/4.0.0">
+                  <modelVersion>4.0.0</modelVersion>
+                  <parent>
+                    <groupId>com.example</groupId>
+                    <artifactId>%s</artifactId>
+                    <version>1.0.0</version>
+                  </parent>
+                  <artifactId>demo</artifactId>
+                  <name>demo</name>
+                </project>
+                """
+                .formatted(parentArtifactId);
+    }
+
+    BundleValidator.Report validate(BundleValidator.Options options) throws Exception {
+        return new BundleValidator(options).validate(BundlePlan.scan(List.of(dir), true));
+    }
+
+    static void sign(Path gav) throws Exception {
+        try (var files = Files.list(gav)) {
+            for (Path file : files.toList()) {
+                for (String extension : List.of("asc", "md5", "sha1")) {
+                    Files.writeString(file.resolveSibling(file.getFileName() + "." + extension), extension);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package io.github.danielliu1123.deployer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipInputStream;
+import org.bouncycastle.bcpg.ArmoredOutputStream;
+import org.bouncycastle.bcpg.HashAlgorithmTags;
+import org.bouncycastle.bcpg.PublicKeyAlgorithmTags;
+import org.bouncycastle.bcpg.PublicKeyPacket;
+import org.bouncycastle.bcpg.SymmetricKeyAlgorithmTags;
+import org.bouncycastle.crypto.generators.RSAKeyPairGenerator;
+import org.bouncycastle.crypto.params.RSAKeyGenerationParameters;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.PGPSignatureList;
+import org.bouncycastle.openpgp.PGPUtil;
+import org.bouncycastle.openpgp.bc.BcPGPObjectFactory;
+import org.bouncycastle.openpgp.operator.bc.BcPBESecretKeyEncryptorBuilder;
+import org.bouncycastle.openpgp.operator.bc.BcPGPContentSignerBuilder;
+import org.bouncycastle.openpgp.operator.bc.BcPGPContentVerifierBuilderProvider;
+import org.bouncycastle.openpgp.operator.bc.BcPGPDigestCalculatorProvider;
+import org.bouncycastle.openpgp.operator.bc.BcPGPKeyPair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BundleWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testGeneratesMissingChecksums() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0"));
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), "<project/>");
+        Files.writeString(gav.resolve("demo-1.0.0.pom.asc"), "signature");
+        Files.writeString(gav.resolve("demo-1.0.0.pom.md5"), "existing");
+        byte[] jar = new byte[100];
+        new Random(1).nextBytes(jar);
+        Files.write(gav.resolve("demo-1.0.0.jar"), jar);
+        // larger than the in-memory threshold, deflated while being written
+        byte[] big = "0123456789".repeat(500_000).getBytes(StandardCharsets.US_ASCII);
+        Files.write(gav.resolve("demo-1.0.0-big.txt"), big);
+
+        var entries = bundle(Set.of("md5", "sha1"), null);
+
+        assertThat(entries)
+                .containsOnlyKeys(
+                        "com/example/demo/1.0.0/demo-1.0.0.pom",
+                        "com/example/demo/1.0.0/demo-1.0.0.pom.asc",
+                        "com/example/demo/1.0.0/demo-1.0.0.pom.md5",
+                        "com/example/demo/1.0.0/demo-1.0.0.pom.sha1",
+                        "com/example/demo/1.0.0/demo-1.0.0.jar",
+                        "com/example/demo/1.0.0/demo-1.0.0.jar.md5",
+                        "com/example/demo/1.0.0/demo-1.0.0.jar.sha1",
+                        "com/example/demo/1.0.0/demo-1.0.0-big.txt",
+                        "com/example/demo/1.0.0/demo-1.0.0-big.txt.md5",
+                        "com/example/demo/1.0.0/demo-1.0.0-big.txt.sha1");
+        assertThat(entries.get("com/example/demo/1.0.0/demo-1.0.0.pom.md5")).isEqualTo("existing");
+        assertThat(entries.get("com/example/demo/1.0.0/demo-1.0.0.pom.sha1"))
+                .isEqualTo(hex("SHA-1", "<project/>".getBytes(StandardCharsets.UTF_8)));
+        assertThat(entries.get("com/example/demo/1.0.0/demo-1.0.0.jar.md5")).isEqualTo(hex("MD5", jar));
+        assertThat(entries.get("com/example/demo/1.0.0/demo-1.0.0-big.txt.sha1")).isEqualTo(hex("SHA-1", big));
+    }
+
+    @Test
+    void testLargeStoredFileIsReadOnce() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0"));
+        byte[] jar = new byte[(int) BundleWriter.IN_MEMORY_THRESHOLD + 12345];
+        new Random(2).nextBytes(jar);
+        Files.write(gav.resolve("demo-1.0.0.jar"), jar);
+        var out = new ByteArrayOutputStream();
+
+        var result = new BundleWriter(options(Set.of("sha1"), null))
+                .write(BundlePlan.scan(List.of(dir), true), out);
+
+        // CRC and digests computed while writing, the uncompressed deflate blocks only add their headers
+        assertThat(result.bytesOut()).isLessThan(jar.length + jar.length / 1000);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (var zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        assertThat(entries.get("com/example/demo/1.0.0/demo-1.0.0.jar")).isEqualTo(jar);
+        assertThat(new String(entries.get("com/example/demo/1.0.0/demo-1.0.0.jar.sha1"), StandardCharsets.US_ASCII))
+                .isEqualTo(hex("SHA-1", jar));
+    }
+
+    @Test
+    void testNoChecksumsByDefault() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0"));
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), "<project/>");
+
+        assertThat(bundle(Set.of(), null)).containsOnlyKeys("com/example/demo/1.0.0/demo-1.0.0.pom");
+    }
+
+    @Test
+    void testSignsUnsignedFiles() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0"));
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), "<project/>");
+        Files.writeString(gav.resolve("demo-1.0.0.pom.asc"), "existing");
+        byte[] jar = new byte[100];
+        new Random(1).nextBytes(jar);
+        Files.write(gav.resolve("demo-1.0.0.jar"), jar);
+        byte[] big = "0123456789".repeat(500_000).getBytes(StandardCharsets.US_ASCII);
+        Files.write(gav.resolve("demo-1.0.0-big.txt"), big);
+        var key = generateKey("secret");
+
+        var entries = bundle(Set.of("sha1"), Signer.of(armor(key), "secret"));
+
+        assertThat(entries.get("com/example/demo/1.0.0/demo-1.0.0.pom.asc")).isEqualTo("existing");
+        assertThat(entries).doesNotContainKeys("com/example/demo/1.0.0/demo-1.0.0.jar.sha1.asc");
+        assertThat(verify(key, entries.get("com/example/demo/1.0.0/demo-1.0.0.jar.asc"), jar))
+                .isTrue();
+        assertThat(verify(key, entries.get("com/example/demo/1.0.0/demo-1.0.0-big.txt.asc"), big))
+                .isTrue();
+        assertThat(verify(key, entries.get("com/example/demo/1.0.0/demo-1.0.0-big.txt.asc"), jar))
+                .isFalse();
+    }
+
+    @Test
+    void testWrongSigningPassword() throws Exception {
+        var key = armor(generateKey("secret"));
+
+        assertThatThrownBy(() -> Signer.of(key, "wrong"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("signing key");
+    }
+
+    @Test
+    void testSigningKeyFingerprint() throws Exception {
+        var key = generateKey("secret");
+
+        // read without the password, the fingerprint is a task input
+        assertThat(Signer.fingerprintOf(armor(key)))
+                .isEqualTo(HexFormat.of().withUpperCase().formatHex(key.getPublicKey().getFingerprint()))
+                .isNotEqualTo(Signer.fingerprintOf(armor(generateKey("secret"))));
+        assertThatThrownBy(() -> Signer.fingerprintOf("not a key"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("signing key");
+    }
+
+    @Test
+    void testCopiesEntriesOfFragments() throws Exception {
+        var core = Files.createDirectories(dir.resolve("core/com/example/core/1.0.0"));
+        Files.writeString(core.resolve("core-1.0.0.pom"), "<project>core</project>".repeat(100));
+        var web = Files.createDirectories(dir.resolve("web/com/example/web/1.0.0"));
+        Files.writeString(web.resolve("web-1.0.0.pom"), "<project>web</project>".repeat(100));
+        var writer = new BundleWriter(options(Set.of("sha1"), null));
+        var fragment = dir.resolve("core-bundle.zip");
+        try (var out = Files.newOutputStream(fragment)) {
+            writer.write(BundlePlan.scan(List.of(dir.resolve("core")), true), out);
+        }
+
+        var sources = BundlePlan.scan(List.of(dir.resolve("core"), dir.resolve("web")), true);
+        var merged = new ByteArrayOutputStream();
+        BundleWriter.Result result;
+        try (var reader = ZipReader.open(fragment)) {
+            result = writer.write(sources, merged, new BundleWriter.Previous(List.of(), Set.of(), List.of(reader)));
+        }
+        var fresh = new ByteArrayOutputStream();
+        writer.write(sources, fresh);
+
+        assertThat(result.reused()).isEqualTo(1);
+        assertThat(merged.toByteArray()).isEqualTo(fresh.toByteArray());
+    }
+
+    @Test
+    void testReproducibleBundleIsByteIdentical() throws Exception {
+        stageRelease();
+        var first = new ByteArrayOutputStream();
+        new BundleWriter(options(1, true, Set.of("md5", "sha1"), null))
+                .write(BundlePlan.scan(List.of(dir), true), first);
+
+        touchAll(LocalDateTime.of(2021, 3, 4, 5, 6, 8));
+        var second = new ByteArrayOutputStream();
+        new BundleWriter(options(8, true, Set.of("md5", "sha1"), null))
+                .write(BundlePlan.scan(List.of(dir), true), second);
+
+        assertThat(second.toByteArray()).isEqualTo(first.toByteArray());
+        assertThat(hex("SHA-256", second.toByteArray())).isEqualTo(hex("SHA-256", first.toByteArray()));
+    }
+
+    @Test
+    void testNonReproducibleBundleKeepsTimestamps() throws Exception {
+        stageRelease();
+        var modified = LocalDateTime.of(2024, 5, 6, 7, 8, 10);
+        touchAll(modified);
+        var out = new ByteArrayOutputStream();
+        new BundleWriter(options(2, false, Set.of(), null)).write(BundlePlan.scan(List.of(dir), true), out);
+
+        long millis = modified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        try (var zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                assertThat(entry.getTime()).isEqualTo(millis);
+            }
+        }
+    }
+
+    void stageRelease() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0"));
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), "<project/>");
+        byte[] jar = new byte[10_000];
+        new Random(3).nextBytes(jar);
+        Files.write(gav.resolve("demo-1.0.0.jar"), jar);
+        // larger than the in-memory threshold, deflated while being written
+        Files.writeString(gav.resolve("demo-1.0.0-big.txt"), "0123456789".repeat(500_000));
+    }
+
+    void touchAll(LocalDateTime time) throws Exception {
+        var fileTime = FileTime.from(time.atZone(ZoneId.systemDefault()).toInstant());
+        for (var source : BundlePlan.scan(List.of(dir), true)) {
+            Files.setLastModifiedTime(source.file(), fileTime);
+        }
+    }
+
+    @Test
+    void testNormalizeChecksums() {
+        assertThat(Checksums.normalize(List.of("SHA512", "md5", "sha1"))).containsExactly("md5", "sha1", "sha512");
+        assertThatThrownBy(() -> Checksums.normalize(List.of("crc32")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("crc32");
+    }
+
+    Map<String, String> bundle(Set<String> checksums, Signer signer) throws Exception {
+        var out = new ByteArrayOutputStream();
+        new BundleWriter(options(checksums, signer)).write(BundlePlan.scan(List.of(dir), true), out);
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (var zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.ISO_8859_1));
+            }
+        }
+        return entries;
+    }
+
+    static BundleWriter.Options options(Set<String> checksums, Signer signer) {
+        return options(2, true, checksums, signer);
+    }
+
+    static BundleWriter.Options options(int threads, boolean reproducible, Set<String> checksums, Signer signer) {
+        return new BundleWriter.Options(
+                threads,
+                Deflater.DEFAULT_COMPRESSION,
+                Set.of("jar"),
+                Set.of("asc", "md5", "sha1"),
+                Deflater.BEST_SPEED,
+                reproducible,
+                Checksums.normalize(checksums),
+                signer);
+    }
+
+    static String hex(String algorithm, byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance(algorithm).digest(data));
+    }
+
+    static PGPSecretKey generateKey(String password) throws Exception {
+        var generator = new RSAKeyPairGenerator();
+        generator.init(new RSAKeyGenerationParameters(BigInteger.valueOf(0x10001), new SecureRandom(), 2048, 12));
+        var keyPair = new BcPGPKeyPair(
+                PublicKeyPacket.VERSION_4, PublicKeyAlgorithmTags.RSA_GENERAL, generator.generateKeyPair(), new Date());
+        var sha1 = new BcPGPDigestCalculatorProvider().get(HashAlgorithmTags.SHA1);
+        return new PGPSecretKey(
+                PGPSignature.DEFAULT_CERTIFICATION,
+                keyPair,
+                "Demo <demo@example.com>",
+                sha1,
+                null,
+                null,
+                new BcPGPContentSignerBuilder(PublicKeyAlgorithmTags.RSA_GENERAL, HashAlgorithmTags.SHA256),
+                new BcPBESecretKeyEncryptorBuilder(SymmetricKeyAlgorithmTags.AES_256, sha1)
+                        .build(password.toCharArray()));
+    }
+
+    static String armor(PGPSecretKey key) throws Exception {
+        var out = new ByteArrayOutputStream();
+        try (var armored = new ArmoredOutputStream(out)) {
+            key.encode(armored);
+        }
+        return out.toString(StandardCharsets.US_ASCII);
+    }
+
+    static boolean verify(PGPSecretKey key, String armoredSignature, byte[] data) throws Exception {
+        var in = PGPUtil.getDecoderStream(
+                new ByteArrayInputStream(armoredSignature.getBytes(StandardCharsets.US_ASCII)));
+        var signature = ((PGPSignatureList) new BcPGPObjectFactory(in).nextObject()).get(0);
+        signature.init(new BcPGPContentVerifierBuilderProvider(), key.getPublicKey());
+        signature.update(data);
+        return signature.verify();
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.danielliu1123.deployer;
+
+import static io.github.danielliu1123.deployer.PublishingType.AUTOMATIC;
+import static io.github.danielliu1123.deployer.PublishingType.USER_MANAGED;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DeploymentStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testSaveAndLoad() throws Exception {
+        var store = new DeploymentStore(dir.resolve("deployer/deployments.properties"));
+        assertThat(store.load()).isEmpty();
+
+        store.save(new DeploymentStore.Entry("b", "b-bundle.zip", "hash-b", AUTOMATIC, DeploymentState.PENDING, 2));
+        store.save(new DeploymentStore.Entry("a", "a-bundle.zip", null, USER_MANAGED, DeploymentState.PENDING, 1));
+
+        assertThat(new DeploymentStore(store.getFile()).load())
+                .containsExactly(
+                        new DeploymentStore.Entry("a", "a-bundle.zip", null, USER_MANAGED, DeploymentState.PENDING, 1),
+                        new DeploymentStore.Entry(
+                                "b", "b-bundle.zip", "hash-b", AUTOMATIC, DeploymentState.PENDING, 2));
+    }
+
+    @Test
+    void testFindReusable() throws Exception {
+        var store = new DeploymentStore(dir.resolve("deployments.properties"));
+        store.save(new DeploymentStore.Entry("1", "bundle.zip", "hash", AUTOMATIC, DeploymentState.PENDING, 1));
+
+        assertThat(store.findReusable("hash", AUTOMATIC))
+                .map(DeploymentStore.Entry::deploymentId)
+                .hasValue("1");
+        assertThat(store.findReusable("other", AUTOMATIC)).isEmpty();
+        // a USER_MANAGED deploy must not wait for, nor publish, an AUTOMATIC deployment
+        assertThat(store.findReusable("hash", USER_MANAGED)).isEmpty();
+
+        store.updateState("1", DeploymentState.VALIDATED);
+        assertThat(store.findReusable("hash", AUTOMATIC))
+                .map(DeploymentStore.Entry::state)
+                .hasValue(DeploymentState.VALIDATED);
+
+        store.updateState("1", DeploymentState.FAILED);
+        assertThat(store.findReusable("hash", AUTOMATIC)).isEmpty();
+    }
+
+    @Test
+    void testUserManagedDeploymentIsSettledOnceValidated() throws Exception {
+        var store = new DeploymentStore(dir.resolve("deployments.properties"));
+        store.save(new DeploymentStore.Entry("1", "bundle.zip", "hash", USER_MANAGED, DeploymentState.VALIDATED, 1));
+        store.save(new DeploymentStore.Entry("2", "other.zip", "other", AUTOMATIC, DeploymentState.VALIDATED, 2));
+
+        assertThat(store.load()).extracting(DeploymentStore.Entry::isLive).containsExactly(false, true);
+        // waits to be published manually, a new USER_MANAGED deploy of the same bundle does not upload it again
+        assertThat(store.findReusable("hash", USER_MANAGED))
+                .map(DeploymentStore.Entry::deploymentId)
+                .hasValue("1");
+        assertThat(store.findReusable("hash", AUTOMATIC)).isEmpty();
+    }
+
+    @Test
+    void testEntriesWithoutPublishingType() throws Exception {
+        var file = dir.resolve("deployments.properties");
+        Files.writeString(file, """
+                1.bundle=bundle.zip
+                1.sha256=hash
+                1.state=VALIDATED
+                1.uploadedAt=1
+                """);
+
+        var entry = new DeploymentStore(file).load().get(0);
+
+        assertThat(entry.publishingType()).isNull();
+        // recorded before the type was, may wait for manual publishing forever
+        assertThat(entry.isLive()).isFalse();
+        assertThat(new DeploymentStore(file).findReusable("hash", AUTOMATIC)).isEmpty();
+    }
+
+    @Test
+    void testNewDeploymentReplacesOlderOneOfSameBundle() throws Exception {
+        var store = new DeploymentStore(dir.resolve("deployments.properties"));
+        store.save(new DeploymentStore.Entry("1", "bundle.zip", "hash", AUTOMATIC, DeploymentState.FAILED, 1));
+        store.save(new DeploymentStore.Entry("2", "bundle.zip", "hash", AUTOMATIC, DeploymentState.PENDING, 2));
+
+        assertThat(store.load()).extracting(DeploymentStore.Entry::deploymentId).containsExactly("2");
+    }
+
+    @Test
+    void testUnknownDeploymentIsIgnored() throws Exception {
+        var store = new DeploymentStore(dir.resolve("deployments.properties"));
+        store.updateState("unknown", DeploymentState.PUBLISHED);
+
+        assertThat(store.load()).isEmpty();
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.danielliu1123.deployer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DeploymentWatcherTest {
+
+    HttpServer server;
+    PublisherClient client;
+    Map<String, List<String>> states = new ConcurrentHashMap<>();
+    Map<String, AtomicInteger> polls = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // each deployment walks through its states, one per status check, and stays in the last one
+        server.createContext("/api/v1/publisher/status", exchange -> {
+            var id = exchange.getRequestURI().getQuery().substring("id=".length());
+            var sequence = states.get(id);
+            int poll = polls.computeIfAbsent(id, k -> new AtomicInteger()).getAndIncrement();
+            var state = sequence.get(Math.min(poll, sequence.size() - 1));
+            PublisherClientTest.respond(
+                    exchange, 200, "{\"deploymentId\":\"%s\",\"deploymentState\":\"%s\"}".formatted(id, state));
+        });
+        server.start();
+        var settings = new PublisherClient.Settings(
+                Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5), 0, Duration.ofMillis(10));
+        client = new PublisherClient(
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort()),
+                "user",
+                "pass",
+                settings,
+                Logging.getLogger(DeploymentWatcherTest.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testWatchesSeveralDeployments() throws Exception {
+        states.put("a", List.of("PENDING", "VALIDATING", "VALIDATED", "PUBLISHING", "PUBLISHED"));
+        states.put("b", List.of("VALIDATING", "PUBLISHED"));
+        var a = new Deployment("a-bundle.zip", "a", PublishingType.AUTOMATIC);
+        var b = new Deployment("b-bundle.zip", "b", PublishingType.AUTOMATIC);
+
+        var result = watcher(Duration.ofSeconds(30)).await(List.of(a, b));
+
+        assertThat(result)
+                .containsExactly(Map.entry(a, DeploymentState.PUBLISHED), Map.entry(b, DeploymentState.PUBLISHED));
+        assertThat(polls.get("a")).hasValue(5);
+        assertThat(polls.get("b")).hasValue(2);
+    }
+
+    @Test
+    void testReportsFailedDeployments() {
+        states.put("ok", List.of("VALIDATING", "PUBLISHED"));
+        states.put("ko", List.of("VALIDATING", "FAILED"));
+
+        assertThatThrownBy(() -> watcher(Duration.ofSeconds(30))
+                        .await(List.of(
+                                new Deployment("ok.zip", "ok", PublishingType.AUTOMATIC),
+                                new Deployment("ko.zip", "ko", PublishingType.AUTOMATIC))))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageStartingWith("1 of 2 deployments were not published")
+                .hasMessageContaining("ko.zip (FAILED");
+    }
+
+    @Test
+    void testUserManagedDeploymentIsDoneOnceValidated() throws Exception {
+        states.put("manual", List.of("VALIDATING", "VALIDATED"));
+        var manual = new Deployment("manual.zip", "manual", PublishingType.USER_MANAGED);
+
+        // would time out waiting for PUBLISHED
+        var result = watcher(Duration.ofSeconds(5)).await(List.of(manual));
+
+        assertThat(result).containsEntry(manual, DeploymentState.VALIDATED);
+        assertThat(polls.get("manual")).hasValue(2);
+    }
+
+    @Test
+    void testTimesOut() {
+        states.put("slow", List.of("PUBLISHING"));
+        var slow = new Deployment("slow.zip", "slow", PublishingType.AUTOMATIC);
+
+        assertThatThrownBy(() -> watcher(Duration.ofMillis(200)).await(List.of(slow)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("slow.zip (PUBLISHING)");
+    }
+
+    @Test
+    void testInterval() {
+        var base = Duration.ofSeconds(5);
+
+        assertThat(DeploymentWatcher.interval(DeploymentState.VALIDATING, 0, base))
+                .isEqualTo(Duration.ofSeconds(5));
+        assertThat(DeploymentWatcher.interval(DeploymentState.VALIDATING, 100, base))
+                .isEqualTo(Duration.ofSeconds(20));
+        assertThat(DeploymentWatcher.interval(DeploymentState.PUBLISHING, 0, base))
+                .isEqualTo(Duration.ofSeconds(20));
+        assertThat(DeploymentWatcher.interval(DeploymentState.PUBLISHING, 100, base))
+                .isEqualTo(Duration.ofSeconds(60));
+    }
+
+    @Test
+    void testParseState() {
+        assertThat(DeploymentWatcher.parseState("{\"deploymentState\": \"VALIDATED\"}"))
+                .isEqualTo(DeploymentState.VALIDATED);
+        assertThat(DeploymentWatcher.parseState("{\"deploymentState\": \"SOMETHING_NEW\"}"))
+                .isEqualTo(DeploymentState.UNRECOGNIZED);
+        assertThat(DeploymentWatcher.parseState("{}")).isEqualTo(DeploymentState.UNRECOGNIZED);
+    }
+
+    DeploymentWatcher watcher(Duration timeout) {
+        var settings = new DeploymentWatcher.Settings(Duration.ofMillis(10), timeout);
+        return new DeploymentWatcher(client, settings, Logging.getLogger(DeploymentWatcherTest.class));
+    }
+}
@@ -0,0 +1,256 @@
+package io.github.danielliu1123.deployer;
+
+import static io.github.danielliu1123.deployer.PublisherClientTest.respond;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs {@link MirrorDeployer} against a local stand-in of a Maven repository, a directory and in-memory repositories.
+ */
+class MirrorDeployerTest {
+
+    static final String GAV = "com/example/demo/1.0.0/";
+
+    @TempDir
+    Path dir;
+
+    HttpServer server;
+    Map<String, String> files = new ConcurrentHashMap<>();
+    Set<String> forbidden = ConcurrentHashMap.newKeySet();
+    PublisherClient.Settings settings = new PublisherClient.Settings(
+            Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5), 0, Duration.ofMillis(10));
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/repository/", exchange -> {
+            var path = exchange.getRequestURI().getPath().substring("/repository/".length());
+            if (exchange.getRequestMethod().equals("PUT")) {
+                var body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                if (forbidden.contains(path)) {
+                    respond(exchange, 403, "forbidden");
+                    return;
+                }
+                files.put(path, body);
+                respond(exchange, 201, "");
+            } else if (files.containsKey(path)) {
+                respond(exchange, 200, files.get(path));
+            } else {
+                respond(exchange, 404, "not found");
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testDeploysToHttpAndFileRepositories() throws Exception {
+        files.put("com/example/demo/maven-metadata.xml", """
+                <metadata><versioning><versions><version>0.9.0</version></versions></versioning></metadata>
+                """);
+        var gav = Files.createDirectories(dir.resolve("staged/com/example/demo/1.0.0"));
+        Files.writeString(gav.resolve("demo-1.0.0.jar"), "jar");
+        Files.writeString(gav.resolve("demo-1.0.0.jar.sha1"), "staged sha1");
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), "<project/>");
+        Files.writeString(gav.resolve("demo-1.0.0.pom.asc"), "signature");
+        Files.writeString(gav.resolve("maven-metadata.xml"), "<metadata/>");
+        var local = dir.resolve("local");
+
+        var results = deploy(List.of(http("nexus"), file("local", local)));
+
+        assertThat(results).extracting(MirrorDeployer.Result::name).containsExactly("nexus", "local");
+        assertThat(results).allSatisfy(result -> {
+            assertThat(result.failed()).isFalse();
+            assertThat(result.files()).isEqualTo(4);
+            assertThat(result.reread()).isZero();
+        });
+
+        assertThat(files.get(GAV + "demo-1.0.0.jar")).isEqualTo("jar");
+        assertThat(files.get(GAV + "demo-1.0.0.jar.sha1")).isEqualTo("staged sha1");
+        assertThat(files.get(GAV + "demo-1.0.0.jar.md5"))
+                .isEqualTo(BundleWriterTest.hex("MD5", "jar".getBytes(StandardCharsets.UTF_8)));
+        assertThat(files.get(GAV + "demo-1.0.0.pom.sha1"))
+                .isEqualTo(BundleWriterTest.hex("SHA-1", "<project/>".getBytes(StandardCharsets.UTF_8)));
+        assertThat(files).doesNotContainKey(GAV + "maven-metadata.xml");
+        assertThat(files).doesNotContainKey(GAV + "demo-1.0.0.pom.asc.md5");
+        assertThat(files.get("com/example/demo/maven-metadata.xml"))
+                .contains("<latest>1.0.0</latest>", "<version>0.9.0</version>", "<version>1.0.0</version>");
+        assertThat(files).containsKey("com/example/demo/maven-metadata.xml.sha1");
+
+        assertThat(Files.readString(local.resolve(GAV + "demo-1.0.0.jar"))).isEqualTo("jar");
+        assertThat(Files.readString(local.resolve(GAV + "demo-1.0.0.jar.md5")))
+                .isEqualTo(BundleWriterTest.hex("MD5", "jar".getBytes(StandardCharsets.UTF_8)));
+        assertThat(Files.readString(local.resolve(GAV + "demo-1.0.0.pom.asc"))).isEqualTo("signature");
+        assertThat(Files.readString(local.resolve("com/example/demo/maven-metadata.xml")))
+                .contains("<latest>1.0.0</latest>");
+        try (var paths = Files.walk(local)) {
+            assertThat(paths.filter(p -> p.toString().endsWith(".tmp")).toList()).isEmpty();
+        }
+    }
+
+    @Test
+    void testFailingMirrorDoesNotStopOthers() throws Exception {
+        forbidden.add(GAV + "demo-1.0.0.jar");
+        var gav = Files.createDirectories(dir.resolve("staged/com/example/demo/1.0.0"));
+        Files.writeString(gav.resolve("demo-1.0.0.jar"), "jar");
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), "<project/>");
+        var local = dir.resolve("local");
+
+        var results = deploy(List.of(http("nexus"), file("local", local)));
+
+        assertThat(results.get(0).failed()).isTrue();
+        assertThat(results.get(0).describeFailures()).isEqualTo("[" + GAV + "demo-1.0.0.jar (status 403)]");
+        // metadata last, a release is not visible while files are missing
+        assertThat(files).doesNotContainKey("com/example/demo/maven-metadata.xml");
+        assertThat(results.get(1).failed()).isFalse();
+        assertThat(Files.readString(local.resolve(GAV + "demo-1.0.0.jar"))).isEqualTo("jar");
+        assertThat(Files.exists(local.resolve("com/example/demo/maven-metadata.xml"))).isTrue();
+    }
+
+    @Test
+    void testSlowMirrorReadsFromDiskInsteadOfStallingOthers() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("staged/com/example/demo/1.0.0"));
+        var content = new byte[(int) MirrorDeployer.BUFFER_BYTES + 8 * MirrorDeployer.CHUNK_SIZE + 123];
+        new Random(20261017L).nextBytes(content);
+        Files.write(gav.resolve("demo-1.0.0.jar"), content);
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), "<project/>");
+
+        var fastDone = new CountDownLatch(1);
+        var fast = new MemoryRepository("fast", null, fastDone);
+        // reads one chunk, then waits until the fast mirror has the whole file
+        var slow = new MemoryRepository("slow", fastDone, null);
+
+        var results = new MirrorDeployer(
+                        List.of(fast, slow),
+                        new MirrorDeployer.Options(1, Set.of(), null),
+                        Logging.getLogger(MirrorDeployerTest.class))
+                .deploy(BundlePlan.scan(List.of(dir.resolve("staged")), true), Instant.now());
+
+        assertThat(results).noneMatch(MirrorDeployer.Result::failed);
+        assertThat(results.get(0).reread()).isZero();
+        // the jar, and the pom if read before the slow mirror caught up
+        assertThat(results.get(1).reread()).isBetween(1, 2);
+        assertThat(fast.files.get(GAV + "demo-1.0.0.jar")).isEqualTo(content);
+        assertThat(slow.files.get(GAV + "demo-1.0.0.jar")).isEqualTo(content);
+        assertThat(new String(slow.files.get(GAV + "demo-1.0.0.jar.sha1"), StandardCharsets.US_ASCII))
+                .isEqualTo(BundleWriterTest.hex("SHA-1", content));
+    }
+
+    @Test
+    void testRejectsSnapshotsAndUnknownSchemes() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("staged/com/example/demo/1.0.0-SNAPSHOT"));
+        Files.writeString(gav.resolve("demo-1.0.0-SNAPSHOT.jar"), "jar");
+
+        assertThatThrownBy(() -> deploy(List.of(file("local", dir.resolve("local")))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Snapshots are not deployed to mirrors");
+        assertThatThrownBy(() -> MirrorDeployer.repositoryOf(
+                        new MirrorDeployer.Target("ftp", "ftp://example.com/repo", null, null, 1),
+                        settings,
+                        Logging.getLogger(MirrorDeployerTest.class)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("http(s): or file:");
+    }
+
+    private List<MirrorDeployer.Result> deploy(List<MirrorDeployer.Repository> repositories) throws Exception {
+        return new MirrorDeployer(
+                        repositories,
+                        new MirrorDeployer.Options(2, Set.of(), null),
+                        Logging.getLogger(MirrorDeployerTest.class))
+                .deploy(BundlePlan.scan(List.of(dir.resolve("staged")), true), Instant.now());
+    }
+
+    private MirrorDeployer.Repository http(String name) {
+        return MirrorDeployer.repositoryOf(
+                new MirrorDeployer.Target(
+                        name,
+                        "http://127.0.0.1:" + server.getAddress().getPort() + "/repository",
+                        "user",
+                        "pass",
+                        2),
+                settings,
+                Logging.getLogger(MirrorDeployerTest.class));
+    }
+
+    private MirrorDeployer.Repository file(String name, Path root) {
+        return MirrorDeployer.repositoryOf(
+                new MirrorDeployer.Target(name, root.toUri().toString(), null, null, 2),
+                settings,
+                Logging.getLogger(MirrorDeployerTest.class));
+    }
+
+    /**
+     * Keeps the files in memory.
+     *
+     * @param before if set, the first chunk of each file is read, then the upload waits for it
+     * @param after  counted down once a file larger than a chunk is uploaded
+     */
+    record MemoryRepository(String name, CountDownLatch before, CountDownLatch after, Map<String, byte[]> files)
+            implements MirrorDeployer.Repository {
+
+        MemoryRepository(String name, CountDownLatch before, CountDownLatch after) {
+            this(name, before, after, new ConcurrentHashMap<>());
+        }
+
+        @Override
+        public int concurrency() {
+            return 2;
+        }
+
+        @Override
+        public byte[] get(String path) {
+            return files.get(path);
+        }
+
+        @Override
+        public void put(String path, long size, Supplier<InputStream> content)
+                throws IOException, InterruptedException {
+            try (var in = content.get()) {
+                byte[] data;
+                if (before != null && size > MirrorDeployer.CHUNK_SIZE) {
+                    var head = in.readNBytes(MirrorDeployer.CHUNK_SIZE);
+                    if (!before.await(30, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("The other mirror is stalled");
+                    }
+                    var tail = in.readAllBytes();
+                    data = Arrays.copyOf(head, head.length + tail.length);
+                    System.arraycopy(tail, 0, data, head.length, tail.length);
+                } else {
+                    data = in.readAllBytes();
+                }
+                files.put(path, data);
+            }
+            if (after != null && size > MirrorDeployer.CHUNK_SIZE) {
+                after.countDown();
+            }
+        }
+    }
+}
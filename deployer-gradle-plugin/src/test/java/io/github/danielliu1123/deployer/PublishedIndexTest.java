@@ -0,0 +1,116 @@
+package io.github.danielliu1123.deployer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs {@link PublishedIndex} against a local stand-in of a Maven repository.
+ */
+class PublishedIndexTest {
+
+    static final long HOUR = Duration.ofHours(1).toMillis();
+
+    @TempDir
+    Path dir;
+
+    HttpServer server;
+    Set<String> existing = ConcurrentHashMap.newKeySet();
+    Queue<String> requests = new ConcurrentLinkedQueue<>();
+    PublishedIndex index;
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/maven2/", exchange -> {
+            var path = exchange.getRequestURI().getPath().substring("/maven2/".length());
+            requests.add(exchange.getRequestMethod() + " " + path);
+            int status = path.contains("broken") ? 500 : existing.contains(path) ? 200 : 404;
+            // no body for HEAD
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+        var settings = new PublisherClient.Settings(
+                Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5), 0, Duration.ofMillis(10));
+        var client = new RepositoryClient(
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/maven2"),
+                null,
+                null,
+                settings,
+                Logging.getLogger(PublishedIndexTest.class));
+        index = new PublishedIndex(
+                client,
+                dir.resolve("cache.properties"),
+                new PublishedIndex.Options(4, Duration.ofHours(1)),
+                Logging.getLogger(PublishedIndexTest.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testFindsPublishedGavs() throws Exception {
+        existing.add("com/example/core/1.0.0/core-1.0.0.pom");
+        existing.add("com/example/web/1.0.0/web-1.0.0.pom");
+
+        var result = index.findPublished(
+                List.of("com/example/core/1.0.0", "com/example/web/1.0.0", "com/example/new/1.0.0"), 0);
+
+        assertThat(result.published()).containsExactly("com/example/core/1.0.0", "com/example/web/1.0.0");
+        assertThat(result.gavs()).isEqualTo(3);
+        assertThat(result.checked()).isEqualTo(3);
+        assertThat(requests).allMatch(request -> request.startsWith("HEAD "));
+    }
+
+    @Test
+    void testCachesResults() throws Exception {
+        existing.add("com/example/core/1.0.0/core-1.0.0.pom");
+        var gavs = List.of("com/example/core/1.0.0", "com/example/new/1.0.0");
+        index.findPublished(gavs, 0);
+        requests.clear();
+
+        var cached = index.findPublished(gavs, HOUR / 2);
+        assertThat(cached.published()).containsExactly("com/example/core/1.0.0");
+        assertThat(cached.checked()).isZero();
+        assertThat(requests).isEmpty();
+
+        // published in the meantime, found once the missing entry expired
+        existing.add("com/example/new/1.0.0/new-1.0.0.pom");
+        var expired = index.findPublished(gavs, HOUR);
+        assertThat(expired.published()).containsExactly("com/example/core/1.0.0", "com/example/new/1.0.0");
+        assertThat(expired.checked()).isEqualTo(1);
+        assertThat(requests).containsExactly("HEAD com/example/new/1.0.0/new-1.0.0.pom");
+    }
+
+    @Test
+    void testFailedCheckIsNotCached() throws Exception {
+        var gavs = List.of("com/example/broken/1.0.0");
+
+        assertThat(index.findPublished(gavs, 0).published()).isEmpty();
+        assertThat(index.findPublished(gavs, 1).checked()).isEqualTo(1);
+    }
+
+    @Test
+    void testPomPath() {
+        assertThat(PublishedIndex.pomPathOf("com/example/demo/1.0.0"))
+                .isEqualTo("com/example/demo/1.0.0/demo-1.0.0.pom");
+    }
+}
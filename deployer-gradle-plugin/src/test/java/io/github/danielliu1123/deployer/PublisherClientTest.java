@@ -0,0 +1,224 @@
+package io.github.danielliu1123.deployer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs {@link PublisherClient} against a local stand-in of the Publisher API.
+ */
+class PublisherClientTest {
+
+    HttpServer server;
+    PublisherClient client;
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+        var settings = new PublisherClient.Settings(
+                Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5), 3, Duration.ofMillis(10));
+        client = new PublisherClient(
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort()),
+                "user",
+                "pass",
+                settings,
+                Logging.getLogger(PublisherClientTest.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testUploadRetriesAndResendsBody() throws Exception {
+        var requests = new AtomicInteger();
+        List<String> bodies = new CopyOnWriteArrayList<>();
+        List<String> authorizations = new CopyOnWriteArrayList<>();
+        server.createContext("/api/v1/publisher/upload", exchange -> {
+            bodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            int status = requests.incrementAndGet() < 3 ? 503 : 201;
+            if (status == 503) {
+                exchange.getResponseHeaders().set("Retry-After", "0");
+            }
+            respond(exchange, status, status == 201 ? "deployment-id" : "unavailable");
+        });
+
+        var response = client.upload(
+                "demo-bundle.zip",
+                () -> new ByteArrayInputStream("bundle".getBytes(StandardCharsets.UTF_8)),
+                6,
+                PublishingType.AUTOMATIC);
+
+        assertThat(response.statusCode()).isEqualTo(201);
+        assertThat(response.body()).isEqualTo("deployment-id");
+        assertThat(requests).hasValue(3);
+        assertThat(bodies).hasSize(3).allSatisfy(body -> assertThat(body)
+                .contains("filename=demo-bundle.zip")
+                .contains("bundle"));
+        assertThat(authorizations).containsOnly("Bearer dXNlcjpwYXNz");
+    }
+
+    @Test
+    void testUploadDoesNotRetryClientErrors() throws Exception {
+        var requests = new AtomicInteger();
+        server.createContext("/api/v1/publisher/upload", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            requests.incrementAndGet();
+            respond(exchange, 400, "bad bundle");
+        });
+
+        var response = client.upload(
+                "demo-bundle.zip", () -> new ByteArrayInputStream(new byte[0]), 0, PublishingType.USER_MANAGED);
+
+        assertThat(response.statusCode()).isEqualTo(400);
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    void testUploadDoesNotRetryFailuresAfterReceivingBundle() throws Exception {
+        var requests = new AtomicInteger();
+        List<Integer> statuses = List.of(502, 503, 500);
+        server.createContext("/api/v1/publisher/upload", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            // no Retry-After, the bundle may have been received
+            respond(exchange, statuses.get(requests.getAndIncrement() % statuses.size()), "error");
+        });
+
+        for (int status : statuses) {
+            var response = client.upload(
+                    "demo-bundle.zip", () -> new ByteArrayInputStream(new byte[0]), 0, PublishingType.AUTOMATIC);
+
+            assertThat(response.statusCode()).isEqualTo(status);
+        }
+        assertThat(requests).hasValue(3);
+    }
+
+    @Test
+    void testUploadDoesNotRetryTimeouts() throws Exception {
+        var requests = new AtomicInteger();
+        server.createContext("/api/v1/publisher/upload", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 201, "deployment-id");
+        });
+        var settings = new PublisherClient.Settings(
+                Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofMillis(200), 3, Duration.ofMillis(10));
+        var impatient = new PublisherClient(
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort()),
+                "user",
+                "pass",
+                settings,
+                Logging.getLogger(PublisherClientTest.class));
+
+        assertThatThrownBy(() -> impatient.upload(
+                        "demo-bundle.zip", () -> new ByteArrayInputStream(new byte[0]), 0, PublishingType.AUTOMATIC))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("not retried")
+                .hasCauseInstanceOf(HttpTimeoutException.class);
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    void testUploadRetriesConnectionFailures() throws Exception {
+        int port;
+        try (var socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        var unreachable = new PublisherClient(
+                URI.create("http://127.0.0.1:" + port),
+                "user",
+                "pass",
+                new PublisherClient.Settings(
+                        Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5), 2, Duration.ofMillis(10)),
+                Logging.getLogger(PublisherClientTest.class));
+
+        // retried, then the connection failure itself is thrown
+        assertThatThrownBy(() -> unreachable.upload(
+                        "demo-bundle.zip", () -> new ByteArrayInputStream(new byte[0]), 0, PublishingType.AUTOMATIC))
+                .isInstanceOf(ConnectException.class);
+    }
+
+    @Test
+    void testStatusGivesUpAfterMaxRetries() throws Exception {
+        var requests = new AtomicInteger();
+        server.createContext("/api/v1/publisher/status", exchange -> {
+            requests.incrementAndGet();
+            respond(exchange, 500, "error");
+        });
+
+        var response = client.status("deployment-id");
+
+        assertThat(response.statusCode()).isEqualTo(500);
+        assertThat(requests).hasValue(4);
+    }
+
+    @Test
+    void testUploadIsPacedByMaxUploadRate() throws Exception {
+        var received = new AtomicInteger();
+        server.createContext("/api/v1/publisher/upload", exchange -> {
+            received.set(exchange.getRequestBody().readAllBytes().length);
+            respond(exchange, 201, "deployment-id");
+        });
+        var settings = new PublisherClient.Settings(
+                Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5), 0, Duration.ofMillis(10), 400_000);
+        var limited = new PublisherClient(
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort()),
+                "user",
+                "pass",
+                settings,
+                Logging.getLogger(PublisherClientTest.class));
+
+        long start = System.nanoTime();
+        var response = limited.upload(
+                "demo-bundle.zip",
+                () -> new ByteArrayInputStream(new byte[200_000]),
+                200_000,
+                PublishingType.AUTOMATIC);
+
+        // all but the first chunk wait for their share of 400 KB/s
+        assertThat((System.nanoTime() - start) / 1_000_000).isGreaterThan(300);
+        assertThat(response.statusCode()).isEqualTo(201);
+        assertThat(received.get()).isGreaterThan(200_000);
+    }
+
+    @Test
+    void testBackoffGrowsAndIsCapped() {
+        assertThat(client.backoff(0)).isBetween(Duration.ofMillis(5), Duration.ofMillis(10));
+        assertThat(client.backoff(3)).isBetween(Duration.ofMillis(40), Duration.ofMillis(80));
+        assertThat(client.backoff(30)).isLessThanOrEqualTo(Duration.ofMinutes(1));
+    }
+
+    static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (var out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
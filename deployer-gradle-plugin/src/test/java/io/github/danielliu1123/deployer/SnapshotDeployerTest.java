@@ -0,0 +1,178 @@
+package io.github.danielliu1123.deployer;
+
+import static io.github.danielliu1123.deployer.PublisherClientTest.respond;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs {@link SnapshotDeployer} against a local stand-in of a Maven repository.
+ */
+class SnapshotDeployerTest {
+
+    static final String GAV = "repository/com/example/demo/1.0.0-SNAPSHOT/";
+    static final String VERSION = "1.0.0-20261017.060000-3";
+
+    @TempDir
+    Path dir;
+
+    HttpServer server;
+    Map<String, String> files = new ConcurrentHashMap<>();
+    Set<String> forbidden = ConcurrentHashMap.newKeySet();
+    RepositoryClient client;
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/repository/", exchange -> {
+            var path = exchange.getRequestURI().getPath().substring(1);
+            if (exchange.getRequestMethod().equals("PUT")) {
+                var body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                if (forbidden.contains(path)) {
+                    respond(exchange, 403, "forbidden");
+                    return;
+                }
+                files.put(path, body);
+                respond(exchange, 201, "");
+            } else if (files.containsKey(path)) {
+                respond(exchange, 200, files.get(path));
+            } else {
+                respond(exchange, 404, "not found");
+            }
+        });
+        server.start();
+        var settings = new PublisherClient.Settings(
+                Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5), 0, Duration.ofMillis(10));
+        client = new RepositoryClient(
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/repository"),
+                "user",
+                "pass",
+                settings,
+                Logging.getLogger(SnapshotDeployerTest.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testDeploysNextSnapshotBuild() throws Exception {
+        files.put(GAV + "maven-metadata.xml", """
+                <metadata>
+                  <versioning>
+                    <snapshot><timestamp>20261016.060000</timestamp><buildNumber>2</buildNumber></snapshot>
+                    <snapshotVersions>
+                      <snapshotVersion>
+                        <classifier>javadoc</classifier>
+                        <extension>jar</extension>
+                        <value>1.0.0-20261016.060000-2</value>
+                        <updated>20261016060000</updated>
+                      </snapshotVersion>
+                      <snapshotVersion>
+                        <extension>jar</extension>
+                        <value>1.0.0-20261016.060000-2</value>
+                        <updated>20261016060000</updated>
+                      </snapshotVersion>
+                    </snapshotVersions>
+                  </versioning>
+                </metadata>
+                """);
+        files.put("repository/com/example/demo/maven-metadata.xml", """
+                <metadata><versioning><versions><version>0.9.0-SNAPSHOT</version></versions></versioning></metadata>
+                """);
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0-SNAPSHOT"));
+        // an older local build, not deployed
+        Files.writeString(gav.resolve("demo-1.0.0-20261017.050000-1.jar"), "old jar");
+        Files.writeString(gav.resolve("demo-1.0.0-20261017.055000-2.jar"), "jar");
+        Files.writeString(gav.resolve("demo-1.0.0-20261017.055000-2.jar.sha1"), "staged sha1");
+        Files.writeString(gav.resolve("demo-1.0.0-20261017.055000-2.pom"), "<project/>");
+        Files.writeString(gav.resolve("demo-1.0.0-20261017.055000-2-sources.jar"), "sources");
+        Files.writeString(gav.resolve("maven-metadata.xml"), "<metadata/>");
+
+        var result = deploy();
+
+        assertThat(result.gavs()).isEqualTo(1);
+        assertThat(result.files()).isEqualTo(4);
+        assertThat(files.get(GAV + "demo-" + VERSION + ".jar")).isEqualTo("jar");
+        assertThat(files.get(GAV + "demo-" + VERSION + ".jar.sha1")).isEqualTo("staged sha1");
+        assertThat(files.get(GAV + "demo-" + VERSION + ".jar.md5"))
+                .isEqualTo(BundleWriterTest.hex("MD5", "jar".getBytes(StandardCharsets.UTF_8)));
+        assertThat(files.get(GAV + "demo-" + VERSION + "-sources.jar.sha1"))
+                .isEqualTo(BundleWriterTest.hex("SHA-1", "sources".getBytes(StandardCharsets.UTF_8)));
+        assertThat(files).containsKeys(GAV + "demo-" + VERSION + ".pom", GAV + "maven-metadata.xml.sha1");
+        assertThat(files.values()).doesNotContain("old jar");
+
+        assertThat(files.get(GAV + "maven-metadata.xml"))
+                .contains("<buildNumber>3</buildNumber>")
+                .contains("<timestamp>20261017.060000</timestamp>")
+                .contains("<classifier>javadoc</classifier>", "<value>1.0.0-20261016.060000-2</value>")
+                .contains("<classifier>sources</classifier>", "<extension>pom</extension>")
+                .doesNotContain("<classifier>sources.jar</classifier>");
+        assertThat(files.get(GAV + "maven-metadata.xml").split("<value>" + VERSION + "</value>"))
+                .hasSize(4);
+        assertThat(files.get("repository/com/example/demo/maven-metadata.xml"))
+                .contains("<version>0.9.0-SNAPSHOT</version>", "<version>1.0.0-SNAPSHOT</version>")
+                .contains("<latest>1.0.0-SNAPSHOT</latest>");
+    }
+
+    @Test
+    void testFirstBuildOfNonUniqueSnapshot() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0-SNAPSHOT"));
+        Files.writeString(gav.resolve("demo-1.0.0-SNAPSHOT.pom"), "<project/>");
+
+        deploy();
+
+        assertThat(files).containsKey(GAV + "demo-1.0.0-20261017.060000-1.pom");
+        assertThat(files.get(GAV + "maven-metadata.xml")).contains("<buildNumber>1</buildNumber>");
+    }
+
+    @Test
+    void testFailedUploadSkipsMetadata() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0-SNAPSHOT"));
+        Files.writeString(gav.resolve("demo-1.0.0-SNAPSHOT.pom"), "<project/>");
+        Files.writeString(gav.resolve("demo-1.0.0-SNAPSHOT.jar"), "jar");
+        forbidden.add(GAV + "demo-1.0.0-20261017.060000-1.jar");
+
+        assertThatThrownBy(this::deploy)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Failed to upload 1 of 2 files")
+                .hasMessageContaining("demo-1.0.0-20261017.060000-1.jar (status 403)");
+        assertThat(files.keySet()).noneMatch(path -> path.contains("maven-metadata"));
+    }
+
+    @Test
+    void testRejectsReleaseVersion() throws Exception {
+        var gav = Files.createDirectories(dir.resolve("com/example/demo/1.0.0"));
+        Files.writeString(gav.resolve("demo-1.0.0.pom"), "<project/>");
+
+        assertThatThrownBy(this::deploy)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("com/example/demo/1.0.0");
+        assertThat(files).isEmpty();
+    }
+
+    SnapshotDeployer.Result deploy() throws Exception {
+        var options = new SnapshotDeployer.Options(4, Checksums.normalize(List.of("md5", "sha1")));
+        return new SnapshotDeployer(client, options, Logging.getLogger(SnapshotDeployerTest.class))
+                .deploy(BundlePlan.scan(List.of(dir), true), Instant.parse("2026-10-17T06:00:00Z"));
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.danielliu1123.deployer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.Test;
+
+class UploadProgressTest {
+
+    static final long MIB = 1024 * 1024;
+
+    @Test
+    void testPassesBodyThrough() throws Exception {
+        var progress = new UploadProgress(
+                HttpRequest.BodyPublishers.ofByteArray(new byte[100_000]),
+                "[demo-bundle.zip]",
+                100_000,
+                new UploadProgress.RateLimiter(1024 * MIB),
+                Logging.getLogger(UploadProgressTest.class));
+
+        var received = new AtomicLong();
+        var done = new CompletableFuture<Long>();
+        progress.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                received.addAndGet(item.remaining());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(received.get());
+            }
+        });
+
+        assertThat(done.get(5, TimeUnit.SECONDS)).isEqualTo(100_000L);
+        assertThat(progress.contentLength()).isEqualTo(100_000L);
+    }
+
+    @Test
+    void testRateLimiterPacesChunks() {
+        var limiter = new UploadProgress.RateLimiter(1000);
+        long second = TimeUnit.SECONDS.toNanos(1);
+
+        assertThat(limiter.reserve(1000, 0)).isZero();
+        assertThat(limiter.reserve(500, 0)).isEqualTo(second);
+        assertThat(limiter.reserve(500, second)).isEqualTo(second / 2);
+        // idle meanwhile, the unused time is not saved up
+        assertThat(limiter.reserve(1000, 10 * second)).isZero();
+    }
+
+    @Test
+    void testDescribe() {
+        assertThat(UploadProgress.describe(512 * MIB, 2048 * MIB, 48 * MIB, 32 * MIB))
+                .isEqualTo("512.0 MiB of 2.0 GiB (25%), 48.0 MiB/s (average 32.0 MiB/s), 0m48s left");
+        // streamed, size unknown
+        assertThat(UploadProgress.describe(1536, -1, 512, 0)).isEqualTo("1.5 KiB, 512 B/s (average 0 B/s)");
+    }
+
+    @Test
+    void testFormatBytes() {
+        assertThat(UploadProgress.formatBytes(0)).isEqualTo("0 B");
+        assertThat(UploadProgress.formatBytes(1023)).isEqualTo("1023 B");
+        assertThat(UploadProgress.formatBytes(1024)).isEqualTo("1.0 KiB");
+        assertThat(UploadProgress.formatBytes(5 * MIB / 2)).isEqualTo("2.5 MiB");
+    }
+}
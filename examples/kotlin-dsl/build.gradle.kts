@@ -12,7 +12,6 @@ dependencies {
 }
 
 deploy {
-    dirs = allprojects.map { it.layout.buildDirectory.dir("repo").get().asFile }.filter { it.exists() }
     username = System.getenv("MAVENCENTRAL_USERNAME")
     password = System.getenv("MAVENCENTRAL_PASSWORD")
     publishingType = PublishingType.WAIT_FOR_PUBLISHED